@@ -0,0 +1,95 @@
+package com.unitils.boot.benchmark;
+
+import com.unitils.boot.xls.CompiledDataSet;
+import com.unitils.boot.xls.MultiSchemaXlsDataSetReader;
+import com.unitils.boot.xls.XlsDataSetCompiler;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 基准测试使用的数据集，生成指定行数的bench_user表的Excel文件
+ * @Date:Created in 2018-07-08
+ */
+public class Fixtures {
+
+    public static final String SCHEMA_NAME = "PUBLIC";
+
+    public static final String TABLE_NAME = "bench_user";
+
+    public static final String[] COLUMN_NAMES = {"id", "name", "email", "amount", "created"};
+
+    /* Keeps the loggers of the benchmarked code referenced, java.util.logging only holds weak references */
+    private static final Logger[] quietLoggers = {Logger.getLogger("com.unitils.boot"), Logger.getLogger("org.unitils"), Logger.getLogger("org.dbunit")};
+
+    /**
+     * Only logs warnings of the benchmarked code, the strategies log every load at info level.
+     */
+    public static void quietLogging() {
+        for (Logger logger : quietLoggers) {
+            logger.setLevel(Level.WARNING);
+        }
+    }
+
+    /**
+     * Writes an Excel file with one sheet of the bench_user table.
+     *
+     * @param rows The number of data rows
+     * @return The temporary file, deleted when the JVM exits
+     */
+    public static File createXlsFile(int rows) throws IOException {
+        File file = File.createTempFile("bench_user_" + rows + "_", ".xls");
+        file.deleteOnExit();
+        HSSFWorkbook workbook = new HSSFWorkbook();
+        Sheet sheet = workbook.createSheet(TABLE_NAME);
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < COLUMN_NAMES.length; i++) {
+            header.createCell(i).setCellValue(COLUMN_NAMES[i]);
+        }
+        for (int i = 1; i <= rows; i++) {
+            Row row = sheet.createRow(i);
+            row.createCell(0).setCellValue(i);
+            row.createCell(1).setCellValue("user" + i);
+            row.createCell(2).setCellValue("user" + i + "@example.com");
+            row.createCell(3).setCellValue(i * 1.25);
+            row.createCell(4).setCellValue("2018-07-08 12:00:00");
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            workbook.write(out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes the precompiled binary form of the given Excel file next to it.
+     *
+     * @param xlsFile The Excel file, not null
+     */
+    public static void compile(File xlsFile) {
+        new XlsDataSetCompiler().compile(xlsFile);
+        CompiledDataSet.getCompiledFile(xlsFile).deleteOnExit();
+    }
+
+    /**
+     * @param xlsFile The Excel file, not null
+     * @return The bench_user table of the given file, parsed without cache
+     */
+    public static ITable readTable(File xlsFile) throws DataSetException {
+        MultiSchemaDataSet dataSet = new MultiSchemaXlsDataSetReader(SCHEMA_NAME).readDataSetXls(xlsFile);
+        return dataSet.getDataSetForSchema(SCHEMA_NAME).getTable(TABLE_NAME);
+    }
+}
@@ -0,0 +1,155 @@
+package com.unitils.boot.benchmark;
+
+import com.unitils.boot.SpringBootModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.unitils.core.Unitils;
+import org.unitils.spring.annotation.SpringApplicationContext;
+import org.unitils.spring.annotation.SpringBean;
+import org.unitils.spring.annotation.SpringBeanByName;
+import org.unitils.spring.annotation.SpringBeanByType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: SpringBootModule.initialize给有很多注入字段的测试实例注入Spring bean的耗时，每个测试方法都会执行一次
+ * @Date:Created in 2018-07-08
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InjectionBenchmark {
+
+    private SpringBootModule springBootModule;
+
+    private GenericApplicationContext applicationContext;
+
+    @Setup
+    public void setUp() {
+        applicationContext = new GenericApplicationContext();
+        for (Class<?> beanClass : new Class<?>[]{Bean01.class, Bean02.class, Bean03.class, Bean04.class, Bean05.class,
+                Bean06.class, Bean07.class, Bean08.class, Bean09.class, Bean10.class}) {
+            applicationContext.registerBeanDefinition(Character.toLowerCase(beanClass.getSimpleName().charAt(0)) + beanClass.getSimpleName().substring(1),
+                    new RootBeanDefinition(beanClass));
+        }
+        applicationContext.refresh();
+        SpringBootModule.setApplicationContext(applicationContext);
+        springBootModule = Unitils.getInstance().getModulesRepository().getModuleOfType(SpringBootModule.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        SpringBootModule.setApplicationContext(null);
+        applicationContext.close();
+    }
+
+    @Benchmark
+    public Object initialize() {
+        ManyFieldsTest testObject = new ManyFieldsTest();
+        springBootModule.initialize(testObject);
+        return testObject;
+    }
+
+    public static class Bean01 {
+    }
+
+    public static class Bean02 {
+    }
+
+    public static class Bean03 {
+    }
+
+    public static class Bean04 {
+    }
+
+    public static class Bean05 {
+    }
+
+    public static class Bean06 {
+    }
+
+    public static class Bean07 {
+    }
+
+    public static class Bean08 {
+    }
+
+    public static class Bean09 {
+    }
+
+    public static class Bean10 {
+    }
+
+    //一个测试类中常见的注入方式都有
+    public static class ManyFieldsTest {
+
+        @SpringApplicationContext
+        private ApplicationContext applicationContext;
+
+        @SpringBeanByType
+        private Bean01 byType01;
+
+        @SpringBeanByType
+        private Bean02 byType02;
+
+        @SpringBeanByType
+        private Bean03 byType03;
+
+        @SpringBeanByType
+        private Bean04 byType04;
+
+        @SpringBeanByType
+        private Bean05 byType05;
+
+        @SpringBeanByType
+        private Bean06 byType06;
+
+        @SpringBeanByType
+        private Bean07 byType07;
+
+        @SpringBeanByType
+        private Bean08 byType08;
+
+        @SpringBeanByType
+        private Bean09 byType09;
+
+        @SpringBeanByType
+        private Bean10 byType10;
+
+        @SpringBeanByName
+        private Bean01 bean01;
+
+        @SpringBeanByName
+        private Bean02 bean02;
+
+        @SpringBeanByName
+        private Bean03 bean03;
+
+        @SpringBeanByName
+        private Bean04 bean04;
+
+        @SpringBeanByName
+        private Bean05 bean05;
+
+        @SpringBean("bean06")
+        private Bean06 named06;
+
+        @SpringBean("bean07")
+        private Bean07 named07;
+
+        @SpringBean("bean08")
+        private Bean08 named08;
+
+        @SpringBean("bean09")
+        private Bean09 named09;
+
+        @SpringBean("bean10")
+        private Bean10 named10;
+    }
+}
@@ -0,0 +1,79 @@
+package com.unitils.boot.benchmark;
+
+import com.unitils.boot.datasetloadstrategy.BatchCleanInsertLoadStrategy;
+import com.unitils.boot.datasetloadstrategy.FingerprintCleanInsertLoadStrategy;
+import com.unitils.boot.datasetloadstrategy.SnapshotLoadStrategy;
+import com.unitils.boot.dbunit.SpringBootDbUnitModule;
+import com.unitils.boot.xls.MultiSchemaXlsDataSetReader;
+import org.dbunit.dataset.IDataSet;
+import org.openjdk.jmh.annotations.*;
+import org.unitils.dbunit.datasetloadstrategy.DataSetLoadStrategy;
+import org.unitils.dbunit.datasetloadstrategy.impl.CleanInsertLoadStrategy;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 各种DataSetLoadStrategy把同一个数据集重复加载到内嵌H2数据库的耗时，对应每个带@DataSet的测试方法的加载开销。
+ * Unitils默认的CleanInsertLoadStrategy作为基准
+ * @Date:Created in 2018-07-08
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadStrategyBenchmark {
+
+    @Param({"100", "1000"})
+    private int rows;
+
+    @Param({"cleanInsert", "batchCleanInsert", "fingerprintCleanInsert", "snapshot"})
+    private String strategy;
+
+    private DataSetLoadStrategy dataSetLoadStrategy;
+
+    private IDataSet dataSet;
+
+    private DbUnitDatabaseConnection connection;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.quietLogging();
+        File xlsFile = Fixtures.createXlsFile(rows);
+        MultiSchemaDataSet multiSchemaDataSet = new MultiSchemaXlsDataSetReader(Fixtures.SCHEMA_NAME).readDataSetXls(xlsFile);
+        dataSet = multiSchemaDataSet.getDataSetForSchema(Fixtures.SCHEMA_NAME);
+        dataSetLoadStrategy = createLoadStrategy(strategy);
+        connection = SpringBootDbUnitModule.getModule().getDbUnitDatabaseConnection(Fixtures.SCHEMA_NAME);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.closeJdbcConnection();
+    }
+
+    @Benchmark
+    public void load() throws SQLException {
+        dataSetLoadStrategy.execute(connection, dataSet);
+        //和测试方法结束时一样释放连接
+        connection.closeJdbcConnection();
+    }
+
+    protected DataSetLoadStrategy createLoadStrategy(String name) {
+        if ("batchCleanInsert".equals(name)) {
+            return new BatchCleanInsertLoadStrategy();
+        }
+        if ("fingerprintCleanInsert".equals(name)) {
+            return new FingerprintCleanInsertLoadStrategy();
+        }
+        if ("snapshot".equals(name)) {
+            return new SnapshotLoadStrategy();
+        }
+        return new CleanInsertLoadStrategy();
+    }
+}
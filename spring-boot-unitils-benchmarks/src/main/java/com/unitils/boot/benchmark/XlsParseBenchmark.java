@@ -0,0 +1,52 @@
+package com.unitils.boot.benchmark;
+
+import com.unitils.boot.xls.DataSetCache;
+import com.unitils.boot.xls.MultiSchemaXlsDataSetReader;
+import org.openjdk.jmh.annotations.*;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: MultiSchemaXlsDataSetReader解析Excel数据集的耗时：POI解析、预编译的二进制文件和缓存命中
+ * @Date:Created in 2018-07-08
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XlsParseBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int rows;
+
+    @Param({"xls", "compiled"})
+    public String format;
+
+    private File xlsFile;
+
+    private DataSetCache dataSetCache;
+
+    @Setup
+    public void setUp() throws Exception {
+        xlsFile = Fixtures.createXlsFile(rows);
+        if ("compiled".equals(format)) {
+            Fixtures.compile(xlsFile);
+        }
+        dataSetCache = new DataSetCache(DataSetCache.DEFAULT_MAX_SIZE);
+    }
+
+    @Benchmark
+    public MultiSchemaDataSet parse() {
+        return new MultiSchemaXlsDataSetReader(Fixtures.SCHEMA_NAME, null).readDataSetXls(xlsFile);
+    }
+
+    @Benchmark
+    public MultiSchemaDataSet cached() {
+        return new MultiSchemaXlsDataSetReader(Fixtures.SCHEMA_NAME, dataSetCache).readDataSetXls(xlsFile);
+    }
+}
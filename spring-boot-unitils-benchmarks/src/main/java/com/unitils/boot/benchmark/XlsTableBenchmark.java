@@ -0,0 +1,49 @@
+package com.unitils.boot.benchmark;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.ITable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 解析后的XlsTable按行和列名读取值的耗时，DbUnit插入数据和比较数据集时都这样访问
+ * @Date:Created in 2018-07-08
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XlsTableBenchmark {
+
+    @Param({"100", "10000"})
+    public int rows;
+
+    private ITable table;
+
+    private String[] columnNames;
+
+    @Setup
+    public void setUp() throws Exception {
+        table = Fixtures.readTable(Fixtures.createXlsFile(rows));
+        Column[] columns = table.getTableMetaData().getColumns();
+        columnNames = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnNames[i] = columns[i].getColumnName();
+        }
+    }
+
+    @Benchmark
+    public void getValue(Blackhole blackhole) throws Exception {
+        int rowCount = table.getRowCount();
+        for (int row = 0; row < rowCount; row++) {
+            for (String columnName : columnNames) {
+                blackhole.consume(table.getValue(row, columnName));
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.unitils.boot;
+
+import org.unitils.core.UnitilsException;
+import org.unitils.spring.annotation.SpringApplicationContext;
+import org.unitils.spring.annotation.SpringBean;
+import org.unitils.spring.annotation.SpringBeanByName;
+import org.unitils.spring.annotation.SpringBeanByType;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.unitils.util.AnnotationUtils.getFieldsAnnotatedWith;
+import static org.unitils.util.AnnotationUtils.getMethodsAnnotatedWith;
+import static org.unitils.util.ReflectionUtils.getPropertyName;
+import static org.unitils.util.ReflectionUtils.isSetter;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 一个测试类的注入信息，类层次结构只扫描一次，之后每个测试实例都复用。
+ * 记录了需要注入的字段和setter，以及每个注入点对应的bean名称或类型
+ * @Date:Created in 2018-07-08
+ */
+class InjectionPlan {
+
+    final List<InjectionPoint> applicationContextPoints;
+
+    final List<InjectionPoint> springBeanPoints;
+
+    final List<InjectionPoint> springBeanByTypePoints;
+
+    final List<InjectionPoint> springBeanByNamePoints;
+
+    InjectionPlan(Class<?> testClass) {
+        List<InjectionPoint> points = new ArrayList<InjectionPoint>();
+        for (Field field : getFieldsAnnotatedWith(testClass, SpringApplicationContext.class)) {
+            points.add(new InjectionPoint(SpringApplicationContext.class, field, null, null));
+        }
+        for (Method method : getMethodsAnnotatedWith(testClass, SpringApplicationContext.class, false)) {
+            // ignore custom create methods
+            if (method.getReturnType() == Void.TYPE) {
+                points.add(new InjectionPoint(SpringApplicationContext.class, method, null, null));
+            }
+        }
+        applicationContextPoints = Collections.unmodifiableList(points);
+
+        points = new ArrayList<InjectionPoint>();
+        for (Field field : getFieldsAnnotatedWith(testClass, SpringBean.class)) {
+            points.add(new InjectionPoint(SpringBean.class, field, field.getAnnotation(SpringBean.class).value(), null));
+        }
+        for (Method method : getMethodsAnnotatedWith(testClass, SpringBean.class)) {
+            points.add(new InjectionPoint(SpringBean.class, method, method.getAnnotation(SpringBean.class).value(), null));
+        }
+        springBeanPoints = Collections.unmodifiableList(points);
+
+        points = new ArrayList<InjectionPoint>();
+        for (Field field : getFieldsAnnotatedWith(testClass, SpringBeanByType.class)) {
+            points.add(new InjectionPoint(SpringBeanByType.class, field, null, field.getType()));
+        }
+        for (Method method : getMethodsAnnotatedWith(testClass, SpringBeanByType.class)) {
+            points.add(new InjectionPoint(SpringBeanByType.class, method, null, isSetter(method) ? method.getParameterTypes()[0] : null));
+        }
+        springBeanByTypePoints = Collections.unmodifiableList(points);
+
+        points = new ArrayList<InjectionPoint>();
+        for (Field field : getFieldsAnnotatedWith(testClass, SpringBeanByName.class)) {
+            points.add(new InjectionPoint(SpringBeanByName.class, field, field.getName(), null));
+        }
+        for (Method method : getMethodsAnnotatedWith(testClass, SpringBeanByName.class)) {
+            points.add(new InjectionPoint(SpringBeanByName.class, method, isSetter(method) ? getPropertyName(method) : null, null));
+        }
+        springBeanByNamePoints = Collections.unmodifiableList(points);
+    }
+
+    //一个需要注入的字段或setter
+    static class InjectionPoint {
+
+        final Class<? extends Annotation> annotationClass;
+
+        final Field field;
+
+        final Method method;
+
+        /* The bean name for @SpringBean and @SpringBeanByName */
+        final String beanName;
+
+        /* The bean type for @SpringBeanByType */
+        final Class<?> beanType;
+
+        /* True if the method is a setter, false for fields and other methods */
+        final boolean setter;
+
+        InjectionPoint(Class<? extends Annotation> annotationClass, AccessibleObject member, String beanName, Class<?> beanType) {
+            this.annotationClass = annotationClass;
+            this.field = member instanceof Field ? (Field) member : null;
+            this.method = member instanceof Method ? (Method) member : null;
+            this.beanName = beanName;
+            this.beanType = beanType;
+            this.setter = method != null && isSetter(method);
+            try {
+                member.setAccessible(true);
+            } catch (SecurityException e) {
+                throw new UnitilsException("Unable to make " + member + " accessible", e);
+            }
+        }
+    }
+}
@@ -1,7 +1,19 @@
 package com.unitils.boot;
 
+import com.unitils.boot.autoconfigure.StartupPhaseListener;
+import com.unitils.boot.database.ConnectionTimer;
+import com.unitils.boot.util.ApplicationContextCache;
+import com.unitils.boot.util.BeanTypeResolutionCache;
+import com.unitils.boot.util.HarnessEvents;
+import com.unitils.boot.util.PhaseTimer;
+import com.unitils.boot.util.TransactionManagerResolver;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.unitils.core.Module;
 import org.unitils.core.TestListener;
@@ -15,18 +27,20 @@ import org.unitils.spring.enums.LoadTime;
 import org.unitils.spring.util.ApplicationContextFactory;
 import org.unitils.spring.util.ApplicationContextManager;
 import org.unitils.util.AnnotationUtils;
-import org.unitils.util.ReflectionUtils;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 
-import static org.apache.commons.lang.StringUtils.isEmpty;
 import static org.unitils.util.AnnotationUtils.*;
 import static org.unitils.util.PropertyUtils.getInstance;
+import static org.unitils.util.PropertyUtils.getInt;
 import static org.unitils.util.ReflectionUtils.*;
 
 /**
@@ -36,12 +50,41 @@ import static org.unitils.util.ReflectionUtils.*;
  */
 public class SpringBootModule implements Module {
 
+    private static final Log logger = LogFactory.getLog(SpringBootModule.class);
+
     /* Property key of the class name of the application context factory */
     public static final String PROPKEY_APPLICATION_CONTEXT_FACTORY_CLASS_NAME = "SpringModule.applicationContextFactory.implClassName";
 
+    /* Property key of the maximum number of cached application contexts */
+    public static final String PROPKEY_CONTEXT_CACHE_MAX_SIZE = "SpringBootModule.contextCache.maxSize";
+
+    /* System property of the size of the context cache of the Spring TestContext framework */
+    public static final String SPRING_CONTEXT_CACHE_MAX_SIZE = "spring.test.context.cache.maxSize";
+
     /* Manager for storing and creating org.unitils.spring application contexts */
     private ApplicationContextManager applicationContextManager;
 
+    /* The application contexts per test configuration */
+    private ApplicationContextCache applicationContextCache;
+
+    /* The single bean name per requested type, per application context */
+    private final BeanTypeResolutionCache beanTypeResolutionCache = new BeanTypeResolutionCache();
+
+    /* The transaction managers per application context */
+    private final TransactionManagerResolver transactionManagerResolver = new TransactionManagerResolver();
+
+    /* The injection points per test class, computed once for all test instances */
+    private final ClassValue<InjectionPlan> injectionPlans = new ClassValue<InjectionPlan>() {
+
+        @Override
+        protected InjectionPlan computeValue(Class<?> testClass) {
+            return new InjectionPlan(testClass);
+        }
+    };
+
+    /* The contexts whose creation was reported to the harness events */
+    private final Set<ApplicationContext> observedContexts = Collections.newSetFromMap(new WeakHashMap<ApplicationContext, Boolean>());
+
     private  static ApplicationContext applicationContext;
 
     public static void setApplicationContext(ApplicationContext applicationContext) {
@@ -57,6 +100,14 @@ public class SpringBootModule implements Module {
         // create application context manager that stores and creates the application contexts
         ApplicationContextFactory applicationContextFactory = getInstance(PROPKEY_APPLICATION_CONTEXT_FACTORY_CLASS_NAME, configuration);
         applicationContextManager = new ApplicationContextManager(applicationContextFactory);
+
+        int maxSize = getInt(PROPKEY_CONTEXT_CACHE_MAX_SIZE, ApplicationContextCache.DEFAULT_MAX_SIZE, configuration);
+        applicationContextCache = new ApplicationContextCache(maxSize);
+        // Spring的context缓存和这里使用相同的大小，超过时由Spring关闭最久未使用的context
+        if (System.getProperty(SPRING_CONTEXT_CACHE_MAX_SIZE) == null) {
+            System.setProperty(SPRING_CONTEXT_CACHE_MAX_SIZE, String.valueOf(maxSize));
+        }
+        HarnessEvents.init(configuration);
     }
 
 
@@ -73,33 +124,11 @@ public class SpringBootModule implements Module {
                     if (!isApplicationContextConfiguredFor(testObject)) {
                         return false;
                     }
-                    ApplicationContext context = getApplicationContext(testObject);
-                    return context.getBeansOfType(getPlatformTransactionManagerClass()).size() != 0;
+                    return transactionManagerResolver.hasTransactionManager(getApplicationContext(testObject));
                 }
 
-                @SuppressWarnings("unchecked")
                 public PlatformTransactionManager getSpringPlatformTransactionManager(Object testObject) {
-                    ApplicationContext context = getApplicationContext(testObject);
-                    Class<?> platformTransactionManagerClass = getPlatformTransactionManagerClass();
-                    Map<String, PlatformTransactionManager> platformTransactionManagers = (Map<String, PlatformTransactionManager>) context.getBeansOfType(platformTransactionManagerClass);
-                    if (platformTransactionManagers.size() == 0) {
-                        throw new UnitilsException("Could not find a model of type " + platformTransactionManagerClass.getSimpleName()
-                                + " in the org.unitils.spring ApplicationContext for this class");
-                    }
-                    if (platformTransactionManagers.size() > 1) {
-                        Method testMethod = Unitils.getInstance().getTestContext().getTestMethod();
-                        String transactionManagerName = getMethodOrClassLevelAnnotationProperty(Transactional.class, "transactionManagerName", "",
-                                testMethod, testObject.getClass());
-                        if (isEmpty(transactionManagerName))
-                            throw new UnitilsException("Found more than one model of type " + platformTransactionManagerClass.getSimpleName()
-                                    + " in the org.unitils.spring ApplicationContext for this class. Use the transactionManagerName on the @Transactional"
-                                    + " annotation to select the correct one.");
-                        if (!platformTransactionManagers.containsKey(transactionManagerName))
-                            throw new UnitilsException("No model of type " + platformTransactionManagerClass.getSimpleName()
-                                    + " found in the org.unitils.spring ApplicationContext with the name " + transactionManagerName);
-                        return platformTransactionManagers.get(transactionManagerName);
-                    }
-                    return platformTransactionManagers.values().iterator().next();
+                    return getPlatformTransactionManager(testObject);
                 }
 
                 public boolean isTransactionalResourceAvailable(Object testObject) {
@@ -109,16 +138,32 @@ public class SpringBootModule implements Module {
                 public Integer getPreference() {
                     return 20;
                 }
-
-                protected Class<?> getPlatformTransactionManagerClass() {
-                    return ReflectionUtils.getClassWithName("org.springframework.transaction.PlatformTransactionManager");
-                }
-
             });
         }
     }
 
 
+    /**
+     * Gets the transaction manager of the application context of the given test instance. If the context contains
+     * more than one transaction manager, the transactionManagerName of the {@link Transactional} annotation of the
+     * current test method or class selects the correct one. The lookup is cached per context and per test method.
+     *
+     * @param testObject The test instance, not null
+     * @return The transaction manager, not null
+     */
+    public PlatformTransactionManager getPlatformTransactionManager(Object testObject) {
+        Method testMethod = Unitils.getInstance().getTestContext().getTestMethod();
+        return transactionManagerResolver.getTransactionManager(getApplicationContext(testObject), testMethod, testObject.getClass());
+    }
+
+    /**
+     * @return The cached transaction manager lookup, not null
+     */
+    public TransactionManagerResolver getTransactionManagerResolver() {
+        return transactionManagerResolver;
+    }
+
+
     /**
      * Gets the org.unitils.spring model with the given name. The given test instance, by using {@link SpringApplicationContext},
      * determines the application context in which to look for the model.
@@ -148,14 +193,22 @@ public class SpringBootModule implements Module {
      * @return The model, not null
      */
     public <T> T getSpringBeanByType(Object testObject, Class<T> type) {
-        Map<String, T> beans = getApplicationContext(testObject).getBeansOfType(type);
+        ApplicationContext context = getApplicationContext(testObject);
+        // 已经解析过的类型直接按名称获取，不再扫描所有bean定义
+        String beanName = beanTypeResolutionCache.getBeanName(context, type);
+        if (beanName != null) {
+            return context.getBean(beanName, type);
+        }
+        Map<String, T> beans = context.getBeansOfType(type);
         if (beans == null || beans.size() == 0) {
             throw new UnitilsException("Unable to get Spring model by type. No Spring model found for type " + type.getSimpleName());
         }
         if (beans.size() > 1) {
             throw new UnitilsException("Unable to get Spring model by type. More than one possible Spring model for type " + type.getSimpleName() + ". Possible beans; " + beans);
         }
-        return beans.values().iterator().next();
+        Map.Entry<String, T> bean = beans.entrySet().iterator().next();
+        beanTypeResolutionCache.put(context, type, bean.getKey());
+        return bean.getValue();
     }
 
     /**
@@ -187,13 +240,97 @@ public class SpringBootModule implements Module {
      * @return
      */
     public ApplicationContext getApplicationContext(Object testObject) {
-
+        ApplicationContext context = applicationContextCache.get(testObject.getClass());
+        if (context != null) {
+            return context;
+        }
         if (applicationContext == null) {
-            applicationContext = applicationContextManager.getApplicationContext(testObject);
+            long startTime = System.nanoTime();
+            context = applicationContextManager.getApplicationContext(testObject);
+            observeApplicationContext(testObject.getClass(), context, System.nanoTime() - startTime);
+            return context;
         }
+        applicationContextCache.put(testObject.getClass(), applicationContext);
+        observeApplicationContext(testObject.getClass(), applicationContext, -1);
         return applicationContext;
     }
 
+    /**
+     * Registers the application context that the Spring TestContext framework loaded for the given test class.
+     * Test classes with the same Spring configuration share the context.
+     *
+     * @param testClass          The test class, not null
+     * @param applicationContext The context, not null
+     */
+    public void registerApplicationContext(Class<?> testClass, ApplicationContext applicationContext) {
+        registerApplicationContext(testClass, applicationContext, -1);
+    }
+
+    /**
+     * Registers the application context that the Spring TestContext framework loaded for the given test class.
+     *
+     * @param testClass          The test class, not null
+     * @param applicationContext The context, not null
+     * @param loadNanos          The time it took to get the context from Spring, -1 if unknown
+     */
+    public void registerApplicationContext(Class<?> testClass, ApplicationContext applicationContext, long loadNanos) {
+        applicationContextCache.put(testClass, applicationContext);
+        observeApplicationContext(testClass, applicationContext, loadNanos);
+    }
+
+    /**
+     * @param testClass The test class, not null
+     * @return The context registered for the configuration of the test class, null if there is none or it was closed
+     */
+    public ApplicationContext getRegisteredApplicationContext(Class<?> testClass) {
+        return applicationContextCache.get(testClass);
+    }
+
+    /**
+     * Reports the creation of the given context to the {@link HarnessEvents} the first time a test uses it, and
+     * its close when it is closed. The creation time is the time SpringApplication took to run, see
+     * {@link StartupPhaseListener#getLoadTime}, or else the measured time to get the context on a cache miss.
+     * The creation is not reported when neither is known.
+     *
+     * @param testClass The test class, not null
+     * @param context   The context, null if there is none
+     * @param loadNanos The measured time it took to get the context, -1 if unknown
+     */
+    protected void observeApplicationContext(Class<?> testClass, ApplicationContext context, long loadNanos) {
+        if (!HarnessEvents.isEnabled() || context == null) {
+            return;
+        }
+        synchronized (observedContexts) {
+            if (!observedContexts.add(context)) {
+                return;
+            }
+        }
+        // context的年龄包括之后执行测试的时间，不能作为启动耗时
+        Long loadTime = StartupPhaseListener.getLoadTime(context);
+        if (loadTime != null) {
+            loadNanos = TimeUnit.MILLISECONDS.toNanos(loadTime);
+        }
+        if (loadNanos >= 0) {
+            HarnessEvents.contextCreated(testClass, loadNanos);
+        }
+        if (context instanceof ConfigurableApplicationContext) {
+            ((ConfigurableApplicationContext) context).addApplicationListener(new ApplicationListener<ContextClosedEvent>() {
+
+                public void onApplicationEvent(ContextClosedEvent event) {
+                    HarnessEvents.contextClosed(event.getApplicationContext().getDisplayName());
+                }
+            });
+        }
+    }
+
+    /**
+     * @param testClass The test class, not null
+     * @return The key of the Spring configuration of the test class, empty if the class has no Spring configuration
+     */
+    public List<Object> getContextKey(Class<?> testClass) {
+        return applicationContextCache.getContextKey(testClass);
+    }
+
 
     /**
      * Forces the reloading of the application context the next time that it is requested. If classes are given
@@ -204,6 +341,7 @@ public class SpringBootModule implements Module {
      */
     public void invalidateApplicationContext(Class<?>... classes) {
         applicationContextManager.invalidateApplicationContext(classes);
+        applicationContextCache.remove(classes);
         applicationContext = null;
     }
 
@@ -216,27 +354,19 @@ public class SpringBootModule implements Module {
      * @param testObject The test instance, not null
      */
     public void injectApplicationContext(Object testObject) {
-
-
-        // inject into fields annotated with @SpringApplicationContext
-        Set<Field> fields = getFieldsAnnotatedWith(testObject.getClass(), SpringApplicationContext.class);
-        for (Field field : fields) {
-            try {
-                setFieldValue(testObject, field, getApplicationContext(testObject));
-            } catch (UnitilsException e) {
-                throw new UnitilsException("Unable to assign the application context to field annotated with @" + SpringApplicationContext.class.getSimpleName(), e);
-            }
-        }
-
-        // inject into setter methods annotated with @SpringApplicationContext
-        Set<Method> methods = getMethodsAnnotatedWith(testObject.getClass(), SpringApplicationContext.class, false);
-        for (Method method : methods) {
-            // ignore custom create methods
-            if (method.getReturnType() != Void.TYPE) {
+        for (InjectionPlan.InjectionPoint point : getInjectionPlan(testObject.getClass()).applicationContextPoints) {
+            if (point.field != null) {
+                // inject into fields annotated with @SpringApplicationContext
+                try {
+                    setFieldValue(testObject, point.field, getApplicationContext(testObject));
+                } catch (UnitilsException e) {
+                    throw new UnitilsException("Unable to assign the application context to field annotated with @" + SpringApplicationContext.class.getSimpleName(), e);
+                }
                 continue;
             }
+            // inject into setter methods annotated with @SpringApplicationContext
             try {
-                invokeMethod(testObject, method, getApplicationContext(testObject));
+                invokeMethod(testObject, point.method, getApplicationContext(testObject));
 
             } catch (Exception e) {
                 throw new UnitilsException("Unable to assign the application context to setter annotated with @" + SpringApplicationContext.class.getSimpleName(), e);
@@ -251,36 +381,7 @@ public class SpringBootModule implements Module {
      * @param testObject The test instance, not null
      */
     public void injectSpringBeans(Object testObject) {
-        // assign to fields
-        Set<Field> fields = getFieldsAnnotatedWith(testObject.getClass(), SpringBean.class);
-        for (Field field : fields) {
-            try {
-                SpringBean springBeanAnnotation = field.getAnnotation(SpringBean.class);
-                setFieldValue(testObject, field, getSpringBean(testObject, springBeanAnnotation.value()));
-
-            } catch (UnitilsException e) {
-                throw new UnitilsException("Unable to assign the Spring model value to field annotated with @" + SpringBean.class.getSimpleName(), e);
-            }
-        }
-
-        // assign to setters
-        Set<Method> methods = getMethodsAnnotatedWith(testObject.getClass(), SpringBean.class);
-        for (Method method : methods) {
-            try {
-                if (!isSetter(method)) {
-                    throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + SpringBean.class.getSimpleName() + ". Method " +
-                            method.getName() + " is not a setter method.");
-                }
-                SpringBean springBeanAnnotation = method.getAnnotation(SpringBean.class);
-                invokeMethod(testObject, method, getSpringBean(testObject, springBeanAnnotation.value()));
-
-            } catch (UnitilsException e) {
-                throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + SpringBean.class.getSimpleName(), e);
-            } catch (InvocationTargetException e) {
-                throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + SpringBean.class.getSimpleName() + ". Method " +
-                        "has thrown an exception.", e.getCause());
-            }
-        }
+        injectSpringBeans(testObject, getInjectionPlan(testObject.getClass()).springBeanPoints);
     }
 
 
@@ -290,34 +391,7 @@ public class SpringBootModule implements Module {
      * @param testObject The test instance, not null
      */
     public void injectSpringBeansByType(Object testObject) {
-        // assign to fields
-        Set<Field> fields = getFieldsAnnotatedWith(testObject.getClass(), SpringBeanByType.class);
-        for (Field field : fields) {
-            try {
-                setFieldValue(testObject, field, getSpringBeanByType(testObject, field.getType()));
-
-            } catch (UnitilsException e) {
-                throw new UnitilsException("Unable to assign the Spring model value to field annotated with @" + SpringBeanByType.class.getSimpleName(), e);
-            }
-        }
-
-        // assign to setters
-        Set<Method> methods = getMethodsAnnotatedWith(testObject.getClass(), SpringBeanByType.class);
-        for (Method method : methods) {
-            try {
-                if (!isSetter(method)) {
-                    throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + SpringBeanByType.class.getSimpleName() + ". Method " +
-                            method.getName() + " is not a setter method.");
-                }
-                invokeMethod(testObject, method, getSpringBeanByType(testObject, method.getParameterTypes()[0]));
-
-            } catch (UnitilsException e) {
-                throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + SpringBeanByType.class.getSimpleName(), e);
-            } catch (InvocationTargetException e) {
-                throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + SpringBeanByType.class.getSimpleName() + ". Method " +
-                        "has thrown an exception.", e.getCause());
-            }
-        }
+        injectSpringBeans(testObject, getInjectionPlan(testObject.getClass()).springBeanByTypePoints);
     }
 
 
@@ -327,39 +401,62 @@ public class SpringBootModule implements Module {
      * @param testObject The test instance, not null
      */
     public void injectSpringBeansByName(Object testObject) {
-        // assign to fields
-        Set<Field> fields = getFieldsAnnotatedWith(testObject.getClass(), SpringBeanByName.class);
-        for (Field field : fields) {
-            try {
-                setFieldValue(testObject, field, getSpringBean(testObject, field.getName()));
+        injectSpringBeans(testObject, getInjectionPlan(testObject.getClass()).springBeanByNamePoints);
+    }
 
-            } catch (UnitilsException e) {
-                throw new UnitilsException("Unable to assign the Spring model value to field annotated with @" + SpringBeanByName.class.getSimpleName(), e);
-            }
-        }
 
-        // assign to setters
-        Set<Method> methods = getMethodsAnnotatedWith(testObject.getClass(), SpringBeanByName.class);
-        for (Method method : methods) {
+    /**
+     * @param testClass The test class, not null
+     * @return The injection points of the test class, the class hierarchy is only scanned the first time
+     */
+    protected InjectionPlan getInjectionPlan(Class<?> testClass) {
+        return injectionPlans.get(testClass);
+    }
+
+
+    //注入点的bean名称和类型在生成InjectionPlan时已经确定，这里只从当前context获取bean
+    private void injectSpringBeans(Object testObject, List<InjectionPlan.InjectionPoint> points) {
+        for (InjectionPlan.InjectionPoint point : points) {
+            String annotationName = point.annotationClass.getSimpleName();
+            if (point.field != null) {
+                // assign to fields
+                try {
+                    setFieldValue(testObject, point.field, getSpringBean(testObject, point));
+
+                } catch (UnitilsException e) {
+                    throw new UnitilsException("Unable to assign the Spring model value to field annotated with @" + annotationName, e);
+                }
+                continue;
+            }
+            // assign to setters
             try {
-                if (!isSetter(method)) {
-                    throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + SpringBeanByName.class.getSimpleName() + ". Method " +
-                            method.getName() + " is not a setter method.");
+                if (!point.setter) {
+                    throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + annotationName + ". Method " +
+                            point.method.getName() + " is not a setter method.");
                 }
-                invokeMethod(testObject, method, getSpringBean(testObject, getPropertyName(method)));
+                invokeMethod(testObject, point.method, getSpringBean(testObject, point));
 
             } catch (UnitilsException e) {
-                throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + SpringBeanByName.class.getSimpleName(), e);
+                throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + annotationName, e);
             } catch (InvocationTargetException e) {
-                throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + SpringBeanByName.class.getSimpleName() + ". Method " +
+                throw new UnitilsException("Unable to assign the Spring model value to method annotated with @" + annotationName + ". Method " +
                         "has thrown an exception.", e.getCause());
             }
         }
     }
 
+    private Object getSpringBean(Object testObject, InjectionPlan.InjectionPoint point) {
+        if (point.beanType != null) {
+            return getSpringBeanByType(testObject, point.beanType);
+        }
+        return getSpringBean(testObject, point.beanName);
+    }
+
     protected void closeApplicationContextIfNeeded(Object testObject) {
         if (this.isApplicationContextConfiguredFor(testObject)) {
             this.invalidateApplicationContext(testObject.getClass());
+        } else {
+            applicationContextCache.remove(testObject.getClass());
         }
     }
 
@@ -390,7 +487,7 @@ public class SpringBootModule implements Module {
     public LoadTime findLoadTime(Class<?> clzz) {
         LoadOn loadOnAnnotation = AnnotationUtils.getClassLevelAnnotation(LoadOn.class, clzz);
         if (loadOnAnnotation == null) {
-            return LoadTime.METHOD;
+            return LoadTime.CLASS;
         } else {
             return loadOnAnnotation.load();
         }
@@ -404,8 +501,12 @@ public class SpringBootModule implements Module {
 
         @Override
         public void beforeTestSetUp(Object testObject, Method testMethod) {
-            if (findLoadTime(testObject.getClass()) == LoadTime.METHOD || applicationContext == null) {
+            // 每个测试方法都是新的测试实例，需要重新注入，context从缓存中获取
+            PhaseTimer.begin(testObject.getClass());
+            try {
                 initialize(testObject);
+            } finally {
+                PhaseTimer.end("springBoot.initialize");
             }
         }
 
@@ -417,7 +518,15 @@ public class SpringBootModule implements Module {
             if (findLoadTime(testObject.getClass()) == LoadTime.METHOD) {
                 closeApplicationContextIfNeeded(testObject);
             }
-
+            // 包括事务开始、DbUnit加载数据和测试本身获取的连接，和同时进行的阶段重叠
+            if (ConnectionTimer.getConnectionCount() > 0) {
+                PhaseTimer.record(testObject.getClass(), "database.getConnection", ConnectionTimer.getConnectionNanos());
+                if (logger.isDebugEnabled()) {
+                    logger.debug(testObject.getClass().getSimpleName() + "." + testMethod.getName() + " got " + ConnectionTimer.getConnectionCount()
+                            + " database connections in " + ConnectionTimer.getConnectionTime() + " ms");
+                }
+            }
+            ConnectionTimer.reset();
         }
 
     }
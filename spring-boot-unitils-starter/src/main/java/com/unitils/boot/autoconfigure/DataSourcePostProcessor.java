@@ -1,12 +1,37 @@
 package com.unitils.boot.autoconfigure;
 
+import com.unitils.boot.database.SpringBootDataSourceFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.stereotype.Component;
+import org.unitils.core.Unitils;
 import org.unitils.database.UnitilsDataSourceFactoryBean;
+import org.unitils.util.PropertyUtils;
+
+import javax.sql.DataSource;
 
 @Component
-public class DataSourcePostProcessor implements BeanPostProcessor {
+public class DataSourcePostProcessor implements BeanPostProcessor, ApplicationContextAware, ApplicationListener<ContextClosedEvent> {
+
+    /* Property key of the way the dataSource bean is handled: replace or wrap */
+    public static final String PROPKEY_MODE = "DataSourcePostProcessor.mode";
+
+    /* Replace the dataSource bean by a data source created from the Unitils database properties */
+    public static final String MODE_REPLACE = "replace";
+
+    /* Keep the pooled dataSource bean of the application and wrap it in the transactional proxy of Unitils */
+    public static final String MODE_WRAP = "wrap";
+
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
 
     @Override
     public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
@@ -17,6 +42,10 @@ public class DataSourcePostProcessor implements BeanPostProcessor {
     public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
         if (beanName.equals("dataSource")) {
             try {
+                if (MODE_WRAP.equalsIgnoreCase(getMode()) && bean instanceof DataSource) {
+                    // Unitils的默认数据库使用应用的连接池，DbUnit和测试事务使用同一个连接池
+                    SpringBootDataSourceFactory.registerApplicationDataSource(applicationContext, (DataSource) bean);
+                }
                 return new UnitilsDataSourceFactoryBean().getObject();
             } catch (Exception exp) {
                 throw new RuntimeException("replace database throw exception ,can not continue to process", exp);
@@ -24,4 +53,16 @@ public class DataSourcePostProcessor implements BeanPostProcessor {
         }
         return bean;
     }
+
+    //子context的关闭事件也会发布到父context
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        if (event.getApplicationContext() == applicationContext) {
+            SpringBootDataSourceFactory.unregisterApplicationDataSource(applicationContext);
+        }
+    }
+
+    protected String getMode() {
+        return PropertyUtils.getString(PROPKEY_MODE, MODE_REPLACE, Unitils.getInstance().getConfiguration());
+    }
 }
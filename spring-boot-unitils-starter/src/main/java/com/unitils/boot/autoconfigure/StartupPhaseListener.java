@@ -0,0 +1,182 @@
+package com.unitils.boot.autoconfigure;
+
+import com.unitils.boot.util.PhaseTimer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringApplicationRunListener;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 记录每次SpringApplication启动各阶段的耗时，refresh阶段包含组件扫描、@MapperScan和MyBatis XML的解析。
+ * 启动完成时按fork输出，通过META-INF/spring.factories注册，兼容Spring Boot 1.5的finished回调。
+ * 只在Unitils的runner开启了PhaseTimer时记录，应用本身或者其他不是测试启动的SpringApplication不记录也不输出。
+ * 每个context的启动总耗时总是记录，HarnessEvents用它作为context的创建耗时
+ * @Date:Created in 2018-07-08
+ */
+public class StartupPhaseListener implements SpringApplicationRunListener {
+
+    private static final Log logger = LogFactory.getLog(StartupPhaseListener.class);
+
+    /* System property that surefire can pass to every fork with systemPropertyVariables */
+    public static final String SUREFIRE_FORK_NUMBER = "surefire.forkNumber";
+
+    /* The phase timings of all application startups in this JVM */
+    private static final List<Map<String, Long>> startups = new CopyOnWriteArrayList<Map<String, Long>>();
+
+    /* The time SpringApplication took to run, in ms, per started context */
+    private static final Map<ApplicationContext, Long> loadTimes = new WeakHashMap<ApplicationContext, Long>();
+
+    private final SpringApplication application;
+
+    private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+    private long phaseStartTime;
+
+    private long startTime;
+
+    /* True if the startup is timed, decided when the application starts */
+    private boolean active;
+
+    public StartupPhaseListener(SpringApplication application, String[] args) {
+        this.application = application;
+    }
+
+    /**
+     * @return The phase timings in milliseconds of every application startup in this JVM, in the order of the phases
+     */
+    public static List<Map<String, Long>> getStartups() {
+        return Collections.unmodifiableList(startups);
+    }
+
+    /**
+     * @return The surefire fork number, or the name of the JVM if the fork number is not passed to the fork
+     */
+    public static String getForkName() {
+        String forkNumber = System.getProperty(SUREFIRE_FORK_NUMBER);
+        return forkNumber != null ? forkNumber : ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    /**
+     * @param context The context, not null
+     * @return The time SpringApplication took to create and refresh the context, in ms, null if it was not created by a SpringApplication
+     */
+    public static Long getLoadTime(ApplicationContext context) {
+        synchronized (loadTimes) {
+            return loadTimes.get(context);
+        }
+    }
+
+    public void starting() {
+        active = PhaseTimer.isEnabled();
+        startTime = System.currentTimeMillis();
+        phaseStartTime = startTime;
+    }
+
+    public void environmentPrepared(ConfigurableEnvironment environment) {
+        endPhase("environment");
+    }
+
+    public void contextPrepared(ConfigurableApplicationContext context) {
+        endPhase("contextPrepared");
+    }
+
+    public void contextLoaded(ConfigurableApplicationContext context) {
+        endPhase("sourcesLoaded");
+    }
+
+    public void started(ConfigurableApplicationContext context) {
+        endPhase("refresh");
+        recordLoadTime(context);
+    }
+
+    public void running(ConfigurableApplicationContext context) {
+        endPhase("runners");
+        recordStartup();
+    }
+
+    public void failed(ConfigurableApplicationContext context, Throwable exception) {
+        if (!active) {
+            return;
+        }
+        endPhase("failed");
+        logger.info("Fork " + getForkName() + " failed to start " + getApplicationName() + ", phases (ms): " + phases);
+    }
+
+    /**
+     * Called by Spring Boot 1.5 instead of started, running and failed, after the runners are called.
+     */
+    public void finished(ConfigurableApplicationContext context, Throwable exception) {
+        if (exception != null) {
+            failed(context, exception);
+            return;
+        }
+        endPhase("refreshAndRunners");
+        recordLoadTime(context);
+        recordStartup();
+    }
+
+    //从SpringApplication开始运行到context刷新完成的时间，Spring Boot 1.5中还包括runner
+    protected void recordLoadTime(ConfigurableApplicationContext context) {
+        if (context == null) {
+            return;
+        }
+        synchronized (loadTimes) {
+            loadTimes.put(context, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    protected void recordStartup() {
+        if (!active) {
+            return;
+        }
+        startups.add(Collections.unmodifiableMap(phases));
+        long total = 0;
+        for (Long time : phases.values()) {
+            total += time;
+        }
+        logger.info("Fork " + getForkName() + " started " + getApplicationName() + " in " + total + " ms, phases (ms): " + phases);
+    }
+
+    protected void endPhase(String phase) {
+        if (!active) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        phases.put(phase, now - phaseStartTime);
+        phaseStartTime = now;
+    }
+
+    //配置类的名称，测试中的主类是surefire的ForkedBooter等启动类，没有配置类时才使用
+    protected String getApplicationName() {
+        // Spring Boot 2的getAllSources在1.5中叫getSources
+        Method getSources = ReflectionUtils.findMethod(SpringApplication.class, "getAllSources");
+        if (getSources == null) {
+            getSources = ReflectionUtils.findMethod(SpringApplication.class, "getSources");
+        }
+        Collection<?> sources = (Collection<?>) ReflectionUtils.invokeMethod(getSources, application);
+        if (sources != null && !sources.isEmpty()) {
+            StringBuilder names = new StringBuilder();
+            for (Object source : sources) {
+                names.append(names.length() == 0 ? "" : ",").append(source instanceof Class ? ((Class<?>) source).getSimpleName() : String.valueOf(source));
+            }
+            return names.toString();
+        }
+        Class<?> mainApplicationClass = application.getMainApplicationClass();
+        return mainApplicationClass != null ? mainApplicationClass.getSimpleName() : "application";
+    }
+}
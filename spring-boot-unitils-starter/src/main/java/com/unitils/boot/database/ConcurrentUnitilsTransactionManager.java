@@ -0,0 +1,55 @@
+package com.unitils.boot.database;
+
+import com.unitils.boot.util.PhaseTimer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.unitils.database.transaction.impl.DefaultUnitilsTransactionManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: DefaultUnitilsTransactionManager用HashMap保存每个测试实例的事务，这里换成同步的HashMap，
+ * 并行执行的测试方法可以同时开始和结束各自的事务。事务本身由Spring绑定到当前线程，每个线程使用自己的连接。
+ * 没有当前测试时（例如创建Spring context时）测试实例为null，所以不能使用ConcurrentHashMap
+ * @Date:Created in 2018-07-08
+ */
+public class ConcurrentUnitilsTransactionManager extends DefaultUnitilsTransactionManager {
+
+    public ConcurrentUnitilsTransactionManager() {
+        testObjectTransactionActiveMap = Collections.synchronizedMap(new HashMap<Object, Boolean>());
+        testObjectTransactionStatusMap = Collections.synchronizedMap(new HashMap<Object, TransactionStatus>());
+        testObjectPlatformTransactionManagerMap = Collections.synchronizedMap(new HashMap<Object, PlatformTransactionManager>());
+    }
+
+    @Override
+    public void startTransaction(Object testObject) {
+        PhaseTimer.begin();
+        try {
+            super.startTransaction(testObject);
+        } finally {
+            PhaseTimer.end("transaction.begin");
+        }
+    }
+
+    @Override
+    public void commit(Object testObject) {
+        PhaseTimer.begin();
+        try {
+            super.commit(testObject);
+        } finally {
+            PhaseTimer.end("transaction.commit");
+        }
+    }
+
+    @Override
+    public void rollback(Object testObject) {
+        PhaseTimer.begin();
+        try {
+            super.rollback(testObject);
+        } finally {
+            PhaseTimer.end("transaction.rollback");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.unitils.boot.database;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 记录当前线程获取数据库连接的次数和耗时，每个测试结束时记录到PhaseTimer并清零
+ * @Date:Created in 2018-07-08
+ */
+public class ConnectionTimer {
+
+    private static final ThreadLocal<long[]> timings = new ThreadLocal<long[]>() {
+
+        @Override
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
+
+    /**
+     * @param nanos The time it took to get a connection, in nanoseconds
+     */
+    public static void record(long nanos) {
+        long[] timing = timings.get();
+        timing[0]++;
+        timing[1] += nanos;
+    }
+
+    /**
+     * @return The number of connections the current thread got since the last reset
+     */
+    public static long getConnectionCount() {
+        return timings.get()[0];
+    }
+
+    /**
+     * @return The time the current thread spent getting connections since the last reset, in milliseconds
+     */
+    public static long getConnectionTime() {
+        return timings.get()[1] / 1000000;
+    }
+
+    /**
+     * @return The time the current thread spent getting connections since the last reset, in nanoseconds
+     */
+    public static long getConnectionNanos() {
+        return timings.get()[1];
+    }
+
+    public static void reset() {
+        long[] timing = timings.get();
+        timing[0] = 0;
+        timing[1] = 0;
+    }
+}
@@ -0,0 +1,188 @@
+package com.unitils.boot.database;
+
+import org.unitils.core.UnitilsException;
+import org.unitils.core.util.ConfigUtils;
+import org.unitils.dbmaintainer.script.ScriptParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 执行classpath中的DDL脚本（例如user.ddl），用于新建的worker schema和内嵌数据库。
+ * 执行后在schema的标记表中记录脚本内容的哈希值，脚本修改后可以发现schema中的表已经过时
+ * @Date:Created in 2018-07-08
+ */
+public class DdlScripts {
+
+    /* Name of the table that records the hash of the DDL scripts that the tables of a schema were created from */
+    public static final String MARKER_TABLE_NAME = "ut_schema_ddl";
+
+    /**
+     * Executes the statements of the given scripts on the given connection.
+     *
+     * @param connection    The connection, not null
+     * @param configuration The Unitils configuration, used to find the script parser, not null
+     * @param dialect       The database dialect, null if not configured
+     * @param ddlScripts    The names of the scripts on the class path, not null
+     */
+    public static void execute(Connection connection, Properties configuration, String dialect, List<String> ddlScripts) throws SQLException {
+        execute(connection, parse(configuration, dialect, ddlScripts));
+    }
+
+    /**
+     * @param connection The connection, not null
+     * @param statements The parsed statements, not null
+     */
+    public static void execute(Connection connection, List<String> statements) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            for (String ddl : statements) {
+                statement.execute(ddl);
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @param configuration The Unitils configuration, used to find the script parser, not null
+     * @param dialect       The database dialect, null if not configured
+     * @param ddlScripts    The names of the scripts on the class path, not null
+     * @return The statements of all scripts, not null
+     */
+    public static List<String> parse(Properties configuration, String dialect, List<String> ddlScripts) {
+        List<String> statements = new ArrayList<String>();
+        for (String ddlScript : ddlScripts) {
+            statements.addAll(parse(configuration, dialect, ddlScript));
+        }
+        return statements;
+    }
+
+    /**
+     * @param statements The parsed statements, not null
+     * @return The MD5 hash of the statements as hex string, not null
+     */
+    public static String hash(List<String> statements) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            for (String statement : statements) {
+                digest.update(statement.trim().getBytes("UTF-8"));
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to calculate the hash of the DDL scripts", e);
+        }
+    }
+
+    /**
+     * @param connection The connection, not null
+     * @param schemaName The name of the schema, or of the database in mysql, not null
+     * @return The hash recorded by {@link #recordHash}, null if the schema has no marker table
+     */
+    public static String getRecordedHash(Connection connection, String schemaName) {
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                ResultSet resultSet = statement.executeQuery("select ddl_hash from " + schemaName + "." + MARKER_TABLE_NAME);
+                try {
+                    return resultSet.next() ? resultSet.getString(1) : null;
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            // 标记表不存在
+            return null;
+        }
+    }
+
+    /**
+     * Records the hash of the DDL scripts that the tables of the schema were created from in its marker table.
+     *
+     * @param connection The connection, not null
+     * @param schemaName The name of the schema, or of the database in mysql, not null
+     * @param hash       The hash of the scripts, not null
+     */
+    public static void recordHash(Connection connection, String schemaName, String hash) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("create table " + schemaName + "." + MARKER_TABLE_NAME + " (ddl_hash varchar(32) not null)");
+            statement.execute("insert into " + schemaName + "." + MARKER_TABLE_NAME + " (ddl_hash) values ('" + hash + "')");
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @param connection The connection, not null
+     * @param catalog    True if the schema is a catalog, e.g. a mysql database
+     * @param schemaName The name of the schema, not null
+     * @return True if the schema contains at least one table
+     */
+    public static boolean hasTables(Connection connection, boolean catalog, String schemaName) throws SQLException {
+        if (connection.getMetaData().storesUpperCaseIdentifiers()) {
+            schemaName = schemaName.toUpperCase();
+        }
+        ResultSet resultSet = catalog ? connection.getMetaData().getTables(schemaName, null, "%", new String[]{"TABLE"})
+                : connection.getMetaData().getTables(null, schemaName, "%", new String[]{"TABLE"});
+        try {
+            return resultSet.next();
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    //使用Unitils的ScriptParser拆分语句，最后一条语句没有分号时补上
+    public static List<String> parse(Properties configuration, String dialect, String ddlScript) {
+        String resourceName = ddlScript.trim().startsWith("/") ? ddlScript.trim().substring(1) : ddlScript.trim();
+        InputStream inputStream = DdlScripts.class.getClassLoader().getResourceAsStream(resourceName);
+        if (inputStream == null) {
+            throw new UnitilsException("DDL script " + ddlScript + " not found on the class path");
+        }
+        StringBuilder script = new StringBuilder();
+        try {
+            InputStreamReader reader = new InputStreamReader(inputStream, "UTF-8");
+            char[] buffer = new char[4096];
+            for (int length = reader.read(buffer); length != -1; length = reader.read(buffer)) {
+                script.append(buffer, 0, length);
+            }
+        } catch (IOException e) {
+            throw new UnitilsException("Unable to read DDL script " + ddlScript, e);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        if (!script.toString().trim().endsWith(";")) {
+            script.append(";\n");
+        }
+
+        ScriptParser scriptParser = ConfigUtils.getInstanceOf(ScriptParser.class, configuration, dialect);
+        scriptParser.init(configuration, new StringReader(script.toString()));
+        List<String> statements = new ArrayList<String>();
+        for (String statement = scriptParser.getNextStatement(); statement != null; statement = scriptParser.getNextStatement()) {
+            statements.add(statement);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,122 @@
+package com.unitils.boot.database;
+
+import com.unitils.boot.autoconfigure.DataSourcePostProcessor;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitils.core.Module;
+import org.unitils.core.TestListener;
+import org.unitils.core.UnitilsException;
+import org.unitils.util.PropertyUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 使用内嵌的H2数据库（MySQL兼容模式）代替外部的mysql，测试不再有网络往返和InnoDB提交的开销。
+ * 该模块在WorkerSchemaModule和DatabaseModule之前初始化：把database.*改写为H2的配置，DbUnit使用H2对应的IMetadataHandler，
+ * 数据库中的表不是由配置的DDL脚本（例如user.ddl）的当前内容创建时，清空数据库并执行脚本。
+ * 通过unitils.module.embeddedDatabase.enabled开启。DataSourcePostProcessor替换的dataSource也指向H2，
+ * H2不区分大小写且保留标识符原样，MyBatis的mapper（例如UserMapper.xml）不需要修改
+ * @Date:Created in 2018-07-08
+ */
+public class EmbeddedDatabaseModule implements Module {
+
+    private static final Log logger = LogFactory.getLog(EmbeddedDatabaseModule.class);
+
+    /* Property key indicating whether the tests use the embedded database instead of the configured database, the module switch of Unitils */
+    public static final String PROPKEY_ENABLED = "unitils.module.embeddedDatabase.enabled";
+
+    /* Property key of the url of the embedded database */
+    public static final String PROPKEY_URL = "EmbeddedDatabaseModule.url";
+
+    /* Property key of the DDL scripts on the class path that create the tables of the embedded database */
+    public static final String PROPKEY_DDL_SCRIPTS = "EmbeddedDatabaseModule.ddlScripts";
+
+    public static final String PROPKEY_METADATA_HANDLER = "org.dbunit.database.IMetadataHandler.implClassName";
+
+    public static final String PROPKEY_STORED_IDENTIFIER_CASE = "database.storedIndentifierCase.h2";
+
+    public static final String DEFAULT_URL = "jdbc:h2:mem:unitils;MODE=MySQL;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=false";
+
+    public static final String H2_DRIVER_CLASS_NAME = "org.h2.Driver";
+
+    public static final String H2_SCHEMA_NAME = "PUBLIC";
+
+    /**
+     * Rewrites the database configuration to the embedded database and creates its tables if needed.
+     *
+     * @param configuration The configuration, not null
+     */
+    public void init(Properties configuration) {
+        if (!PropertyUtils.getBoolean(PROPKEY_ENABLED, false, configuration)) {
+            return;
+        }
+        String url = PropertyUtils.getString(PROPKEY_URL, DEFAULT_URL, configuration);
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_DRIVER_CLASS_NAME, H2_DRIVER_CLASS_NAME);
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_URL, url);
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_USER_NAME, "sa");
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_PASSWORD, "");
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_SCHEMA_NAMES, H2_SCHEMA_NAME);
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_DIALECT, "h2");
+        // DATABASE_TO_UPPER=false时H2保留标识符原样，Unitils生成的sql中不能转成小写
+        configuration.setProperty(PROPKEY_STORED_IDENTIFIER_CASE, "mixed_case");
+        // MySqlMetadataHandler按catalog查找表，H2中需要按schema查找
+        configuration.setProperty(PROPKEY_METADATA_HANDLER, "org.dbunit.database.DefaultMetadataHandler");
+        // 应用的连接池指向外部数据库，内嵌数据库只能使用替换模式
+        configuration.setProperty(DataSourcePostProcessor.PROPKEY_MODE, DataSourcePostProcessor.MODE_REPLACE);
+
+        try {
+            Class.forName(H2_DRIVER_CLASS_NAME);
+            createTables(configuration, url);
+        } catch (ClassNotFoundException e) {
+            throw new UnitilsException("Unable to load the H2 driver, add com.h2database:h2 to the test dependencies", e);
+        } catch (SQLException e) {
+            throw new UnitilsException("Unable to create the tables of the embedded database " + url, e);
+        }
+        logger.info("Using embedded database " + url);
+    }
+
+    public void afterInit() {
+    }
+
+    public TestListener getTestListener() {
+        return new TestListener() {
+        };
+    }
+
+    //同一个JVM中的内存数据库只创建一次表，文件数据库中的表由其他版本的DDL脚本创建时重新创建
+    protected void createTables(Properties configuration, String url) throws SQLException {
+        List<String> ddlScripts = PropertyUtils.getStringList(PROPKEY_DDL_SCRIPTS, configuration);
+        if (ddlScripts.isEmpty()) {
+            return;
+        }
+        List<String> statements = DdlScripts.parse(configuration, "h2", ddlScripts);
+        String ddlHash = DdlScripts.hash(statements);
+        Connection connection = DriverManager.getConnection(url, "sa", "");
+        try {
+            if (ddlHash.equals(DdlScripts.getRecordedHash(connection, H2_SCHEMA_NAME))) {
+                logger.debug("Reusing the tables of embedded database " + url);
+                return;
+            }
+            if (DdlScripts.hasTables(connection, false, H2_SCHEMA_NAME)) {
+                logger.info("DDL scripts " + ddlScripts + " changed, dropping the tables of embedded database " + url);
+                Statement statement = connection.createStatement();
+                try {
+                    statement.execute("drop all objects");
+                } finally {
+                    statement.close();
+                }
+            }
+            DdlScripts.execute(connection, statements);
+            DdlScripts.recordHash(connection, H2_SCHEMA_NAME, ddlHash);
+        } finally {
+            connection.close();
+        }
+        logger.info("Created the tables of embedded database " + url + " from " + ddlScripts);
+    }
+}
@@ -0,0 +1,164 @@
+package com.unitils.boot.database;
+
+import com.unitils.boot.SpringBootModule;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.unitils.core.ModulesRepository;
+import org.unitils.core.Unitils;
+import org.unitils.core.config.Configuration;
+import org.unitils.database.config.DatabaseConfiguration;
+import org.unitils.database.config.DatabaseConfigurationsFactory;
+import org.unitils.database.config.PropertiesDataSourceFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: Unitils的数据源工厂。DataSourcePostProcessor为wrap模式时，默认数据库使用Spring Boot配置的连接池
+ * （HikariCP、Tomcat JDBC等，连接池参数通过spring.datasource.*配置），Unitils只在外面包一层事务代理；
+ * 每个context注册自己的连接池，获取连接时使用当前测试的context的连接池，context关闭时移除。
+ * 当前测试的context没有注册连接池时（例如context启动期间），和PropertiesDataSourceFactory一样按database.*创建数据源，
+ * 不使用可能属于其他context的连接池。获取连接的耗时记录到ConnectionTimer
+ * @Date:Created in 2018-07-08
+ */
+public class SpringBootDataSourceFactory extends PropertiesDataSourceFactory {
+
+    private static final Log logger = LogFactory.getLog(SpringBootDataSourceFactory.class);
+
+    /* The pooled data sources of the application per open context */
+    private static final Map<ApplicationContext, DataSource> applicationDataSources = new HashMap<ApplicationContext, DataSource>();
+
+    /* True if this factory creates the data source of the default database */
+    private boolean defaultDatabase = true;
+
+    /**
+     * Lets the default database use the given pooled data source of the application in the tests of the given context.
+     *
+     * @param applicationContext The context that contains the data source, not null
+     * @param dataSource         The data source, not null
+     */
+    public static void registerApplicationDataSource(ApplicationContext applicationContext, DataSource dataSource) {
+        logger.info("Using application data source " + dataSource.getClass().getName() + " for the default database of " + applicationContext.getDisplayName());
+        synchronized (applicationDataSources) {
+            applicationDataSources.put(applicationContext, dataSource);
+        }
+    }
+
+    /**
+     * Removes the data source of the given context, called when the context is closed.
+     *
+     * @param applicationContext The context, not null
+     */
+    public static void unregisterApplicationDataSource(ApplicationContext applicationContext) {
+        synchronized (applicationDataSources) {
+            applicationDataSources.remove(applicationContext);
+        }
+    }
+
+    /**
+     * Gets the pooled data source of the context of the current test. Without a current test with a registered
+     * context, e.g. while a context is started, no pool is used: it could belong to the context of another test.
+     *
+     * @return The data source, null if the context of the current test did not register one
+     */
+    protected static DataSource getApplicationDataSource() {
+        ApplicationContext applicationContext = getCurrentApplicationContext();
+        if (applicationContext == null) {
+            return null;
+        }
+        synchronized (applicationDataSources) {
+            return applicationDataSources.get(applicationContext);
+        }
+    }
+
+    private static ApplicationContext getCurrentApplicationContext() {
+        Class<?> testClass = Unitils.getInstance().getTestContext().getTestClass();
+        ModulesRepository modulesRepository = Unitils.getInstance().getModulesRepository();
+        if (testClass == null || !modulesRepository.isModuleEnabled(SpringBootModule.class)) {
+            return null;
+        }
+        return modulesRepository.getModuleOfType(SpringBootModule.class).getRegisteredApplicationContext(testClass);
+    }
+
+    @Override
+    public void init(Properties configuration, String databaseName) {
+        super.init(configuration, databaseName);
+        defaultDatabase = new DatabaseConfigurationsFactory(new Configuration(configuration)).create().getDatabaseConfiguration(databaseName).isDefaultDatabase();
+    }
+
+    @Override
+    public void init(DatabaseConfiguration databaseConfiguration) {
+        super.init(databaseConfiguration);
+        defaultDatabase = databaseConfiguration.isDefaultDatabase();
+    }
+
+    @Override
+    public DataSource createDataSource() {
+        return new TimedDataSource(defaultDatabase);
+    }
+
+    //连接池在Spring context创建时才注册，所以每次获取连接时再决定使用哪个数据源
+    protected class TimedDataSource extends AbstractDataSource implements Closeable {
+
+        private final boolean defaultDatabase;
+
+        private DataSource propertiesDataSource;
+
+        public TimedDataSource(boolean defaultDatabase) {
+            this.defaultDatabase = defaultDatabase;
+        }
+
+        public Connection getConnection() throws SQLException {
+            long startTime = System.nanoTime();
+            Connection connection = getTargetDataSource().getConnection();
+            ConnectionTimer.record(System.nanoTime() - startTime);
+            return connection;
+        }
+
+        public Connection getConnection(String username, String password) throws SQLException {
+            long startTime = System.nanoTime();
+            Connection connection = getTargetDataSource().getConnection(username, password);
+            ConnectionTimer.record(System.nanoTime() - startTime);
+            return connection;
+        }
+
+        /**
+         * Closes the data source created from the database properties, the pool of the application is not closed.
+         */
+        public void close() throws IOException {
+            synchronized (this) {
+                if (propertiesDataSource instanceof BasicDataSource) {
+                    try {
+                        ((BasicDataSource) propertiesDataSource).close();
+                    } catch (SQLException e) {
+                        throw new IOException("Unable to close data source", e);
+                    }
+                }
+                propertiesDataSource = null;
+            }
+        }
+
+        protected DataSource getTargetDataSource() {
+            DataSource dataSource = defaultDatabase ? getApplicationDataSource() : null;
+            if (dataSource != null) {
+                return dataSource;
+            }
+            synchronized (this) {
+                if (propertiesDataSource == null) {
+                    propertiesDataSource = SpringBootDataSourceFactory.super.createDataSource();
+                }
+                return propertiesDataSource;
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.unitils.boot.database;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitils.core.Module;
+import org.unitils.core.TestListener;
+import org.unitils.core.UnitilsException;
+import org.unitils.core.config.Configuration;
+import org.unitils.core.util.ConfigUtils;
+import org.unitils.database.config.DataSourceFactory;
+import org.unitils.database.config.DatabaseConfiguration;
+import org.unitils.database.config.DatabaseConfigurationsFactory;
+import org.unitils.util.PropertyUtils;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+import static org.apache.commons.lang.StringUtils.join;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 多个surefire fork同时运行测试时，每个fork使用自己的schema，例如test_w1、test_w2，互不删除对方的数据。
+ * 该模块在DatabaseModule之前初始化：改写database.schemaNames和database.url，schema不存在时创建并执行配置的DDL脚本，
+ * 脚本内容的哈希值记录在schema的标记表中。之后的测试运行在哈希值相同时直接复用已有的schema，
+ * DDL脚本修改后（或者schema中的表不是由这些脚本创建的）删除并重新创建schema。
+ * 创建schema的连接和测试一样通过Unitils配置的DataSourceFactory获取。
+ * DataSourcePostProcessor替换的dataSource和DbUnit都读取改写后的配置。
+ * 通过unitils.module.workerSchema.enabled开启
+ * @Date:Created in 2018-07-08
+ */
+public class WorkerSchemaModule implements Module {
+
+    private static final Log logger = LogFactory.getLog(WorkerSchemaModule.class);
+
+    /* Property key of the id of the worker, e.g. the surefire fork number */
+    public static final String PROPKEY_WORKER_ID = "WorkerSchemaModule.workerId";
+
+    /* Property key of the DDL scripts on the class path that create the tables of a new schema */
+    public static final String PROPKEY_DDL_SCRIPTS = "WorkerSchemaModule.ddlScripts";
+
+    /* System property that surefire can pass to every fork with systemPropertyVariables */
+    public static final String SUREFIRE_FORK_NUMBER = "surefire.forkNumber";
+
+    public static final String PROPKEY_DATABASE_DRIVER_CLASS_NAME = "database.driverClassName";
+
+    public static final String PROPKEY_DATABASE_URL = "database.url";
+
+    public static final String PROPKEY_DATABASE_USER_NAME = "database.userName";
+
+    public static final String PROPKEY_DATABASE_PASSWORD = "database.password";
+
+    public static final String PROPKEY_DATABASE_SCHEMA_NAMES = "database.schemaNames";
+
+    public static final String PROPKEY_DATABASE_DIALECT = "database.dialect";
+
+    private static final Pattern MYSQL_URL_PATTERN = Pattern.compile("(jdbc:mysql://[^/?]*)(/[^?]*)?(\\?.*)?");
+
+    /**
+     * Rewrites the database configuration to the schemas of this worker and creates them if needed.
+     *
+     * @param configuration The configuration, not null
+     */
+    public void init(Properties configuration) {
+        String workerId = getWorkerId(configuration);
+        String url = PropertyUtils.getString(PROPKEY_DATABASE_URL, configuration);
+        String dialect = PropertyUtils.getString(PROPKEY_DATABASE_DIALECT, null, configuration);
+        List<String> schemaNames = PropertyUtils.getStringList(PROPKEY_DATABASE_SCHEMA_NAMES, configuration);
+        if (schemaNames.isEmpty()) {
+            throw new UnitilsException("No value found for property " + PROPKEY_DATABASE_SCHEMA_NAMES + ", unable to create a schema per worker");
+        }
+
+        List<String> workerSchemaNames = new ArrayList<String>();
+        for (String schemaName : schemaNames) {
+            workerSchemaNames.add(getWorkerSchemaName(schemaName, workerId));
+        }
+        String workerUrl = getWorkerUrl(url, dialect, workerSchemaNames.get(0));
+        DataSource dataSource = createDataSource(configuration, url);
+        DataSource workerDataSource = createDataSource(configuration, workerUrl);
+        try {
+            for (String workerSchemaName : workerSchemaNames) {
+                provisionSchema(configuration, dataSource, workerDataSource, dialect, workerSchemaName);
+            }
+        } catch (SQLException e) {
+            throw new UnitilsException("Unable to create the schemas " + workerSchemaNames + " of worker " + workerId, e);
+        } finally {
+            closeDataSource(dataSource);
+            closeDataSource(workerDataSource);
+        }
+
+        configuration.setProperty(PROPKEY_DATABASE_URL, workerUrl);
+        configuration.setProperty(PROPKEY_DATABASE_SCHEMA_NAMES, join(workerSchemaNames, ","));
+        logger.info("Worker " + workerId + " uses schemas " + workerSchemaNames + ", url " + workerUrl);
+    }
+
+    public void afterInit() {
+    }
+
+    public TestListener getTestListener() {
+        return new TestListener() {
+        };
+    }
+
+    //没有配置workerId时使用surefire的fork编号，都没有时使用1
+    protected String getWorkerId(Properties configuration) {
+        String workerId = PropertyUtils.getString(PROPKEY_WORKER_ID, null, configuration);
+        if (isBlank(workerId)) {
+            workerId = System.getProperty(SUREFIRE_FORK_NUMBER);
+        }
+        if (isBlank(workerId)) {
+            logger.warn("No value found for " + PROPKEY_WORKER_ID + " or " + SUREFIRE_FORK_NUMBER + ", using worker 1");
+            workerId = "1";
+        }
+        return workerId.trim();
+    }
+
+    protected String getWorkerSchemaName(String schemaName, String workerId) {
+        return schemaName + "_w" + workerId;
+    }
+
+    /**
+     * Points the url to the default schema of the worker, so that the unqualified table names of the application
+     * (e.g. in the MyBatis mappers) resolve to the tables of the worker.
+     *
+     * @param url              The configured url, not null
+     * @param dialect          The database dialect, null if not configured
+     * @param workerSchemaName The default schema of the worker, not null
+     * @return The url of the worker, not null
+     */
+    protected String getWorkerUrl(String url, String dialect, String workerSchemaName) {
+        if ("mysql".equalsIgnoreCase(dialect)) {
+            // mysql的schema就是url中的数据库
+            Matcher matcher = MYSQL_URL_PATTERN.matcher(url);
+            if (!matcher.matches()) {
+                throw new UnitilsException("Unable to replace the database in url " + url);
+            }
+            return matcher.group(1) + "/" + workerSchemaName + (matcher.group(3) == null ? "" : matcher.group(3));
+        }
+        if ("h2".equalsIgnoreCase(dialect)) {
+            return url + ";SCHEMA=" + workerSchemaName;
+        }
+        if ("postgresql".equalsIgnoreCase(dialect)) {
+            return url + (url.contains("?") ? "&" : "?") + "currentSchema=" + workerSchemaName;
+        }
+        logger.warn("Unable to set the default schema in the url for dialect " + dialect + ", only " + PROPKEY_DATABASE_SCHEMA_NAMES + " is changed");
+        return url;
+    }
+
+    //schema由相同的DDL脚本创建时直接复用，否则重新创建schema并执行DDL脚本
+    protected void provisionSchema(Properties configuration, DataSource dataSource, DataSource workerDataSource, String dialect,
+                                   String workerSchemaName) throws SQLException {
+        boolean mysql = "mysql".equalsIgnoreCase(dialect);
+        List<String> ddlScripts = PropertyUtils.getStringList(PROPKEY_DDL_SCRIPTS, configuration);
+        List<String> statements = DdlScripts.parse(configuration, dialect, ddlScripts);
+        String ddlHash = DdlScripts.hash(statements);
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute((mysql ? "create database if not exists " : "create schema if not exists ") + workerSchemaName);
+                if (ddlScripts.isEmpty()) {
+                    return;
+                }
+                if (ddlHash.equals(DdlScripts.getRecordedHash(connection, workerSchemaName))) {
+                    logger.debug("Reusing schema " + workerSchemaName);
+                    return;
+                }
+                if (DdlScripts.hasTables(connection, mysql, workerSchemaName)) {
+                    // 表是由其他版本的DDL脚本创建的
+                    logger.info("DDL scripts " + ddlScripts + " changed, recreating schema " + workerSchemaName);
+                    statement.execute(mysql ? "drop database " + workerSchemaName : "drop schema " + workerSchemaName + " cascade");
+                    statement.execute((mysql ? "create database " : "create schema ") + workerSchemaName);
+                }
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+
+        connection = workerDataSource.getConnection();
+        try {
+            DdlScripts.execute(connection, statements);
+            DdlScripts.recordHash(connection, workerSchemaName, ddlHash);
+        } finally {
+            connection.close();
+        }
+        logger.info("Created schema " + workerSchemaName + " from " + ddlScripts);
+    }
+
+    /**
+     * Creates a data source for the given url with the data source factory and the default database settings
+     * of the Unitils configuration.
+     *
+     * @param configuration The configuration, not null
+     * @param url           The url, not null
+     * @return The data source, not null
+     */
+    protected DataSource createDataSource(Properties configuration, String url) {
+        DatabaseConfiguration defaultDatabase = new DatabaseConfigurationsFactory(new Configuration(configuration)).create().getDatabaseConfiguration();
+        // 不是测试使用的数据库，不能使用应用的连接池
+        DatabaseConfiguration databaseConfiguration = new DatabaseConfiguration(defaultDatabase.getDatabaseName(), defaultDatabase.getDialect(),
+                defaultDatabase.getDriverClassName(), url, defaultDatabase.getUserName(), defaultDatabase.getPassword(),
+                defaultDatabase.getDefaultSchemaName(), defaultDatabase.getSchemaNames(), defaultDatabase.isUpdateDisabled(), false);
+        DataSourceFactory dataSourceFactory = ConfigUtils.getConfiguredInstanceOf(DataSourceFactory.class, configuration);
+        dataSourceFactory.init(databaseConfiguration);
+        return dataSourceFactory.createDataSource();
+    }
+
+    //只在创建schema时使用，关闭连接池中空闲的连接
+    protected void closeDataSource(DataSource dataSource) {
+        try {
+            if (dataSource instanceof Closeable) {
+                ((Closeable) dataSource).close();
+            } else if (dataSource instanceof BasicDataSource) {
+                ((BasicDataSource) dataSource).close();
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to close data source", e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import com.unitils.boot.util.HarnessEvents;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.unitils.dbunit.datasetloadstrategy.impl.BaseDataSetLoadStrategy;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 批量的CleanInsert策略，先删除数据集中有关表的数据，再按批次插入数据。
+ * 数据库方言为mysql时使用多行insert语句，相当于驱动的rewriteBatchedStatements，其他数据库使用JDBC批量执行
+ * @Date:Created in 2018-07-08
+ */
+public class BatchCleanInsertLoadStrategy extends BaseDataSetLoadStrategy {
+
+    private static final Log logger = LogFactory.getLog(BatchCleanInsertLoadStrategy.class);
+
+    @Override
+    protected void doExecute(DbUnitDatabaseConnection dbUnitDatabaseConnection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+        BatchInserter inserter = BatchInserter.create(dbUnitDatabaseConnection);
+
+        long startTime = System.currentTimeMillis();
+        List<String> tableNames = BatchInserter.getTableNames(dataSet);
+        inserter.deleteAll(tableNames);
+        logger.debug("Deleted data of " + tableNames.size() + " table(s) in " + (System.currentTimeMillis() - startTime) + " ms");
+
+        ITableIterator iterator = dataSet.iterator();
+        while (iterator.next()) {
+            ITable table = iterator.getTable();
+            long tableStartTime = System.nanoTime();
+            int rowCount = inserter.insert(table);
+            long tableTime = System.nanoTime() - tableStartTime;
+            HarnessEvents.tableLoaded(table.getTableMetaData().getTableName(), rowCount, tableTime);
+            logger.info("Inserted " + rowCount + " row(s) into " + table.getTableMetaData().getTableName() + " in "
+                + tableTime / 1000000 + " ms");
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.*;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.util.QualifiedTableName;
+import org.unitils.core.Unitils;
+import org.unitils.util.PropertyUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 按批次插入表数据，mysql下把多行拼成一条insert ... values (...),(...)语句，
+ * 其他数据库使用JDBC的批量执行。表只按行号向前读取，因此也支持流式的数据集
+ * @Date:Created in 2018-07-08
+ */
+public class BatchInserter {
+
+    /* Property key for the number of rows sent to the database at once */
+    public static final String PROPKEY_BATCH_SIZE = "BatchCleanInsertLoadStrategy.batchSize";
+
+    /* Property key of the default database dialect */
+    public static final String PROPKEY_DATABASE_DIALECT = "database.dialect";
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /* MySQL does not accept more than 65535 placeholders in one statement */
+    private static final int MAX_PARAMETERS = 65535;
+
+    private final IDatabaseConnection connection;
+
+    private final int batchSize;
+
+    private final boolean multiRowInsert;
+
+    private IDataSet databaseDataSet;
+
+    /**
+     * @param connection     The DbUnit connection, not null
+     * @param batchSize      The number of rows sent to the database at once
+     * @param multiRowInsert True to use multi-row insert statements instead of JDBC batches
+     */
+    public BatchInserter(IDatabaseConnection connection, int batchSize, boolean multiRowInsert) {
+        this.connection = connection;
+        this.batchSize = Math.max(1, batchSize);
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    /**
+     * Creates an inserter using the batch size and database dialect of the Unitils configuration.
+     *
+     * @param connection The DbUnit connection, not null
+     * @return The inserter, not null
+     */
+    public static BatchInserter create(IDatabaseConnection connection) {
+        Properties configuration = Unitils.getInstance().getConfiguration();
+        int batchSize = PropertyUtils.getInt(PROPKEY_BATCH_SIZE, DEFAULT_BATCH_SIZE, configuration);
+        boolean multiRowInsert = "mysql".equalsIgnoreCase(PropertyUtils.getString(PROPKEY_DATABASE_DIALECT, null, configuration));
+        return new BatchInserter(connection, batchSize, multiRowInsert);
+    }
+
+    /**
+     * @param dataSet The data set, not null
+     * @return The names of the tables in the data set, in data set order and without duplicates
+     */
+    public static List<String> getTableNames(IDataSet dataSet) throws DataSetException {
+        Set<String> tableNames = new LinkedHashSet<String>();
+        ITableIterator iterator = dataSet.iterator();
+        while (iterator.next()) {
+            tableNames.add(iterator.getTableMetaData().getTableName());
+        }
+        return new ArrayList<String>(tableNames);
+    }
+
+    /**
+     * Deletes all rows of the given tables, in reverse order so that child tables are emptied first.
+     *
+     * @param tableNames The table names, not null
+     */
+    public void deleteAll(List<String> tableNames) throws DatabaseUnitException, SQLException {
+        if (tableNames.isEmpty()) {
+            return;
+        }
+        Statement statement = getJdbcConnection().createStatement();
+        try {
+            for (int i = tableNames.size() - 1; i >= 0; i--) {
+                statement.addBatch("delete from " + getQualifiedTableName(tableNames.get(i)));
+            }
+            statement.executeBatch();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Inserts all rows of the given table.
+     *
+     * @param table The table, not null
+     * @return The number of inserted rows
+     */
+    public int insert(ITable table) throws DatabaseUnitException, SQLException {
+        return insert(table, table.getTableMetaData().getTableName());
+    }
+
+    /**
+     * Inserts all rows of the given table into the table with the given name. The column types are taken
+     * from the target table in the database.
+     *
+     * @param table           The table, not null
+     * @param targetTableName The table to insert into, not null
+     * @return The number of inserted rows
+     */
+    public int insert(ITable table, String targetTableName) throws DatabaseUnitException, SQLException {
+        return insert(table, targetTableName, null);
+    }
+
+    /**
+     * Inserts all rows of the given table into a table that has the columns of the given database table, e.g.
+     * a temporary copy that is not part of the database meta data.
+     *
+     * @param table                    The table, not null
+     * @param tableName                The table in the database that has the column types, not null
+     * @param qualifiedTargetTableName The escaped name of the table to insert into, null to insert into the table itself
+     * @return The number of inserted rows
+     */
+    public int insert(ITable table, String tableName, String qualifiedTargetTableName) throws DatabaseUnitException, SQLException {
+        Column[] columns = table.getTableMetaData().getColumns();
+        if (columns.length == 0) {
+            return 0;
+        }
+        ITableMetaData databaseMetaData = getDatabaseDataSet().getTableMetaData(tableName);
+        Column[] databaseColumns = getDatabaseColumns(columns, databaseMetaData);
+        DataType[] dataTypes = new DataType[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            dataTypes[i] = databaseColumns[i].getDataType();
+        }
+        if (qualifiedTargetTableName == null) {
+            qualifiedTargetTableName = getQualifiedName(connection.getSchema(), databaseMetaData.getTableName());
+        }
+        String insertPrefix = "insert into " + qualifiedTargetTableName + " (" + getColumnList(databaseColumns) + ") values ";
+
+        int rowsPerStatement = multiRowInsert ? Math.max(1, Math.min(batchSize, MAX_PARAMETERS / columns.length)) : 1;
+        RowWriter writer = new RowWriter(insertPrefix, columns, dataTypes, rowsPerStatement);
+        try {
+            int row = 0;
+            while (true) {
+                Object[] values = readRow(table, row, columns);
+                if (values == null) {
+                    break;
+                }
+                writer.add(values);
+                row++;
+            }
+            writer.flush();
+            return row;
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @param metaData  The meta data of the data set table, not null
+     * @param tableName The name of the table in the database, not null
+     * @return The escaped names of the columns of the data set table as they are named in the database, comma separated
+     */
+    public String getColumnList(ITableMetaData metaData, String tableName) throws DatabaseUnitException, SQLException {
+        return getColumnList(getDatabaseColumns(metaData.getColumns(), getDatabaseDataSet().getTableMetaData(tableName)));
+    }
+
+    /**
+     * @param metaData  The meta data of the data set table, not null
+     * @param tableName The name of the table in the database, not null
+     * @return The escaped names of the columns of the data set table as they are named in the database
+     */
+    public List<String> getColumnNames(ITableMetaData metaData, String tableName) throws DatabaseUnitException, SQLException {
+        List<String> columnNames = new ArrayList<String>();
+        for (Column column : getDatabaseColumns(metaData.getColumns(), getDatabaseDataSet().getTableMetaData(tableName))) {
+            columnNames.add(getQualifiedName(null, column.getColumnName()));
+        }
+        return columnNames;
+    }
+
+    /**
+     * @param metaData  The meta data of the data set table, not null
+     * @param tableName The name of the table in the database, not null
+     * @return The data types of the columns of the data set table in the database
+     */
+    public DataType[] getDataTypes(ITableMetaData metaData, String tableName) throws DatabaseUnitException, SQLException {
+        Column[] databaseColumns = getDatabaseColumns(metaData.getColumns(), getDatabaseDataSet().getTableMetaData(tableName));
+        DataType[] dataTypes = new DataType[databaseColumns.length];
+        for (int i = 0; i < databaseColumns.length; i++) {
+            dataTypes[i] = databaseColumns[i].getDataType();
+        }
+        return dataTypes;
+    }
+
+    /**
+     * @param tableName The name of the table in the database, not null
+     * @return The escaped names of the primary key columns of the table, empty if the table has no primary key
+     */
+    public List<String> getPrimaryKeyNames(String tableName) throws DatabaseUnitException, SQLException {
+        List<String> primaryKeyNames = new ArrayList<String>();
+        for (Column column : getDatabaseDataSet().getTableMetaData(tableName).getPrimaryKeys()) {
+            primaryKeyNames.add(getQualifiedName(null, column.getColumnName()));
+        }
+        return primaryKeyNames;
+    }
+
+    protected Connection getJdbcConnection() throws SQLException {
+        return connection.getConnection();
+    }
+
+    /**
+     * @param tableName The name of a data set table, not null
+     * @return The escaped name of the table in the database, including the schema
+     */
+    public String getQualifiedTableName(String tableName) throws DatabaseUnitException, SQLException {
+        return getQualifiedName(connection.getSchema(), getDatabaseDataSet().getTableMetaData(tableName).getTableName());
+    }
+
+    private IDataSet getDatabaseDataSet() throws SQLException {
+        if (databaseDataSet == null) {
+            databaseDataSet = connection.createDataSet();
+        }
+        return databaseDataSet;
+    }
+
+    private Column[] getDatabaseColumns(Column[] columns, ITableMetaData databaseMetaData) throws DataSetException {
+        Column[] databaseColumns = new Column[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            databaseColumns[i] = databaseMetaData.getColumns()[databaseMetaData.getColumnIndex(columns[i].getColumnName())];
+        }
+        return databaseColumns;
+    }
+
+    private String getColumnList(Column[] columns) {
+        StringBuilder columnList = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            columnList.append(i == 0 ? "" : ", ").append(getQualifiedName(null, columns[i].getColumnName()));
+        }
+        return columnList.toString();
+    }
+
+    /**
+     * @param prefix The schema name, null for a column name
+     * @param name   The table or column name, not null
+     * @return The name escaped with the escape pattern of the connection
+     */
+    public String getQualifiedName(String prefix, String name) {
+        String escapePattern = (String) connection.getConfig().getProperty("http://www.dbunit.org/properties/escapePattern");
+        return new QualifiedTableName(name, prefix, escapePattern).getQualifiedName();
+    }
+
+    //读取一行数据，超出行数时返回null
+    static Object[] readRow(ITable table, int row, Column[] columns) throws DataSetException {
+        Object[] values = new Object[columns.length];
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                Object value = table.getValue(row, columns[i].getColumnName());
+                values[i] = value == ITable.NO_VALUE ? null : value;
+            }
+        } catch (RowOutOfBoundsException e) {
+            return null;
+        }
+        return values;
+    }
+
+    //多行insert时缓存一个完整语句的行数，单行insert时每batchSize行执行一次
+    private class RowWriter {
+
+        private final String insertPrefix;
+
+        private final Column[] columns;
+
+        private final DataType[] dataTypes;
+
+        private final int rowsPerStatement;
+
+        private final List<Object[]> pendingRows = new ArrayList<Object[]>();
+
+        private PreparedStatement fullStatement;
+
+        private int batchedRows;
+
+        RowWriter(String insertPrefix, Column[] columns, DataType[] dataTypes, int rowsPerStatement) {
+            this.insertPrefix = insertPrefix;
+            this.columns = columns;
+            this.dataTypes = dataTypes;
+            this.rowsPerStatement = rowsPerStatement;
+        }
+
+        void add(Object[] values) throws SQLException, DataSetException {
+            pendingRows.add(values);
+            if (pendingRows.size() == rowsPerStatement) {
+                if (fullStatement == null) {
+                    fullStatement = getJdbcConnection().prepareStatement(buildSql(rowsPerStatement));
+                }
+                bind(fullStatement, pendingRows);
+                pendingRows.clear();
+                fullStatement.addBatch();
+                batchedRows += rowsPerStatement;
+                if (batchedRows >= batchSize) {
+                    fullStatement.executeBatch();
+                    batchedRows = 0;
+                }
+            }
+        }
+
+        void flush() throws SQLException, DataSetException {
+            if (fullStatement != null && batchedRows > 0) {
+                fullStatement.executeBatch();
+                batchedRows = 0;
+            }
+            if (!pendingRows.isEmpty()) {
+                PreparedStatement statement = getJdbcConnection().prepareStatement(buildSql(pendingRows.size()));
+                try {
+                    bind(statement, pendingRows);
+                    statement.executeUpdate();
+                } finally {
+                    statement.close();
+                }
+                pendingRows.clear();
+            }
+        }
+
+        void close() throws SQLException {
+            if (fullStatement != null) {
+                fullStatement.close();
+            }
+        }
+
+        private void bind(PreparedStatement statement, List<Object[]> rows) throws SQLException, DataSetException {
+            int index = 1;
+            for (Object[] values : rows) {
+                for (int i = 0; i < columns.length; i++) {
+                    // 和DbUnit一致，空值按列的SQL类型设置null，数字类型的setSqlValue不接受null
+                    if (values[i] == null) {
+                        statement.setNull(index++, dataTypes[i].getSqlType());
+                        continue;
+                    }
+                    try {
+                        dataTypes[i].setSqlValue(values[i], index++, statement);
+                    } catch (DataSetException e) {
+                        throw new DataSetException("Error casting value for column '" + columns[i].getColumnName() + "'", e);
+                    }
+                }
+            }
+        }
+
+        private String buildSql(int rowCount) {
+            StringBuilder row = new StringBuilder("(");
+            for (int i = 0; i < columns.length; i++) {
+                row.append(i == 0 ? "?" : ", ?");
+            }
+            row.append(")");
+            StringBuilder sql = new StringBuilder(insertPrefix.length() + rowCount * (row.length() + 2));
+            sql.append(insertPrefix);
+            for (int i = 0; i < rowCount; i++) {
+                sql.append(i == 0 ? "" : ", ").append(row);
+            }
+            return sql.toString();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import com.unitils.boot.xls.ColumnarTable;
+import com.unitils.boot.xls.LazyTable;
+import com.unitils.boot.xls.MergedTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.unitils.core.UnitilsException;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 记录每张表最后一次提交到数据库的数据集内容的哈希值和行数。
+ * 有测试提交了事务或者没有事务时全部失效，下次加载时重新插入数据。
+ * 数据集缓存中的表内容不变，它们的指纹只计算一次
+ * @Date:Created in 2018-07-08
+ */
+public class DataSetFingerprints {
+
+    private static final DataSetFingerprints INSTANCE = new DataSetFingerprints();
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<String, Fingerprint> fingerprints = new HashMap<String, Fingerprint>();
+
+    /* The fingerprints of the immutable tables, released together with the tables */
+    private final Map<ITable, Fingerprint> tableFingerprints = new WeakHashMap<ITable, Fingerprint>();
+
+    public static DataSetFingerprints getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param tableKey The database, schema and table name, not null
+     * @return The fingerprint of the data that was last committed to the table, null if unknown
+     */
+    public synchronized Fingerprint get(String tableKey) {
+        return fingerprints.get(tableKey);
+    }
+
+    public synchronized void put(String tableKey, Fingerprint fingerprint) {
+        fingerprints.put(tableKey, fingerprint);
+    }
+
+    public synchronized void putAll(Map<String, Fingerprint> tableFingerprints) {
+        fingerprints.putAll(tableFingerprints);
+    }
+
+    public synchronized void remove(String tableKey) {
+        fingerprints.remove(tableKey);
+    }
+
+    /**
+     * Forgets all fingerprints, e.g. because a test committed its changes.
+     */
+    public synchronized void invalidateAll() {
+        fingerprints.clear();
+    }
+
+    /**
+     * Returns the fingerprint of the content of the given table. The fingerprint of a table that can not change, like
+     * the tables of the data set cache, is calculated once and remembered as long as the table is used.
+     *
+     * @param table The table, not null
+     * @return The fingerprint, not null
+     */
+    public Fingerprint getFingerprint(ITable table) throws DataSetException {
+        if (!isImmutable(table)) {
+            return calculate(table);
+        }
+        synchronized (tableFingerprints) {
+            Fingerprint fingerprint = tableFingerprints.get(table);
+            if (fingerprint != null) {
+                return fingerprint;
+            }
+        }
+        // 在锁外计算，同时计算同一张表时结果相同
+        Fingerprint fingerprint = calculate(table);
+        synchronized (tableFingerprints) {
+            tableFingerprints.put(table, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    //解析后不再修改的表，DefaultTable等可以继续添加行的表每次重新计算
+    private static boolean isImmutable(ITable table) {
+        return table instanceof ColumnarTable || table instanceof LazyTable || table instanceof MergedTable;
+    }
+
+    /**
+     * Calculates the fingerprint of the content of the given table. The table is read forward only.
+     *
+     * @param table The table, not null
+     * @return The fingerprint, not null
+     */
+    public static Fingerprint calculate(ITable table) throws DataSetException {
+        MessageDigest digest = createDigest();
+        Column[] columns = table.getTableMetaData().getColumns();
+        for (Column column : columns) {
+            update(digest, column.getColumnName());
+        }
+        int rowCount = 0;
+        while (true) {
+            Object[] values = BatchInserter.readRow(table, rowCount, columns);
+            if (values == null) {
+                break;
+            }
+            for (Object value : values) {
+                // the type is part of the hash so that "1" and 1 differ
+                update(digest, value == null ? "\0" : value.getClass().getName() + ':' + value);
+            }
+            rowCount++;
+        }
+        return new Fingerprint(digest.digest(), rowCount);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnitilsException("Unable to create MD5 digest", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(UTF8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    //表内容的哈希值和行数
+    public static class Fingerprint {
+
+        private final byte[] hash;
+
+        private final int rowCount;
+
+        public Fingerprint(byte[] hash, int rowCount) {
+            this.hash = hash;
+            this.rowCount = rowCount;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @return The content hash as hex string, not null
+         */
+        public String getHash() {
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return rowCount == other.rowCount && MessageDigest.isEqual(hash, other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(hash);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import com.unitils.boot.util.HarnessEvents;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 已创建的数据集快照，快照表在JVM退出时删除
+ * @Date:Created in 2018-07-08
+ */
+public class DataSetSnapshots {
+
+    private static final Log logger = LogFactory.getLog(DataSetSnapshots.class);
+
+    private static final DataSetSnapshots INSTANCE = new DataSetSnapshots();
+
+    private final Map<String, Snapshot> snapshots = new HashMap<String, Snapshot>();
+
+    /* The locks of the snapshot keys, so that different data sets are created concurrently */
+    private final Map<String, Object> locks = new HashMap<String, Object>();
+
+    private long savedTime;
+
+    private boolean shutdownHookRegistered;
+
+    public static DataSetSnapshots getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param key The database, schema and content hash of the data set, not null
+     * @return The snapshot, null if none was created yet
+     */
+    public synchronized Snapshot get(String key) {
+        return snapshots.get(key);
+    }
+
+    /**
+     * @param key The database, schema and content hash of the data set, not null
+     * @return The lock to hold while the snapshot of the key is created, the same for the same key, not null
+     */
+    public synchronized Object getLock(String key) {
+        Object lock = locks.get(key);
+        if (lock == null) {
+            lock = new Object();
+            locks.put(key, lock);
+        }
+        return lock;
+    }
+
+    public synchronized void put(String key, Snapshot snapshot) {
+        snapshots.put(key, snapshot);
+        if (!shutdownHookRegistered) {
+            Runtime.getRuntime().addShutdownHook(new Thread("unitils-snapshot-cleaner") {
+                @Override
+                public void run() {
+                    dropAll();
+                }
+            });
+            shutdownHookRegistered = true;
+        }
+    }
+
+    /**
+     * @param time The time saved by one restore, in ms
+     * @return The total time saved by restoring snapshots, in ms
+     */
+    public synchronized long addSavedTime(long time) {
+        savedTime += time;
+        return savedTime;
+    }
+
+    /**
+     * Drops the snapshot tables of all snapshots.
+     */
+    public synchronized void dropAll() {
+        for (Snapshot snapshot : snapshots.values()) {
+            try {
+                snapshot.drop();
+            } catch (SQLException e) {
+                logger.debug("Unable to drop snapshot tables " + snapshot.getSnapshotTableNames(), e);
+            }
+        }
+        snapshots.clear();
+    }
+
+    //一个数据集的快照，记录了恢复数据的语句和完整加载的耗时
+    public static class Snapshot {
+
+        private final DataSource dataSource;
+
+        private final List<String> tableNames = new ArrayList<String>();
+
+        private final List<String> snapshotTableNames = new ArrayList<String>();
+
+        private final List<String> deleteStatements = new ArrayList<String>();
+
+        private final List<String> insertStatements = new ArrayList<String>();
+
+        private long loadTime;
+
+        private int restoreCount;
+
+        public Snapshot(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * @param tableName          The name of the table in the data set, not null
+         * @param qualifiedTableName The escaped name of the data set table, not null
+         * @param snapshotTableName  The escaped name of the snapshot table, not null
+         * @param columnList         The escaped columns of the data set, comma separated, not null
+         */
+        public void addTable(String tableName, String qualifiedTableName, String snapshotTableName, String columnList) {
+            tableNames.add(tableName);
+            snapshotTableNames.add(snapshotTableName);
+            // 删除时子表在前
+            deleteStatements.add(0, "delete from " + qualifiedTableName);
+            insertStatements.add("insert into " + qualifiedTableName + " (" + columnList + ") select " + columnList + " from " + snapshotTableName);
+        }
+
+        /**
+         * Replaces the content of the data set tables by the content of the snapshot. The statements are executed
+         * on the given connection so that they take part in the transaction of the test.
+         *
+         * @param connection The connection, not null
+         * @return The number of previous restores of this snapshot
+         */
+        public int restore(Connection connection) throws SQLException {
+            Statement statement = connection.createStatement();
+            try {
+                for (String deleteStatement : deleteStatements) {
+                    statement.addBatch(deleteStatement);
+                }
+                // 记录事件时逐张表执行，才能得到每张表的耗时
+                if (HarnessEvents.isEnabled()) {
+                    statement.executeBatch();
+                    for (int i = 0; i < insertStatements.size(); i++) {
+                        long startTime = System.nanoTime();
+                        int rowCount = statement.executeUpdate(insertStatements.get(i));
+                        HarnessEvents.tableLoaded(tableNames.get(i), rowCount, System.nanoTime() - startTime);
+                    }
+                } else {
+                    for (String insertStatement : insertStatements) {
+                        statement.addBatch(insertStatement);
+                    }
+                    statement.executeBatch();
+                }
+            } finally {
+                statement.close();
+            }
+            synchronized (this) {
+                return restoreCount++;
+            }
+        }
+
+        public void drop() throws SQLException {
+            Connection connection = dataSource.getConnection();
+            try {
+                Statement statement = connection.createStatement();
+                try {
+                    for (String snapshotTableName : snapshotTableNames) {
+                        statement.execute("drop table " + snapshotTableName);
+                    }
+                } finally {
+                    statement.close();
+                }
+            } finally {
+                connection.close();
+            }
+        }
+
+        public List<String> getSnapshotTableNames() {
+            return snapshotTableNames;
+        }
+
+        /**
+         * @return The time it took to insert the data set rows, in ms
+         */
+        public long getLoadTime() {
+            return loadTime;
+        }
+
+        public void setLoadTime(long loadTime) {
+            this.loadTime = loadTime;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import com.unitils.boot.dbunit.SpringBootDbUnitModule;
+import com.unitils.boot.util.HarnessEvents;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.util.SQLHelper;
+import org.unitils.dbunit.datasetloadstrategy.impl.BaseDataSetLoadStrategy;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 带指纹的CleanInsert策略，数据集在测试事务之外用单独的连接插入并提交，同时记录每张表内容的哈希值。
+ * 下一个测试使用相同的数据集，并且之前的测试都已回滚时，跳过删除和插入。
+ * 提交的数据在测试结束后仍然保留，对其他连接和共用schema的fork可见，测试中的修改回滚到提交的数据。
+ * 每张表的哈希值也在同一个事务中写入schema下的标记表，有测试提交了事务、没有事务，
+ * 或者标记表中的哈希值和记录的不一致（例如其他fork加载了不同的数据）时，重新加载全部数据。
+ * 需要使用{@link SpringBootDbUnitModule}
+ * @Date:Created in 2018-07-08
+ */
+public class FingerprintCleanInsertLoadStrategy extends BaseDataSetLoadStrategy {
+
+    private static final Log logger = LogFactory.getLog(FingerprintCleanInsertLoadStrategy.class);
+
+    /* Name of the table that records the fingerprints of the tables committed to a schema */
+    public static final String MARKER_TABLE_NAME = "ut_fingerprint";
+
+    /**
+     * Deletes and inserts the data set with a connection of its own and commits it, unless the same data set was
+     * committed before and every test since then rolled back. The committed data is not part of the test transaction:
+     * it stays in the database after the test and is visible to other connections.
+     */
+    @Override
+    protected void doExecute(DbUnitDatabaseConnection dbUnitDatabaseConnection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+        SpringBootDbUnitModule dbUnitModule = SpringBootDbUnitModule.getModule();
+        DataSetFingerprints fingerprints = DataSetFingerprints.getInstance();
+        String keyPrefix = dbUnitModule.getDatabaseName() + '.' + dbUnitDatabaseConnection.getSchema() + '.';
+
+        Map<String, DataSetFingerprints.Fingerprint> dataSetFingerprints = new LinkedHashMap<String, DataSetFingerprints.Fingerprint>();
+        ITableIterator iterator = dataSet.iterator();
+        while (iterator.next()) {
+            String tableName = iterator.getTableMetaData().getTableName();
+            dataSetFingerprints.put(keyPrefix + tableName.toLowerCase(), fingerprints.getFingerprint(iterator.getTable()));
+        }
+
+        Connection connection = dbUnitModule.getDataSource().getConnection();
+        try {
+            IDatabaseConnection databaseConnection = dbUnitModule.createDetachedConnection(connection, dbUnitDatabaseConnection.getSchema());
+            BatchInserter inserter = BatchInserter.create(databaseConnection);
+            String markerTableName = inserter.getQualifiedName(dbUnitDatabaseConnection.getSchema(), SQLHelper.correctCase(MARKER_TABLE_NAME, connection));
+            List<String> tableNames = BatchInserter.getTableNames(dataSet);
+            if (isUnchanged(dataSetFingerprints, fingerprints, connection, markerTableName, tableNames, keyPrefix)) {
+                logger.info("Data set unchanged, skipped loading of tables " + tableNames);
+                return;
+            }
+
+            for (String tableName : tableNames) {
+                fingerprints.remove(keyPrefix + tableName.toLowerCase());
+            }
+            createMarkerTable(connection, markerTableName);
+            long startTime = System.currentTimeMillis();
+            connection.setAutoCommit(false);
+            try {
+                inserter.deleteAll(tableNames);
+                iterator = dataSet.iterator();
+                while (iterator.next()) {
+                    ITable table = iterator.getTable();
+                    long tableStartTime = System.nanoTime();
+                    int rowCount = inserter.insert(table);
+                    HarnessEvents.tableLoaded(table.getTableMetaData().getTableName(), rowCount, System.nanoTime() - tableStartTime);
+                }
+                writeMarkers(connection, markerTableName, dataSetFingerprints, tableNames, keyPrefix);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } catch (DatabaseUnitException e) {
+                connection.rollback();
+                throw e;
+            }
+            fingerprints.putAll(dataSetFingerprints);
+            logger.info("Loaded and committed tables " + tableNames + " in " + (System.currentTimeMillis() - startTime) + " ms");
+        } finally {
+            connection.close();
+        }
+    }
+
+    //所有表的指纹相同，并且标记表中的哈希值和记录的一致，只执行一次查询
+    protected boolean isUnchanged(Map<String, DataSetFingerprints.Fingerprint> dataSetFingerprints, DataSetFingerprints fingerprints,
+                                  Connection connection, String markerTableName, List<String> tableNames, String keyPrefix) throws SQLException {
+        for (String tableName : tableNames) {
+            String tableKey = keyPrefix + tableName.toLowerCase();
+            DataSetFingerprints.Fingerprint fingerprint = fingerprints.get(tableKey);
+            if (fingerprint == null || !fingerprint.equals(dataSetFingerprints.get(tableKey))) {
+                return false;
+            }
+        }
+        Map<String, String> markers = new HashMap<String, String>();
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery("select table_name, content_hash from " + markerTableName);
+            try {
+                while (resultSet.next()) {
+                    markers.put(resultSet.getString(1), resultSet.getString(2));
+                }
+            } finally {
+                resultSet.close();
+            }
+        } catch (SQLException e) {
+            logger.debug("Unable to read marker table " + markerTableName + ", reloading", e);
+            return false;
+        } finally {
+            statement.close();
+        }
+        for (String tableName : tableNames) {
+            if (!dataSetFingerprints.get(keyPrefix + tableName.toLowerCase()).getHash().equals(markers.get(tableName.toLowerCase()))) {
+                logger.debug("Table " + tableName + " was loaded by someone else, reloading");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //标记表不存在时创建，mysql中DDL语句会隐式提交事务，所以在加载数据之前执行
+    private void createMarkerTable(Connection connection, String markerTableName) {
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute("create table " + markerTableName + " (table_name varchar(255) not null, content_hash varchar(32) not null)");
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            // 表已存在
+        }
+    }
+
+    //和数据一起提交，其他fork加载同名表时会覆盖
+    private void writeMarkers(Connection connection, String markerTableName, Map<String, DataSetFingerprints.Fingerprint> dataSetFingerprints,
+                              List<String> tableNames, String keyPrefix) throws SQLException {
+        PreparedStatement delete = connection.prepareStatement("delete from " + markerTableName + " where table_name = ?");
+        PreparedStatement insert = connection.prepareStatement("insert into " + markerTableName + " (table_name, content_hash) values (?, ?)");
+        try {
+            for (String tableName : tableNames) {
+                delete.setString(1, tableName.toLowerCase());
+                delete.addBatch();
+                insert.setString(1, tableName.toLowerCase());
+                insert.setString(2, dataSetFingerprints.get(keyPrefix + tableName.toLowerCase()).getHash());
+                insert.addBatch();
+            }
+            delete.executeBatch();
+            insert.executeBatch();
+        } finally {
+            delete.close();
+            insert.close();
+        }
+    }
+}
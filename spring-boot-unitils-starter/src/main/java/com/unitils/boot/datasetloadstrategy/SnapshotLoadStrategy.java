@@ -0,0 +1,161 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import com.unitils.boot.dbunit.SpringBootDbUnitModule;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.util.SQLHelper;
+import org.unitils.core.Unitils;
+import org.unitils.dbunit.datasetloadstrategy.impl.BaseDataSetLoadStrategy;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+import org.unitils.util.PropertyUtils;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 快照策略，数据集第一次使用时插入到同一schema下的快照表中并提交，之后每个测试都从快照表恢复数据：
+ * 先删除数据集中有关表的数据，再用insert ... select从快照表复制，数据不再经过JDBC传输。
+ * 恢复语句在测试事务中执行，因此和CleanInsert一样随测试回滚。
+ * mysql使用create table ... like创建快照表，其他数据库使用create table ... as select。
+ * 快照表名包含每个JVM随机生成的标识，多个fork共用同一个schema时不会删除或覆盖其他fork的快照表
+ * @Date:Created in 2018-07-08
+ */
+public class SnapshotLoadStrategy extends BaseDataSetLoadStrategy {
+
+    private static final Log logger = LogFactory.getLog(SnapshotLoadStrategy.class);
+
+    /* Prefix of the names of the snapshot tables */
+    public static final String SNAPSHOT_TABLE_PREFIX = "ut_snap_";
+
+    /* Distinguishes the snapshot tables of this JVM from those of other forks */
+    private static final String JVM_ID = Integer.toString(new SecureRandom().nextInt(Integer.MAX_VALUE), 36);
+
+    @Override
+    protected void doExecute(DbUnitDatabaseConnection dbUnitDatabaseConnection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+        SpringBootDbUnitModule dbUnitModule = SpringBootDbUnitModule.getModule();
+        String contentHash = getContentHash(dataSet);
+        String key = dbUnitModule.getDatabaseName() + '.' + dbUnitDatabaseConnection.getSchema() + '.' + contentHash;
+
+        DataSetSnapshots snapshots = DataSetSnapshots.getInstance();
+        DataSetSnapshots.Snapshot snapshot;
+        // 只有同一个数据集的快照串行创建
+        synchronized (snapshots.getLock(key)) {
+            snapshot = snapshots.get(key);
+            if (snapshot == null) {
+                snapshot = createSnapshot(dbUnitModule, dbUnitDatabaseConnection, dataSet, contentHash.substring(0, 8));
+                snapshots.put(key, snapshot);
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        int previousRestores = snapshot.restore(dbUnitDatabaseConnection.getConnection());
+        long restoreTime = System.currentTimeMillis() - startTime;
+        if (previousRestores == 0) {
+            logger.info("Restored tables from new snapshot " + snapshot.getSnapshotTableNames() + " in " + restoreTime + " ms");
+        } else {
+            long savedTime = snapshot.getLoadTime() - restoreTime;
+            logger.info("Restored tables from snapshot " + snapshot.getSnapshotTableNames() + " in " + restoreTime + " ms, full load took "
+                + snapshot.getLoadTime() + " ms, saved " + savedTime + " ms (" + snapshots.addSavedTime(savedTime) + " ms in total)");
+        }
+    }
+
+    //在测试事务之外创建快照表并提交，mysql中DDL语句会隐式提交事务
+    protected DataSetSnapshots.Snapshot createSnapshot(SpringBootDbUnitModule dbUnitModule, DbUnitDatabaseConnection dbUnitDatabaseConnection,
+                                                       IDataSet dataSet, String snapshotId) throws DatabaseUnitException, SQLException {
+        String schemaName = dbUnitDatabaseConnection.getSchema();
+        boolean mysql = "mysql".equalsIgnoreCase(PropertyUtils.getString(BatchInserter.PROPKEY_DATABASE_DIALECT, null, Unitils.getInstance().getConfiguration()));
+        DataSetSnapshots.Snapshot snapshot = new DataSetSnapshots.Snapshot(dbUnitModule.getDataSource());
+
+        Connection connection = dbUnitModule.getDataSource().getConnection();
+        try {
+            BatchInserter inserter = BatchInserter.create(dbUnitModule.createDetachedConnection(connection, schemaName));
+            Statement statement = connection.createStatement();
+            try {
+                int index = 0;
+                ITableIterator iterator = dataSet.iterator();
+                while (iterator.next()) {
+                    String tableName = iterator.getTableMetaData().getTableName();
+                    String qualifiedTableName = inserter.getQualifiedTableName(tableName);
+                    String snapshotTableName = inserter.getQualifiedName(schemaName, getSnapshotTableName(connection, snapshotId, index++));
+                    String columnList = inserter.getColumnList(iterator.getTableMetaData(), tableName);
+
+                    dropIfExists(statement, snapshotTableName);
+                    if (mysql) {
+                        statement.execute("create table " + snapshotTableName + " like " + qualifiedTableName);
+                    } else {
+                        statement.execute("create table " + snapshotTableName + " as select " + columnList + " from " + qualifiedTableName + " where 1 = 0");
+                    }
+                    snapshot.addTable(tableName, qualifiedTableName, snapshotTableName, columnList);
+                }
+            } finally {
+                statement.close();
+            }
+
+            // 新建的快照表要重新读取数据库元数据
+            BatchInserter snapshotInserter = BatchInserter.create(dbUnitModule.createDetachedConnection(connection, schemaName));
+            long startTime = System.currentTimeMillis();
+            connection.setAutoCommit(false);
+            int index = 0;
+            ITableIterator iterator = dataSet.iterator();
+            while (iterator.next()) {
+                snapshotInserter.insert(iterator.getTable(), getSnapshotTableName(connection, snapshotId, index++));
+            }
+            connection.commit();
+            snapshot.setLoadTime(System.currentTimeMillis() - startTime);
+            logger.info("Created snapshot " + snapshot.getSnapshotTableNames() + ", loading the data set took " + snapshot.getLoadTime() + " ms");
+            return snapshot;
+        } catch (SQLException e) {
+            dropQuietly(snapshot);
+            throw e;
+        } catch (DatabaseUnitException e) {
+            dropQuietly(snapshot);
+            throw e;
+        } finally {
+            connection.close();
+        }
+    }
+
+    //快照表名使用数据库存储标识符的大小写，DbUnit读取元数据时才能找到
+    protected String getSnapshotTableName(Connection connection, String snapshotId, int index) {
+        return SQLHelper.correctCase(SNAPSHOT_TABLE_PREFIX + JVM_ID + '_' + snapshotId + '_' + index, connection);
+    }
+
+    //缓存中的表的指纹只计算一次，这里只对每张表的指纹计算哈希值
+    protected String getContentHash(IDataSet dataSet) throws DatabaseUnitException {
+        try {
+            DataSetFingerprints fingerprints = DataSetFingerprints.getInstance();
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            ITableIterator iterator = dataSet.iterator();
+            while (iterator.next()) {
+                digest.update(iterator.getTableMetaData().getTableName().getBytes("UTF-8"));
+                digest.update(fingerprints.getFingerprint(iterator.getTable()).getHash().getBytes("UTF-8"));
+            }
+            return new DataSetFingerprints.Fingerprint(digest.digest(), 0).getHash();
+        } catch (Exception e) {
+            throw new DatabaseUnitException("Unable to calculate the content hash of the data set", e);
+        }
+    }
+
+    private void dropIfExists(Statement statement, String snapshotTableName) {
+        try {
+            statement.execute("drop table " + snapshotTableName);
+        } catch (SQLException e) {
+            // 表不存在
+        }
+    }
+
+    private void dropQuietly(DataSetSnapshots.Snapshot snapshot) {
+        try {
+            snapshot.drop();
+        } catch (SQLException e) {
+            logger.debug("Unable to drop snapshot tables " + snapshot.getSnapshotTableNames(), e);
+        }
+    }
+}
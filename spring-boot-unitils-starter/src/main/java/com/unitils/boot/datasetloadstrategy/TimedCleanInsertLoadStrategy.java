@@ -0,0 +1,39 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import com.unitils.boot.util.HarnessEvents;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.operation.DatabaseOperation;
+import org.unitils.dbunit.datasetloadstrategy.impl.CleanInsertLoadStrategy;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+
+import java.sql.SQLException;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 默认的CleanInsert策略，和Unitils的CleanInsertLoadStrategy相同。
+ * 打开HarnessEvents时先删除全部有关表的数据，再逐张表插入，记录每张表的加载耗时
+ * @Date:Created in 2018-07-08
+ */
+public class TimedCleanInsertLoadStrategy extends CleanInsertLoadStrategy {
+
+    @Override
+    public void doExecute(DbUnitDatabaseConnection dbUnitDatabaseConnection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+        if (!HarnessEvents.isEnabled()) {
+            super.doExecute(dbUnitDatabaseConnection, dataSet);
+            return;
+        }
+        // 和CLEAN_INSERT一样，DELETE_ALL按倒序删除
+        DatabaseOperation.DELETE_ALL.execute(dbUnitDatabaseConnection, dataSet);
+        ITableIterator iterator = dataSet.iterator();
+        while (iterator.next()) {
+            ITable table = iterator.getTable();
+            long startTime = System.nanoTime();
+            DatabaseOperation.INSERT.execute(dbUnitDatabaseConnection, new DefaultDataSet(table));
+            HarnessEvents.tableLoaded(table.getTableMetaData().getTableName(), table.getRowCount(), System.nanoTime() - startTime);
+        }
+    }
+}
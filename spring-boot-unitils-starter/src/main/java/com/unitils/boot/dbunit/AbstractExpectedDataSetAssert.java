@@ -0,0 +1,266 @@
+package com.unitils.boot.dbunit;
+
+import com.unitils.boot.datasetloadstrategy.BatchInserter;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.NoSuchTableException;
+import org.dbunit.dataset.filter.DefaultColumnFilter;
+import org.unitils.core.Unitils;
+import org.unitils.core.UnitilsException;
+import org.unitils.core.util.ObjectFormatter;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+import org.unitils.util.PropertyUtils;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 逐表比较期望数据的基类：去掉配置中忽略的列，表不存在时报告缺少的表，差异按Unitils的格式报告，
+ * 只列出有差异的行，每张表最多列出MAX_REPORTED_ROWS行
+ * @Date:Created in 2018-07-08
+ */
+public abstract class AbstractExpectedDataSetAssert implements ExpectedDataSetAssert {
+
+    /* Property key of the columns that are not compared, column or table.column, * and ? can be used as wildcards */
+    public static final String PROPKEY_IGNORE_COLUMNS = "ExpectedDataSetAssert.ignoreColumns";
+
+    /* The maximum number of differing rows that are reported per table */
+    public static final int MAX_REPORTED_ROWS = 20;
+
+    protected final ObjectFormatter objectFormatter = new ObjectFormatter();
+
+    private List<String> ignoreColumns;
+
+    public void assertEqualDataSets(String schemaName, IDataSet expectedDataSet, DbUnitDatabaseConnection connection) throws AssertionError {
+        StringBuilder differences = new StringBuilder();
+        try {
+            BatchInserter inserter = BatchInserter.create(connection);
+            ITableIterator iterator = expectedDataSet.iterator();
+            while (iterator.next()) {
+                ITable expectedTable = iterator.getTable();
+                String tableName = expectedTable.getTableMetaData().getTableName();
+                String qualifiedTableName;
+                try {
+                    qualifiedTableName = inserter.getQualifiedTableName(tableName);
+                } catch (NoSuchTableException e) {
+                    differences.append("\nFound missing table ").append(schemaName).append('.').append(tableName);
+                    continue;
+                }
+                expectedTable = ignoreColumns(expectedTable);
+                // 所有列都被忽略时没有可以比较的值
+                if (expectedTable.getTableMetaData().getColumns().length == 0 && expectedTable.getRowCount() > 0) {
+                    continue;
+                }
+                compareTable(schemaName, expectedTable, qualifiedTableName, inserter, connection, differences);
+            }
+        } catch (SQLException e) {
+            throw new UnitilsException("Unable to compare the expected data set of schema " + schemaName, e);
+        } catch (DatabaseUnitException e) {
+            throw new UnitilsException("Unable to compare the expected data set of schema " + schemaName, e);
+        }
+        if (differences.length() > 0) {
+            throw new AssertionError("Assertion failed. Differences found between the expected data set and actual database content." + differences);
+        }
+    }
+
+    /**
+     * Compares one expected table with the table in the database and appends the differences to the report.
+     *
+     * @param schemaName         The name of the schema, not null
+     * @param expectedTable      The expected table without the ignored columns, not null
+     * @param qualifiedTableName The escaped name of the table in the database, not null
+     * @param inserter           The inserter of the connection, used for the table meta data, not null
+     * @param connection         The connection of the test, not null
+     * @param differences        The report, not null
+     */
+    protected abstract void compareTable(String schemaName, ITable expectedTable, String qualifiedTableName, BatchInserter inserter,
+                                         DbUnitDatabaseConnection connection, StringBuilder differences) throws DatabaseUnitException, SQLException;
+
+    /**
+     * @param table The expected table, not null
+     * @return The table without the columns that are configured to be ignored, not null
+     */
+    protected ITable ignoreColumns(ITable table) throws DataSetException {
+        String tableName = table.getTableMetaData().getTableName();
+        List<String> patterns = new ArrayList<String>();
+        for (String ignoreColumn : getIgnoreColumns()) {
+            int index = ignoreColumn.lastIndexOf('.');
+            if (index < 0) {
+                patterns.add(ignoreColumn);
+            } else if (ignoreColumn.substring(0, index).equalsIgnoreCase(tableName)) {
+                patterns.add(ignoreColumn.substring(index + 1));
+            }
+        }
+        if (patterns.isEmpty()) {
+            return table;
+        }
+        return DefaultColumnFilter.excludedColumnsTable(table, patterns.toArray(new String[patterns.size()]));
+    }
+
+    protected List<String> getIgnoreColumns() {
+        if (ignoreColumns == null) {
+            ignoreColumns = PropertyUtils.getStringList(PROPKEY_IGNORE_COLUMNS, Unitils.getInstance().getConfiguration());
+        }
+        return ignoreColumns;
+    }
+
+    /**
+     * Appends the expected rows that were not found. If the database contains a row with the same primary key,
+     * it is reported as the best matching row with the differing columns, like Unitils does.
+     *
+     * @param notes An explanation per missing row, null to look up the best matching row
+     */
+    protected void appendMissingRows(String schemaName, String tableName, String qualifiedTableName, Column[] columns, List<String> columnNames,
+                                     List<Object[]> missingRows, List<String> notes, int missingRowCount, BatchInserter inserter,
+                                     Connection connection, StringBuilder differences) throws DatabaseUnitException, SQLException {
+        differences.append("\nFound differences for table ").append(schemaName).append('.').append(tableName).append(":\n");
+        int[] primaryKeyIndexes = getPrimaryKeyIndexes(inserter.getPrimaryKeyNames(tableName), columnNames);
+        for (int row = 0; row < missingRows.size(); row++) {
+            Object[] values = missingRows.get(row);
+            String note = notes.get(row);
+            Object[] actualValues = note != null ? null : findByPrimaryKey(connection, qualifiedTableName, columnNames, primaryKeyIndexes, values);
+            // 主键相同的行已经匹配了其他期望行时，没有不同的列
+            if (actualValues != null && !isDifferent(values, actualValues)) {
+                actualValues = null;
+            }
+            if (actualValues == null) {
+                differences.append("\n  Missing row");
+                if (note != null) {
+                    differences.append(" (").append(note).append(")");
+                }
+                differences.append(":\n  ");
+                appendRow(columns, values, differences);
+                differences.append("\n");
+                continue;
+            }
+            differences.append("\n  Different row: \n  ");
+            appendRow(columns, values, differences);
+            differences.append("\n\n  Best matching differences:  ");
+            for (int i = 0; i < columns.length; i++) {
+                if (values[i] != null && !isEqual(values[i], actualValues[i])) {
+                    differences.append("\n  ").append(columns[i].getColumnName()).append(": ").append(objectFormatter.format(values[i]))
+                        .append(" <-> ").append(objectFormatter.format(actualValues[i]));
+                }
+            }
+            differences.append("\n");
+        }
+        if (missingRowCount > missingRows.size()) {
+            differences.append("\n  ... and ").append(missingRowCount - missingRows.size()).append(" more rows\n");
+        }
+    }
+
+    protected void appendEmptyTableDifference(String schemaName, String tableName, StringBuilder differences) {
+        differences.append("\nExpected table to be empty but found rows for table ").append(schemaName).append('.').append(tableName).append("\n");
+    }
+
+    protected Object[] findByPrimaryKey(Connection connection, String qualifiedTableName, List<String> columnNames,
+                                        int[] primaryKeyIndexes, Object[] values) throws SQLException {
+        if (primaryKeyIndexes == null) {
+            return null;
+        }
+        StringBuilder sql = new StringBuilder("select ");
+        appendColumns("", columnNames, sql);
+        sql.append(" from ").append(qualifiedTableName).append(" where ");
+        for (int i = 0; i < primaryKeyIndexes.length; i++) {
+            if (values[primaryKeyIndexes[i]] == null) {
+                return null;
+            }
+            sql.append(i == 0 ? "" : " and ").append(columnNames.get(primaryKeyIndexes[i])).append(" = ?");
+        }
+        PreparedStatement statement = connection.prepareStatement(sql.toString());
+        try {
+            for (int i = 0; i < primaryKeyIndexes.length; i++) {
+                statement.setObject(i + 1, values[primaryKeyIndexes[i]]);
+            }
+            ResultSet resultSet = statement.executeQuery();
+            try {
+                return resultSet.next() ? readRow(resultSet, columnNames.size()) : null;
+            } finally {
+                resultSet.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    //期望数据中没有全部主键列时返回null
+    protected int[] getPrimaryKeyIndexes(List<String> primaryKeyNames, List<String> columnNames) {
+        if (primaryKeyNames.isEmpty()) {
+            return null;
+        }
+        int[] primaryKeyIndexes = new int[primaryKeyNames.size()];
+        for (int i = 0; i < primaryKeyIndexes.length; i++) {
+            primaryKeyIndexes[i] = columnNames.indexOf(primaryKeyNames.get(i));
+            if (primaryKeyIndexes[i] < 0) {
+                return null;
+            }
+        }
+        return primaryKeyIndexes;
+    }
+
+    protected void appendRow(Column[] columns, Object[] values, StringBuilder differences) {
+        for (int i = 0; i < columns.length; i++) {
+            differences.append(i == 0 ? "" : ", ").append(columns[i].getColumnName());
+        }
+        differences.append("\n  ");
+        for (int i = 0; i < values.length; i++) {
+            differences.append(i == 0 ? "" : ", ").append(objectFormatter.format(values[i]));
+        }
+    }
+
+    private boolean isDifferent(Object[] values, Object[] actualValues) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && !isEqual(values[i], actualValues[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //期望值按列类型转换，和驱动返回的数字类型可能不同，例如BigInteger和Long
+    @SuppressWarnings("unchecked")
+    private boolean isEqual(Object expected, Object actual) {
+        if (expected instanceof Number && actual instanceof Number) {
+            return new BigDecimal(expected.toString()).compareTo(new BigDecimal(actual.toString())) == 0;
+        }
+        if (expected instanceof Comparable && actual != null && expected.getClass() == actual.getClass()) {
+            return ((Comparable<Object>) expected).compareTo(actual) == 0;
+        }
+        return expected.equals(actual);
+    }
+
+    protected static void appendColumns(String alias, List<String> columnNames, StringBuilder sql) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(alias).append(columnNames.get(i));
+        }
+    }
+
+    protected static Object[] readRow(ResultSet resultSet, int columnCount) throws SQLException {
+        Object[] values = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = resultSet.getObject(i + 1);
+        }
+        return values;
+    }
+
+    protected static int queryInt(Statement statement, String sql) throws SQLException {
+        ResultSet resultSet = statement.executeQuery(sql);
+        try {
+            resultSet.next();
+            return resultSet.getInt(1);
+        } finally {
+            resultSet.close();
+        }
+    }
+}
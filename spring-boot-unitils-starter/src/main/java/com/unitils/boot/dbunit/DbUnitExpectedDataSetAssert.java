@@ -0,0 +1,26 @@
+package com.unitils.boot.dbunit;
+
+import org.dbunit.dataset.IDataSet;
+import org.unitils.core.UnitilsException;
+import org.unitils.dbunit.util.DataSetAssert;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+
+import java.sql.SQLException;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: Unitils默认的比较方式：通过DbUnit读取实际的表，在内存中逐行逐列比较
+ * @Date:Created in 2018-07-08
+ */
+public class DbUnitExpectedDataSetAssert implements ExpectedDataSetAssert {
+
+    public void assertEqualDataSets(String schemaName, IDataSet expectedDataSet, DbUnitDatabaseConnection connection) throws AssertionError {
+        IDataSet actualDataSet;
+        try {
+            actualDataSet = connection.createDataSet();
+        } catch (SQLException e) {
+            throw new UnitilsException("Unable to get actual data set for schema " + schemaName, e);
+        }
+        new DataSetAssert().assertEqualDbUnitDataSets(schemaName, expectedDataSet, actualDataSet);
+    }
+}
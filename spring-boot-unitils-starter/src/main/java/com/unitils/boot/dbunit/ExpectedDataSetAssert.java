@@ -0,0 +1,24 @@
+package com.unitils.boot.dbunit;
+
+import org.dbunit.dataset.IDataSet;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 比较@ExpectedDataSet和数据库中的实际数据，实现类通过
+ * com.unitils.boot.dbunit.ExpectedDataSetAssert.implClassName配置
+ * @Date:Created in 2018-07-08
+ */
+public interface ExpectedDataSetAssert {
+
+    /**
+     * Asserts that the database contains the rows of the expected data set. Only the columns of the expected
+     * data set are compared, an empty value in the expected data set matches any value.
+     *
+     * @param schemaName      The name of the schema, not null
+     * @param expectedDataSet The expected data set of the schema, not null
+     * @param connection      The connection of the test, it can see the changes of the test that are not committed, not null
+     * @throws AssertionError When the database content differs from the expected data set
+     */
+    void assertEqualDataSets(String schemaName, IDataSet expectedDataSet, DbUnitDatabaseConnection connection) throws AssertionError;
+}
@@ -0,0 +1,337 @@
+package com.unitils.boot.dbunit;
+
+import com.unitils.boot.datasetloadstrategy.BatchInserter;
+import com.unitils.boot.xls.ColumnarTable;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.unitils.core.Unitils;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+import org.unitils.util.PropertyUtils;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 用hash比较期望的数据：期望行先转换成实际列的类型，按值放入计数的hash表，再逐行读取实际表的结果集，
+ * 每个实际行在hash表中查找并扣减一次匹配的期望行，最后计数不为0的期望行就是缺少的行。
+ * 期望数据中没有空单元格时，比较的时间和行数成线性关系，内存只和期望行数有关，实际表的行不会全部保存。
+ * 期望数据中为空的单元格匹配任意值：空单元格位置相同的期望行放在同一个hash表中，实际行先匹配空单元格少的hash表；
+ * 匹配的期望行都已用完时，广度优先查找可以换到其他期望行的已匹配实际行（二分图匹配的增广路径），结果和最优的匹配一致，
+ * 最坏情况下每个实际行要查找所有已匹配的行，时间是期望行数和实际行数的乘积。
+ * 有多个hash表时保存已匹配的实际行，数量不超过期望行数。
+ * 实际表中多出的行默认不算差异，和Unitils一致，可以通过failOnExtraRows配置报告多出的行
+ * @Date:Created in 2018-07-08
+ */
+public class HashExpectedDataSetAssert extends AbstractExpectedDataSetAssert {
+
+    /* Property key of whether rows of the actual table that match no expected row are reported */
+    public static final String PROPKEY_FAIL_ON_EXTRA_ROWS = "HashExpectedDataSetAssert.failOnExtraRows";
+
+    /* The number of rows that are fetched from the database at once */
+    public static final int FETCH_SIZE = 1000;
+
+    private Boolean failOnExtraRows;
+
+    protected void compareTable(String schemaName, ITable expectedTable, String qualifiedTableName, BatchInserter inserter,
+                                DbUnitDatabaseConnection connection, StringBuilder differences) throws DatabaseUnitException, SQLException {
+        String tableName = expectedTable.getTableMetaData().getTableName();
+        Column[] columns = expectedTable.getTableMetaData().getColumns();
+        List<String> columnNames = inserter.getColumnNames(expectedTable.getTableMetaData(), tableName);
+        DataType[] dataTypes = inserter.getDataTypes(expectedTable.getTableMetaData(), tableName);
+
+        List<ExpectedRow> expectedRows = new ArrayList<ExpectedRow>();
+        List<RowPattern> patterns = getRowPatterns(expectedTable, dataTypes, expectedRows);
+        Statement statement = connection.getConnection().createStatement();
+        try {
+            if (expectedRows.isEmpty()) {
+                if (queryInt(statement, "select count(*) from " + qualifiedTableName) > 0) {
+                    appendEmptyTableDifference(schemaName, tableName, differences);
+                }
+                return;
+            }
+
+            List<Object[]> extraRows = new ArrayList<Object[]>();
+            int extraRowCount = 0;
+            StringBuilder sql = new StringBuilder("select ");
+            appendColumns("", columnNames, sql);
+            sql.append(" from ").append(qualifiedTableName);
+            statement.setFetchSize(FETCH_SIZE);
+            ResultSet resultSet = statement.executeQuery(sql.toString());
+            try {
+                Object[] values = new Object[columns.length];
+                while (resultSet.next()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        values[i] = canonicalize(dataTypes[i].getSqlValue(i + 1, resultSet));
+                    }
+                    if (!match(patterns, values) && isFailOnExtraRows() && extraRowCount++ < MAX_REPORTED_ROWS) {
+                        extraRows.add(readRow(resultSet, columns.length));
+                    }
+                }
+            } finally {
+                resultSet.close();
+            }
+
+            List<Object[]> missingRows = new ArrayList<Object[]>();
+            List<String> notes = new ArrayList<String>();
+            int missingRowCount = 0;
+            for (ExpectedRow expectedRow : expectedRows) {
+                if (expectedRow.count == 0) {
+                    continue;
+                }
+                missingRowCount++;
+                if (missingRows.size() < MAX_REPORTED_ROWS) {
+                    missingRows.add(expectedRow.values);
+                    notes.add(expectedRow.originalCount == 1 ? null
+                        : "expected " + expectedRow.originalCount + " times, found " + (expectedRow.originalCount - expectedRow.count) + " times");
+                }
+            }
+            if (missingRowCount > 0) {
+                appendMissingRows(schemaName, tableName, qualifiedTableName, columns, columnNames, missingRows, notes, missingRowCount,
+                    inserter, connection.getConnection(), differences);
+            }
+            if (extraRowCount > 0) {
+                appendExtraRows(schemaName, tableName, columns, extraRows, extraRowCount, missingRowCount == 0, differences);
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Groups the expected rows by the columns that have a value. Equal rows are counted once, the patterns with
+     * the most values come first so that an actual row first matches the most specific expected row.
+     *
+     * @param expectedTable The expected table, not null
+     * @param dataTypes     The data types of the columns in the database, not null
+     * @param expectedRows  The list to which the distinct expected rows are added in the order of the table, not null
+     * @return The patterns, not null
+     */
+    protected List<RowPattern> getRowPatterns(ITable expectedTable, DataType[] dataTypes, List<ExpectedRow> expectedRows) throws DatabaseUnitException {
+        Column[] columns = expectedTable.getTableMetaData().getColumns();
+        Map<BitSet, RowPattern> patterns = new LinkedHashMap<BitSet, RowPattern>();
+        if (columns.length == 0) {
+            return new ArrayList<RowPattern>();
+        }
+        for (int row = 0; row < expectedTable.getRowCount(); row++) {
+            Object[] values = new Object[columns.length];
+            Object[] canonicalValues = new Object[columns.length];
+            BitSet valueColumns = new BitSet(columns.length);
+            for (int i = 0; i < columns.length; i++) {
+                Object value = ColumnarTable.normalize(expectedTable.getValue(row, columns[i].getColumnName()));
+                if (value != null) {
+                    values[i] = dataTypes[i].typeCast(value);
+                    canonicalValues[i] = canonicalize(values[i]);
+                    valueColumns.set(i);
+                }
+            }
+            RowPattern pattern = patterns.get(valueColumns);
+            if (pattern == null) {
+                pattern = new RowPattern(valueColumns);
+                patterns.put(valueColumns, pattern);
+            }
+            List<Object> key = pattern.getKey(canonicalValues);
+            ExpectedRow expectedRow = pattern.rows.get(key);
+            if (expectedRow == null) {
+                expectedRow = new ExpectedRow(values);
+                pattern.rows.put(key, expectedRow);
+                expectedRows.add(expectedRow);
+            }
+            expectedRow.count++;
+            expectedRow.originalCount++;
+        }
+        List<RowPattern> result = new ArrayList<RowPattern>(patterns.values());
+        Collections.sort(result, new Comparator<RowPattern>() {
+
+            public int compare(RowPattern pattern1, RowPattern pattern2) {
+                return pattern2.columnIndexes.length - pattern1.columnIndexes.length;
+            }
+        });
+        return result;
+    }
+
+    //实际行扣减第一个还有剩余次数的匹配期望行，只有一个hash表时每个实际行最多匹配一个期望行，不需要重新分配
+    protected boolean match(List<RowPattern> patterns, Object[] values) {
+        if (patterns.size() == 1) {
+            RowPattern pattern = patterns.get(0);
+            ExpectedRow expectedRow = pattern.rows.get(pattern.getKey(values));
+            if (expectedRow != null && expectedRow.count > 0) {
+                expectedRow.count--;
+                return true;
+            }
+            return false;
+        }
+        return assign(patterns, values.clone());
+    }
+
+    /**
+     * Assigns an actual row to a matching expected row. If all matching expected rows are used up, searches breadth first
+     * for a chain of assigned actual rows that can each move to another matching expected row and that ends at an expected
+     * row that is not used up (an augmenting path of Kuhn's algorithm), then moves the rows along the chain. Every expected
+     * row and every assigned actual row is visited at most once, so one call takes O(V + E) time, where V is the number of
+     * distinct expected rows and assigned actual rows and E the number of patterns times the number of assigned actual rows.
+     * Comparing a whole table therefore takes O(V * E) time in the worst case, linear time if the rows never need to be moved.
+     *
+     * @param patterns The patterns, not null
+     * @param values   The canonical values of the actual row, kept when assigned, not null
+     * @return False if the row could not be assigned
+     */
+    protected boolean assign(List<RowPattern> patterns, Object[] values) {
+        // 每个加入队列的实际行记录它所在的期望行和位置，以及要换到这个位置的实际行
+        Map<Object[], Move> moves = new IdentityHashMap<Object[], Move>();
+        Set<ExpectedRow> visited = new HashSet<ExpectedRow>();
+        Deque<Object[]> queue = new ArrayDeque<Object[]>();
+        queue.add(values);
+        while (!queue.isEmpty()) {
+            Object[] row = queue.poll();
+            List<ExpectedRow> usedRows = new ArrayList<ExpectedRow>();
+            for (RowPattern pattern : patterns) {
+                ExpectedRow expectedRow = pattern.rows.get(pattern.getKey(row));
+                if (expectedRow == null || !visited.add(expectedRow)) {
+                    continue;
+                }
+                if (expectedRow.count > 0) {
+                    expectedRow.count--;
+                    expectedRow.matchedRows.add(row);
+                    for (Move move = moves.get(row); move != null; move = moves.get(move.row)) {
+                        move.expectedRow.matchedRows.set(move.index, move.row);
+                    }
+                    return true;
+                }
+                usedRows.add(expectedRow);
+            }
+            // 没有剩余次数的期望行时才继续查找，每个已匹配的实际行只属于一个期望行，因此最多加入队列一次
+            for (ExpectedRow expectedRow : usedRows) {
+                for (int i = 0; i < expectedRow.matchedRows.size(); i++) {
+                    Object[] matchedRow = expectedRow.matchedRows.get(i);
+                    moves.put(matchedRow, new Move(expectedRow, i, row));
+                    queue.add(matchedRow);
+                }
+            }
+        }
+        return false;
+    }
+
+    protected void appendExtraRows(String schemaName, String tableName, Column[] columns, List<Object[]> extraRows, int extraRowCount,
+                                   boolean appendHeader, StringBuilder differences) {
+        if (appendHeader) {
+            differences.append("\nFound differences for table ").append(schemaName).append('.').append(tableName).append(":\n");
+        }
+        for (Object[] values : extraRows) {
+            differences.append("\n  Unexpected row:\n  ");
+            appendRow(columns, values, differences);
+            differences.append("\n");
+        }
+        if (extraRowCount > extraRows.size()) {
+            differences.append("\n  ... and ").append(extraRowCount - extraRows.size()).append(" more unexpected rows\n");
+        }
+    }
+
+    /**
+     * Converts a value to a value with the same equals and hash code for every representation of the same
+     * database value: decimals without trailing zeros, dates as milliseconds and binary values as buffers.
+     *
+     * @param value The value, null for a database null
+     * @return The canonical value
+     */
+    protected Object canonicalize(Object value) {
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+        }
+        if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).getTime();
+        }
+        if (value instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) value);
+        }
+        return value;
+    }
+
+    protected boolean isFailOnExtraRows() {
+        if (failOnExtraRows == null) {
+            failOnExtraRows = PropertyUtils.getBoolean(PROPKEY_FAIL_ON_EXTRA_ROWS, false, Unitils.getInstance().getConfiguration());
+        }
+        return failOnExtraRows;
+    }
+
+    /**
+     * The distinct expected rows that have a value for the same columns, by their values for these columns.
+     */
+    protected static class RowPattern {
+
+        private final int[] columnIndexes;
+
+        private final Map<List<Object>, ExpectedRow> rows = new HashMap<List<Object>, ExpectedRow>();
+
+        RowPattern(BitSet valueColumns) {
+            columnIndexes = new int[valueColumns.cardinality()];
+            for (int i = 0, column = valueColumns.nextSetBit(0); column >= 0; i++, column = valueColumns.nextSetBit(column + 1)) {
+                columnIndexes[i] = column;
+            }
+        }
+
+        List<Object> getKey(Object[] values) {
+            List<Object> key = new ArrayList<Object>(columnIndexes.length);
+            for (int columnIndex : columnIndexes) {
+                key.add(values[columnIndex]);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * An expected row with the number of times it occurs in the expected table and the number of times it has not been matched yet.
+     */
+    protected static class ExpectedRow {
+
+        private final Object[] values;
+
+        /* The canonical values of the actual rows assigned to this row, only kept if there are several patterns */
+        private final List<Object[]> matchedRows = new ArrayList<Object[]>();
+
+        private int count;
+
+        private int originalCount;
+
+        ExpectedRow(Object[] values) {
+            this.values = values;
+        }
+    }
+
+    /**
+     * An assigned actual row that can move out of the given position of an expected row to make room for another actual row.
+     */
+    private static class Move {
+
+        private final ExpectedRow expectedRow;
+
+        private final int index;
+
+        private final Object[] row;
+
+        Move(ExpectedRow expectedRow, int index, Object[] row) {
+            this.expectedRow = expectedRow;
+            this.index = index;
+            this.row = row;
+        }
+    }
+}
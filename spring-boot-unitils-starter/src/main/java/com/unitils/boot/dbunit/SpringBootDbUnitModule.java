@@ -0,0 +1,639 @@
+package com.unitils.boot.dbunit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import com.unitils.boot.datasetloadstrategy.DataSetFingerprints;
+import com.unitils.boot.util.PhaseTimer;
+import com.unitils.boot.xls.DataSetCache;
+import com.unitils.boot.xls.DataSetMerger;
+import com.unitils.boot.xls.MultiSchemaXlsDataSetFactory;
+import org.dbunit.DatabaseUnitException;
+import org.junit.Test;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.DatabaseSequenceFilter;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.FilteredDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.NoSuchTableException;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.unitils.core.TestListener;
+import org.unitils.core.Unitils;
+import org.unitils.core.UnitilsException;
+import org.unitils.core.dbsupport.DbSupport;
+import org.unitils.core.dbsupport.DbSupportFactory;
+import org.unitils.core.dbsupport.DefaultSQLHandler;
+import org.unitils.core.util.ConfigUtils;
+import org.unitils.database.DataSourceWrapper;
+import org.unitils.database.DatabaseModule;
+import org.unitils.database.config.DatabaseConfiguration;
+import org.unitils.database.annotations.Transactional;
+import org.unitils.database.util.TransactionMode;
+import org.unitils.dbmaintainer.locator.ClassPathDataLocator;
+import org.unitils.dbmaintainer.locator.resourcepickingstrategie.ResourcePickingStrategie;
+import org.unitils.dbunit.DbUnitModule;
+import org.unitils.dbunit.annotation.DataSet;
+import org.unitils.dbunit.annotation.ExpectedDataSet;
+import org.unitils.dbunit.datasetfactory.DataSetFactory;
+import org.unitils.dbunit.datasetloadstrategy.DataSetLoadStrategy;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.unitils.util.AnnotationUtils.getClassLevelAnnotation;
+import static org.unitils.util.AnnotationUtils.getMethodOrClassLevelAnnotation;
+import static org.unitils.util.AnnotationUtils.getMethodOrClassLevelAnnotationProperty;
+import static org.unitils.util.ModuleUtils.getAnnotationPropertyDefaults;
+import static org.unitils.util.ModuleUtils.getEnumValueReplaceDefault;
+import static org.unitils.util.PropertyUtils.getBoolean;
+import static org.unitils.util.PropertyUtils.getInt;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 扩展DbUnitModule，数据集文件在classpath目录中时直接使用原文件，不再拷贝到临时文件，
+ * 这样同一个文件的解析结果才能被缓存。测试提交了事务或者没有事务时，清除已提交数据集的指纹。
+ * 每个线程使用自己的DbUnit连接，并行执行的测试方法在各自的事务中加载数据
+ * @Date:Created in 2018-07-08
+ */
+public class SpringBootDbUnitModule extends DbUnitModule {
+
+    private static final Log logger = LogFactory.getLog(SpringBootDbUnitModule.class);
+
+    /* The default values of the @Transactional annotation, used to find the transaction mode of a test */
+    protected Map<Class<? extends Annotation>, Map<String, String>> transactionalDefaultValues;
+
+    /* Property key of the number of threads that load the schemas of one data set concurrently, 1 loads them on the test thread */
+    public static final String PROPKEY_LOAD_PARALLELISM = "SpringBootDbUnitModule.loadParallelism";
+
+    /* Property key of whether class and method level data sets are merged and loaded in foreign key order */
+    public static final String PROPKEY_MERGE_DATA_SETS = "SpringBootDbUnitModule.mergeDataSets";
+
+    private static ExecutorService loadExecutor;
+
+    /* The table names in foreign key order, by database, schema and the table names of the data set */
+    private static final Map<String, String[]> tableOrders = new ConcurrentHashMap<String, String[]>();
+
+    /* The primary key column names, by database, schema and table name */
+    private static final Map<String, List<String>> primaryKeys = new ConcurrentHashMap<String, List<String>>();
+
+    /* The temp copies of the data sets in jars, by resource URL */
+    private static final Map<String, File> resourceCopies = new HashMap<String, File>();
+
+    /* Compares the expected data sets with the database content */
+    protected ExpectedDataSetAssert expectedDataSetAssert;
+
+    /* The number of schemas that are loaded at the same time */
+    protected int loadParallelism;
+
+    protected boolean mergeDataSets;
+
+    /* The DbUnit connections of the current thread, per schema and database name */
+    protected final ThreadLocal<Map<String, DbUnitDatabaseConnection>> threadDbUnitDatabaseConnections = new ThreadLocal<Map<String, DbUnitDatabaseConnection>>() {
+
+        @Override
+        protected Map<String, DbUnitDatabaseConnection> initialValue() {
+            return new HashMap<String, DbUnitDatabaseConnection>();
+        }
+    };
+
+    /* The name of the database of the data set the current thread is loading or comparing, the databaseName field is shared by all threads */
+    protected final ThreadLocal<String> threadDatabaseName = new ThreadLocal<String>();
+
+    /**
+     * @return The configured DbUnit module, not null
+     * @throws UnitilsException if the DbUnit module is not a SpringBootDbUnitModule
+     */
+    public static SpringBootDbUnitModule getModule() {
+        DbUnitModule dbUnitModule = Unitils.getInstance().getModulesRepository().getModuleOfType(DbUnitModule.class);
+        if (!(dbUnitModule instanceof SpringBootDbUnitModule)) {
+            throw new UnitilsException("unitils.module.dbunit.className must be " + SpringBootDbUnitModule.class.getName());
+        }
+        return (SpringBootDbUnitModule) dbUnitModule;
+    }
+
+    @Override
+    public void init(Properties configuration) {
+        super.init(configuration);
+        transactionalDefaultValues = getAnnotationPropertyDefaults(DatabaseModule.class, configuration, Transactional.class);
+        expectedDataSetAssert = ConfigUtils.getInstanceOf(ExpectedDataSetAssert.class, configuration);
+        loadParallelism = getInt(PROPKEY_LOAD_PARALLELISM, 1, configuration);
+        mergeDataSets = getBoolean(PROPKEY_MERGE_DATA_SETS, false, configuration);
+    }
+
+    /**
+     * Gets the plain data source of the database of the data set that is being loaded. Connections of this
+     * data source do not take part in the transaction of the test.
+     *
+     * @return The data source, not null
+     */
+    public DataSource getDataSource() {
+        return getDatabaseModule().getWrapper(getDatabaseName()).getDataSource();
+    }
+
+    /**
+     * Creates a DbUnit connection for a connection that does not take part in the transaction of the test, e.g.
+     * one of {@link #getDataSource()}. It is configured the same way as the connections Unitils creates.
+     *
+     * @param connection The JDBC connection, not null
+     * @param schemaName The schema name, not null
+     * @return The DbUnit connection, not null
+     */
+    public IDatabaseConnection createDetachedConnection(Connection connection, String schemaName) throws DatabaseUnitException {
+        DatabaseConfig config = getDbUnitDatabaseConnection(schemaName).getConfig();
+        final String schema = getDbUnitDatabaseConnection(schemaName).getSchema();
+        // DbUnit按数据库元数据转换schema的大小写，H2（DATABASE_TO_UPPER=false）中PUBLIC会变成不存在的public，这里保留Unitils连接的schema
+        DatabaseConnection databaseConnection = new DatabaseConnection(connection, schema, false) {
+
+            @Override
+            public String getSchema() {
+                return schema;
+            }
+        };
+        for (DatabaseConfig.ConfigProperty property : DatabaseConfig.ALL_PROPERTIES) {
+            Object value = config.getProperty(property.getProperty());
+            if (value != null) {
+                databaseConnection.getConfig().setProperty(property.getProperty(), value);
+            }
+        }
+        return databaseConnection;
+    }
+
+    /**
+     * Gets the DbUnit connection of the current thread. A DbUnit connection holds on to the JDBC connection of the
+     * transaction it was first used in, so connections can not be shared between threads.
+     *
+     * @param schemaName The schema name, not null
+     * @return The DbUnit connection, not null
+     */
+    @Override
+    public DbUnitDatabaseConnection getDbUnitDatabaseConnection(String schemaName) {
+        Map<String, DbUnitDatabaseConnection> dbUnitDatabaseConnections = threadDbUnitDatabaseConnections.get();
+        String keyInDbUnitConnection = schemaName + getDatabaseName();
+        DbUnitDatabaseConnection dbUnitDatabaseConnection = dbUnitDatabaseConnections.get(keyInDbUnitConnection);
+        if (dbUnitDatabaseConnection == null) {
+            dbUnitDatabaseConnection = createDbUnitConnection(schemaName);
+            dbUnitDatabaseConnections.put(keyInDbUnitConnection, dbUnitDatabaseConnection);
+        }
+        return dbUnitDatabaseConnection;
+    }
+
+    @Override
+    protected void closeJdbcConnection() {
+        try {
+            for (DbUnitDatabaseConnection dbUnitDatabaseConnection : threadDbUnitDatabaseConnections.get().values()) {
+                dbUnitDatabaseConnection.closeJdbcConnection();
+            }
+        } catch (SQLException e) {
+            throw new UnitilsException("Error while closing connection.", e);
+        }
+    }
+
+    /**
+     * The same as the connection Unitils creates, for the database of the current thread.
+     */
+    @Override
+    protected DbUnitDatabaseConnection createDbUnitConnection(String schemaName) {
+        DataSourceWrapper wrapper = getDatabaseModule().getWrapper(getDatabaseName());
+        DataSource dataSource = wrapper.getDataSourceAndActivateTransactionIfNeeded();
+        DbSupport dbSupport = DbSupportFactory.getDbSupport(configuration, new DefaultSQLHandler(dataSource), schemaName, wrapper.getDatabaseConfiguration().getDialect());
+        DbUnitDatabaseConnection connection = new DbUnitDatabaseConnection(dataSource, dbSupport.getSchemaName());
+        DatabaseConfig config = connection.getConfig();
+        config.setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, ConfigUtils.getInstanceOf(IDataTypeFactory.class, configuration, dbSupport.getDatabaseDialect()));
+        if (dbSupport.getIdentifierQuoteString() != null) {
+            config.setProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN, dbSupport.getIdentifierQuoteString() + '?' + dbSupport.getIdentifierQuoteString());
+        }
+        config.setProperty(DatabaseConfig.FEATURE_BATCHED_STATEMENTS, "true");
+        config.setProperty(DatabaseConfig.FEATURE_SKIP_ORACLE_RECYCLEBIN_TABLES, "true");
+        config.setProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER, getDefaultDatabaseMetaHandler());
+        return connection;
+    }
+
+    /**
+     * The same as the db support Unitils uses, for the database of the current thread.
+     */
+    @Override
+    protected DbSupport getDefaultDbSupport() {
+        DataSourceWrapper wrapper = getDatabaseModule().getWrapper(getDatabaseName());
+        DataSource dataSource = wrapper.getDataSourceAndActivateTransactionIfNeeded();
+        DatabaseConfiguration databaseConfiguration = wrapper.getDatabaseConfiguration();
+        List<String> schemaNames = databaseConfiguration.getSchemaNames();
+        String schemaName = schemaNames == null || schemaNames.isEmpty() ? "" : schemaNames.get(0);
+        return DbSupportFactory.getDefaultDbSupport(configuration, new DefaultSQLHandler(dataSource), databaseConfiguration.getDialect(), schemaName);
+    }
+
+    /**
+     * @return The name of the database of the data set the current thread is loading, empty for the default database
+     */
+    public String getDatabaseName() {
+        String name = threadDatabaseName.get();
+        if (name == null) {
+            name = databaseName;
+        }
+        return name == null ? "" : name;
+    }
+
+    /**
+     * Inserts the data sets of the given test, the time it takes without parsing the data sets is recorded
+     * by the {@link PhaseTimer}.
+     */
+    @Override
+    public void insertDataSet(Method testMethod, Object testObject) {
+        PhaseTimer.begin(testObject.getClass());
+        try {
+            super.insertDataSet(testMethod, testObject);
+        } finally {
+            PhaseTimer.end("dbunit.insertDataSet");
+        }
+    }
+
+    /**
+     * Inserts the given data set. When it has multiple schemas and the changes of the test are not rolled back,
+     * the schemas are loaded concurrently over separate connections, see {@link #PROPKEY_LOAD_PARALLELISM}.
+     */
+    @Override
+    public void insertDataSet(DataSet dataSet, Object testObject, Method testMethod) {
+        MultiSchemaDataSet multiSchemaDataSet = getDataSet(dataSet, testMethod, testObject.getClass());
+        if (multiSchemaDataSet == null) {
+            return;
+        }
+        DataSetLoadStrategy dataSetLoadStrategy = getDataSetLoadStrategy(testMethod, testObject.getClass(), dataSet);
+        if (mergeDataSets && getDataSetFactory(DataSet.class, testMethod, testObject.getClass()) instanceof MultiSchemaXlsDataSetFactory) {
+            multiSchemaDataSet = orderByForeignKeys(multiSchemaDataSet);
+        }
+        // 其他线程的连接不在测试的事务中，数据会立即提交，测试回滚时只能在测试线程中加载
+        if (loadParallelism > 1 && multiSchemaDataSet.getSchemaNames().size() > 1 && !isRolledBack(testObject, testMethod)) {
+            insertDataSetConcurrently(multiSchemaDataSet, dataSetLoadStrategy);
+        } else {
+            insertDataSet(multiSchemaDataSet, dataSetLoadStrategy);
+        }
+    }
+
+    /**
+     * Gets the data set of the given annotation. When data sets are merged and the annotation is the method level
+     * annotation of a test whose class also has a compatible Excel data set, the tables of both are merged so that
+     * every table is loaded once: the method level rows replace the class level rows with the same primary key,
+     * see {@link DataSetMerger}.
+     */
+    @Override
+    public MultiSchemaDataSet getDataSet(DataSet dataSet, Method testMethod, Class<?> testClass) {
+        // 并行执行的测试方法可能使用不同的数据库
+        threadDatabaseName.set(dataSet.databaseName());
+        MultiSchemaDataSet multiSchemaDataSet = super.getDataSet(dataSet, testMethod, testClass);
+        DataSet classDataSet = getClassLevelAnnotation(DataSet.class, testClass);
+        if (!mergeDataSets || classDataSet == null || testMethod.getAnnotation(DataSet.class) != dataSet || !isMergeable(classDataSet, dataSet, testMethod, testClass)) {
+            return multiSchemaDataSet;
+        }
+        try {
+            return DataSetMerger.merge(new DatabasePrimaryKeyResolver(), super.getDataSet(classDataSet, testMethod, testClass), multiSchemaDataSet);
+        } catch (DataSetException e) {
+            throw new UnitilsException("Unable to merge the class and method level data sets of " + testMethod, e);
+        }
+    }
+
+    @Override
+    public MultiSchemaDataSet getExpectedDataSet(ExpectedDataSet expectedDataSetAnnotation, Method testMethod, Object testObject) {
+        threadDatabaseName.set(expectedDataSetAnnotation.databaseName());
+        return super.getExpectedDataSet(expectedDataSetAnnotation, testMethod, testObject);
+    }
+
+    //同一个数据库、同样的加载策略和Excel数据集工厂才能合并
+    protected boolean isMergeable(DataSet classDataSet, DataSet methodDataSet, Method testMethod, Class<?> testClass) {
+        return classDataSet.databaseName().equals(methodDataSet.databaseName()) && classDataSet.loadStrategy() == methodDataSet.loadStrategy()
+            && classDataSet.factory() == methodDataSet.factory() && getDataSetFactory(DataSet.class, testMethod, testClass) instanceof MultiSchemaXlsDataSetFactory;
+    }
+
+    /**
+     * Orders the tables of every schema so that referenced tables are inserted first and deleted last. The order is
+     * looked up once per set of tables, when it can not be determined, e.g. for cyclic foreign keys, the data set order is used.
+     *
+     * @param multiSchemaDataSet The data set, not null
+     * @return The data set in foreign key order, not null
+     */
+    protected MultiSchemaDataSet orderByForeignKeys(MultiSchemaDataSet multiSchemaDataSet) {
+        MultiSchemaDataSet result = new MultiSchemaDataSet();
+        for (String schemaName : multiSchemaDataSet.getSchemaNames()) {
+            IDataSet dataSet = multiSchemaDataSet.getDataSetForSchema(schemaName);
+            try {
+                String[] tableNames = dataSet.getTableNames();
+                String key = getDatabaseName() + '.' + schemaName + Arrays.toString(tableNames);
+                String[] orderedTableNames = tableOrders.get(key);
+                if (orderedTableNames == null) {
+                    try {
+                        orderedTableNames = new DatabaseSequenceFilter(getDbUnitDatabaseConnection(schemaName), tableNames).getTableNames(dataSet);
+                    } catch (Exception e) {
+                        logger.debug("Unable to order the tables of schema " + schemaName + " by foreign keys, using the data set order", e);
+                        orderedTableNames = tableNames;
+                    }
+                    tableOrders.put(key, orderedTableNames);
+                }
+                result.setDataSetForSchema(schemaName, new FilteredDataSet(orderedTableNames, dataSet));
+            } catch (DataSetException e) {
+                throw new UnitilsException("Unable to order the tables of schema " + schemaName, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads every schema of the given data set on a thread of the load pool, each thread uses its own connection.
+     *
+     * @param multiSchemaDataSet  The data set, not null
+     * @param dataSetLoadStrategy The load strategy, not null
+     */
+    protected void insertDataSetConcurrently(MultiSchemaDataSet multiSchemaDataSet, final DataSetLoadStrategy dataSetLoadStrategy) {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        final String databaseName = getDatabaseName();
+        try {
+            for (final String schemaName : multiSchemaDataSet.getSchemaNames()) {
+                final IDataSet schemaDataSet = multiSchemaDataSet.getDataSetForSchema(schemaName);
+                futures.add(getLoadExecutor(loadParallelism).submit(new Callable<Void>() {
+
+                    public Void call() {
+                        threadDatabaseName.set(databaseName);
+                        try {
+                            dataSetLoadStrategy.execute(getDbUnitDatabaseConnection(schemaName), schemaDataSet);
+                        } finally {
+                            closeJdbcConnection();
+                            threadDatabaseName.remove();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnitilsException("Interrupted while loading data set", e);
+        } catch (ExecutionException e) {
+            throw new UnitilsException("Unable to load data set", e.getCause());
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    //所有模块共享一个线程池，线程是守护线程，不会阻止JVM退出
+    private static synchronized ExecutorService getLoadExecutor(int parallelism) {
+        if (loadExecutor == null) {
+            loadExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "unitils-dataset-loader-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return loadExecutor;
+    }
+
+    /**
+     * Compares the expected data sets with the database content using the configured {@link ExpectedDataSetAssert}.
+     * The time it takes without parsing the data sets is recorded by the {@link PhaseTimer}.
+     */
+    @Override
+    public void assertExpectedDataSets(MultiSchemaDataSet multiSchemaExpectedDataSet, Object testObject) {
+        PhaseTimer.begin(testObject.getClass());
+        try {
+            if (multiSchemaExpectedDataSet == null) {
+                return;
+            }
+            getDatabaseModule().flushDatabaseUpdates(testObject);
+            for (String schemaName : multiSchemaExpectedDataSet.getSchemaNames()) {
+                expectedDataSetAssert.assertEqualDataSets(schemaName, multiSchemaExpectedDataSet.getDataSetForSchema(schemaName), getDbUnitDatabaseConnection(schemaName));
+            }
+        } finally {
+            closeJdbcConnection();
+            PhaseTimer.end("dbunit.assertExpectedDataSet");
+        }
+    }
+
+    /**
+     * Parses the Excel data sets of the test methods of the given class into the {@link DataSetCache}, so that
+     * loading them in the tests only needs the cached tables. Data sets that can not be parsed are left to the test.
+     * Nothing is parsed when the cache is disabled.
+     *
+     * @param testClass The test class, not null
+     */
+    public void prefetchDataSets(Class<?> testClass) {
+        // 不缓存时解析的结果不会被测试使用
+        if (getInt(MultiSchemaXlsDataSetFactory.PROPKEY_CACHE_MAX_SIZE, DataSetCache.DEFAULT_MAX_SIZE, configuration) <= 0) {
+            return;
+        }
+        for (Method testMethod : testClass.getMethods()) {
+            if (!testMethod.isAnnotationPresent(Test.class)) {
+                continue;
+            }
+            DataSet dataSet = getMethodOrClassLevelAnnotation(DataSet.class, testMethod, testClass);
+            if (dataSet == null || !(getDataSetFactory(DataSet.class, testMethod, testClass) instanceof MultiSchemaXlsDataSetFactory)) {
+                continue;
+            }
+            try {
+                getDataSet(dataSet, testMethod, testClass);
+            } catch (Exception e) {
+                logger.debug("Unable to prefetch data set of " + testMethod, e);
+            }
+        }
+    }
+
+    @Override
+    protected MultiSchemaDataSet getDataSet(Class<?> testClass, String[] dataSetFileNames, DataSetFactory dataSetFactory) {
+        List<File> dataSetFiles = new ArrayList<File>();
+        List<File> tempFiles = new ArrayList<File>();
+        ResourcePickingStrategie resourcePickingStrategie = getResourcePickingStrategie();
+        for (String dataSetFileName : dataSetFileNames) {
+            File dataSetFile = locateDataSetFile(dataSetFileName, resourcePickingStrategie, testClass);
+            if (dataSetFile == null) {
+                // resolved by a configured DataSetResolver, e.g. with a path prefix: fall back to a temp copy
+                dataSetFile = createDataSetFileNamesHandler().locateResource(new ClassPathDataLocator(), dataSetFileName, resourcePickingStrategie, testClass);
+                tempFiles.add(dataSetFile);
+            }
+            dataSetFiles.add(dataSetFile);
+        }
+        logger.info("Loading DbUnit data set. File names: " + dataSetFiles);
+        try {
+            return dataSetFactory.createDataSet(dataSetFiles.toArray(new File[dataSetFiles.size()]));
+        } finally {
+            getFileHandler().deleteFiles(tempFiles);
+        }
+    }
+
+    /**
+     * Looks up the data set file on the class path. A name that does not start with a slash is looked up in the
+     * package of the test class first, like the DataSetResolver does, and then in the class path root, like the
+     * {@link ClassPathDataLocator} does. A resource in a jar is copied once to a temp file, so that the
+     * {@link DataSetCache} finds it again under the same path.
+     *
+     * @param dataSetFileName          The name of the data set, not null
+     * @param resourcePickingStrategie The strategy to pick between multiple matches, not null
+     * @param testClass                The test class, not null
+     * @return The file, null if the resource is not on the class path
+     */
+    protected File locateDataSetFile(String dataSetFileName, ResourcePickingStrategie resourcePickingStrategie, Class<?> testClass) {
+        URL resource = locateDataSetResource(dataSetFileName, resourcePickingStrategie, testClass);
+        if (resource == null) {
+            return null;
+        }
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                File file = new File(resource.toURI());
+                return file.isFile() ? file : null;
+            } catch (URISyntaxException e) {
+                return null;
+            }
+        }
+        String key = resource.toExternalForm();
+        synchronized (resourceCopies) {
+            File file = resourceCopies.get(key);
+            if (file == null) {
+                file = copyResource(resource, dataSetFileName);
+                resourceCopies.put(key, file);
+            }
+            return file;
+        }
+    }
+
+    /**
+     * @param dataSetFileName          The name of the data set, not null
+     * @param resourcePickingStrategie The strategy to pick between multiple matches, not null
+     * @param testClass                The test class, not null
+     * @return The URL of the data set resource, null if not found
+     */
+    protected URL locateDataSetResource(String dataSetFileName, ResourcePickingStrategie resourcePickingStrategie, Class<?> testClass) {
+        List<String> resourceNames = new ArrayList<String>();
+        if (dataSetFileName.startsWith("/")) {
+            resourceNames.add(dataSetFileName.substring(1));
+        } else {
+            Package testPackage = testClass.getPackage();
+            if (testPackage != null && !testPackage.getName().isEmpty()) {
+                resourceNames.add(testPackage.getName().replace('.', '/') + '/' + dataSetFileName);
+            }
+            resourceNames.add(dataSetFileName);
+        }
+        for (String resourceName : resourceNames) {
+            List<URL> resources = resourcePickingStrategie.filter(new ClassPathDataLocator().loadResources(resourceName, true), resourceName);
+            if (!resources.isEmpty()) {
+                return resources.get(0);
+            }
+        }
+        return null;
+    }
+
+    //jar中的数据集只复制一次到临时文件，JVM退出时删除
+    private File copyResource(URL resource, String dataSetFileName) {
+        File file = getFileHandler().createTempFile(dataSetFileName.substring(dataSetFileName.lastIndexOf('/') + 1));
+        file.deleteOnExit();
+        try {
+            InputStream inputStream = resource.openStream();
+            try {
+                getFileHandler().writeToFile(file, inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UnitilsException("Unable to copy data set " + resource, e);
+        }
+        return file;
+    }
+
+    /**
+     * @param testObject The test instance, not null
+     * @param testMethod The test method, not null
+     * @return Whether all changes of the given test are rolled back after the test
+     */
+    protected boolean isRolledBack(Object testObject, Method testMethod) {
+        if (!getDatabaseModule().isTransactionsEnabled(testObject, testMethod)) {
+            return false;
+        }
+        TransactionMode transactionMode = getMethodOrClassLevelAnnotationProperty(Transactional.class, "value", TransactionMode.DEFAULT, testMethod, testObject.getClass());
+        transactionMode = getEnumValueReplaceDefault(Transactional.class, "value", transactionMode, transactionalDefaultValues);
+        return transactionMode == TransactionMode.ROLLBACK;
+    }
+
+    @Override
+    public TestListener getTestListener() {
+        return new SpringBootDbUnitListener();
+    }
+
+    /**
+     * Reads the primary keys of the tables from the database of the current test. The primary key of every table is
+     * looked up once per database, the tables of a schema are read once per merge when a primary key is not known yet.
+     */
+    protected class DatabasePrimaryKeyResolver implements DataSetMerger.PrimaryKeyResolver {
+
+        private final Map<String, IDataSet> databaseDataSets = new HashMap<String, IDataSet>();
+
+        public List<String> getPrimaryKeyNames(String schemaName, String tableName) throws DataSetException {
+            String key = getDatabaseName() + '.' + schemaName + '.' + tableName.toUpperCase(Locale.ENGLISH);
+            List<String> primaryKeyNames = primaryKeys.get(key);
+            if (primaryKeyNames != null) {
+                return primaryKeyNames;
+            }
+            IDataSet databaseDataSet = databaseDataSets.get(schemaName);
+            if (databaseDataSet == null) {
+                try {
+                    databaseDataSet = getDbUnitDatabaseConnection(schemaName).createDataSet();
+                } catch (SQLException e) {
+                    throw new DataSetException(e);
+                }
+                databaseDataSets.put(schemaName, databaseDataSet);
+            }
+            primaryKeyNames = new ArrayList<String>();
+            try {
+                for (Column column : databaseDataSet.getTableMetaData(tableName).getPrimaryKeys()) {
+                    primaryKeyNames.add(column.getColumnName());
+                }
+            } catch (NoSuchTableException e) {
+                // 表不存在时加载会报错，这里当作没有主键，不放入缓存
+                logger.debug("Table " + schemaName + "." + tableName + " not found, replacing the class level table");
+                return primaryKeyNames;
+            }
+            primaryKeyNames = Collections.unmodifiableList(primaryKeyNames);
+            primaryKeys.put(key, primaryKeyNames);
+            return primaryKeyNames;
+        }
+    }
+
+    protected class SpringBootDbUnitListener extends DbUnitListener {
+
+        @Override
+        public void afterTestTearDown(Object testObject, Method testMethod) {
+            // 数据库中的数据可能已被修改，已提交的数据集需要重新加载
+            if (!isRolledBack(testObject, testMethod)) {
+                DataSetFingerprints.getInstance().invalidateAll();
+            }
+        }
+    }
+}
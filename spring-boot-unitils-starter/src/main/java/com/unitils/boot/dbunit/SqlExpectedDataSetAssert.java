@@ -0,0 +1,231 @@
+package com.unitils.boot.dbunit;
+
+import com.unitils.boot.datasetloadstrategy.BatchInserter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.StringDataType;
+import org.unitils.core.Unitils;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+import org.unitils.util.PropertyUtils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 在数据库中比较期望的数据：每张表的期望数据批量插入到连接内的临时表，再用not exists查询找出实际表中
+ * 没有对应行的期望行，只有不一致的行会读取到Java中。临时表在测试的事务和连接中创建，可以看到测试未提交的数据。
+ * 支持mysql和h2，其他数据库使用DbUnitExpectedDataSetAssert。mysql默认的排序规则不区分大小写和末尾空格，字符串列按二进制比较。
+ * 临时表在比较后删除；h2中drop table会提交事务，事务中的临时表在事务结束时由数据库删除。
+ * 和Unitils一样，期望数据中为空的单元格匹配任意值，实际表中多出的行不算差异；
+ * 不同的是只有空单元格不同的几条期望行可以匹配实际表中的同一行
+ * @Date:Created in 2018-07-08
+ */
+public class SqlExpectedDataSetAssert extends AbstractExpectedDataSetAssert {
+
+    private static final Log logger = LogFactory.getLog(SqlExpectedDataSetAssert.class);
+
+    /* Prefix of the names of the temporary tables with the expected rows */
+    public static final String TEMPORARY_TABLE_PREFIX = "ut_exp_";
+
+    private final ExpectedDataSetAssert fallbackAssert = new DbUnitExpectedDataSetAssert();
+
+    @Override
+    public void assertEqualDataSets(String schemaName, IDataSet expectedDataSet, DbUnitDatabaseConnection connection) throws AssertionError {
+        String dialect = getDialect();
+        if (!"mysql".equalsIgnoreCase(dialect) && !"h2".equalsIgnoreCase(dialect)) {
+            logger.debug("Temporary tables are not supported for dialect " + dialect + ", comparing expected data set in memory");
+            fallbackAssert.assertEqualDataSets(schemaName, expectedDataSet, connection);
+            return;
+        }
+        super.assertEqualDataSets(schemaName, expectedDataSet, connection);
+    }
+
+    protected void compareTable(String schemaName, ITable expectedTable, String qualifiedTableName, BatchInserter inserter,
+                                DbUnitDatabaseConnection connection, StringBuilder differences) throws DatabaseUnitException, SQLException {
+        String tableName = expectedTable.getTableMetaData().getTableName();
+        Column[] columns = expectedTable.getTableMetaData().getColumns();
+        List<String> columnNames = inserter.getColumnNames(expectedTable.getTableMetaData(), tableName);
+        String temporaryTableName = inserter.getQualifiedName(connection.getSchema(), getTemporaryTableName(tableName, columnNames));
+        boolean h2 = "h2".equalsIgnoreCase(getDialect());
+        boolean[] binaryColumns = getBinaryColumns(expectedTable, tableName, inserter);
+
+        Connection jdbcConnection = connection.getConnection();
+        // h2的事务中不能drop，临时表在事务结束时删除，同一个事务中重复使用
+        boolean dropOnCommit = h2 && !jdbcConnection.getAutoCommit();
+        boolean created = false;
+        Statement statement = jdbcConnection.createStatement();
+        try {
+            int expectedRowCount = 0;
+            if (columns.length > 0) {
+                createTemporaryTable(statement, h2, dropOnCommit, temporaryTableName, qualifiedTableName, columnNames);
+                created = true;
+                statement.executeUpdate("delete from " + temporaryTableName);
+                expectedRowCount = inserter.insert(expectedTable, tableName, temporaryTableName);
+            }
+            if (expectedRowCount == 0) {
+                if (queryInt(statement, "select count(*) from " + qualifiedTableName) > 0) {
+                    appendEmptyTableDifference(schemaName, tableName, differences);
+                }
+                return;
+            }
+
+            String condition = getMatchCondition(statement, temporaryTableName, columnNames, binaryColumns);
+            List<Object[]> missingRows = new ArrayList<Object[]>();
+            List<String> notes = new ArrayList<String>();
+            int missingRowCount = findMissingRows(statement, temporaryTableName, qualifiedTableName, columnNames, condition, missingRows, notes);
+            if (missingRowCount == 0) {
+                missingRowCount = findMissingDuplicates(statement, temporaryTableName, qualifiedTableName, columnNames, binaryColumns,
+                    condition, missingRows, notes);
+            }
+            if (missingRowCount > 0) {
+                appendMissingRows(schemaName, tableName, qualifiedTableName, columns, columnNames, missingRows, notes, missingRowCount,
+                    inserter, jdbcConnection, differences);
+            }
+        } finally {
+            try {
+                if (created && !dropOnCommit) {
+                    dropTemporaryTable(statement, h2, temporaryTableName);
+                }
+            } finally {
+                statement.close();
+            }
+        }
+    }
+
+    //临时表的列和实际表的列类型相同，left join使所有列都可以为null
+    protected void createTemporaryTable(Statement statement, boolean h2, boolean dropOnCommit, String temporaryTableName,
+                                        String qualifiedTableName, List<String> columnNames) throws SQLException {
+        StringBuilder sql = new StringBuilder(h2 ? "create local temporary table if not exists " : "create temporary table if not exists ");
+        sql.append(temporaryTableName).append(h2 ? (dropOnCommit ? " on commit drop transactional" : " transactional") : "").append(" as select ");
+        for (int i = 0; i < columnNames.size(); i++) {
+            sql.append(i == 0 ? "a." : ", a.").append(columnNames.get(i));
+        }
+        sql.append(" from (select 1) d left join ").append(qualifiedTableName).append(" a on 1 = 0 where 1 = 0");
+        statement.execute(sql.toString());
+    }
+
+    //mysql中drop temporary table不会提交事务
+    protected void dropTemporaryTable(Statement statement, boolean h2, String temporaryTableName) throws SQLException {
+        statement.execute((h2 ? "drop table if exists " : "drop temporary table if exists ") + temporaryTableName);
+    }
+
+    /**
+     * @return Per column whether it is compared as binary string, only string columns in MySQL
+     */
+    protected boolean[] getBinaryColumns(ITable expectedTable, String tableName, BatchInserter inserter) throws DatabaseUnitException, SQLException {
+        DataType[] dataTypes = inserter.getDataTypes(expectedTable.getTableMetaData(), tableName);
+        boolean[] binaryColumns = new boolean[dataTypes.length];
+        if ("mysql".equalsIgnoreCase(getDialect())) {
+            for (int i = 0; i < dataTypes.length; i++) {
+                binaryColumns[i] = dataTypes[i] instanceof StringDataType;
+            }
+        }
+        return binaryColumns;
+    }
+
+    //期望数据中有空值的列用is null匹配任意值，其他列只用等值条件，数据库可以使用索引或hash join
+    protected String getMatchCondition(Statement statement, String temporaryTableName, List<String> columnNames,
+                                       boolean[] binaryColumns) throws SQLException {
+        StringBuilder sql = new StringBuilder("select count(*)");
+        for (String columnName : columnNames) {
+            sql.append(", count(").append(columnName).append(")");
+        }
+        sql.append(" from ").append(temporaryTableName);
+        StringBuilder condition = new StringBuilder();
+        ResultSet resultSet = statement.executeQuery(sql.toString());
+        try {
+            resultSet.next();
+            long rowCount = resultSet.getLong(1);
+            for (int i = 0; i < columnNames.size(); i++) {
+                String columnName = columnNames.get(i);
+                String equals = (binaryColumns[i] ? "binary e." : "e.") + columnName + " = a." + columnName;
+                condition.append(i == 0 ? "" : " and ");
+                if (resultSet.getLong(i + 2) < rowCount) {
+                    condition.append("(e.").append(columnName).append(" is null or ").append(equals).append(")");
+                } else {
+                    condition.append(equals);
+                }
+            }
+        } finally {
+            resultSet.close();
+        }
+        return condition.toString();
+    }
+
+    //没有任何匹配行的期望行
+    protected int findMissingRows(Statement statement, String temporaryTableName, String qualifiedTableName, List<String> columnNames,
+                                  String condition, List<Object[]> missingRows, List<String> notes) throws SQLException {
+        StringBuilder sql = new StringBuilder("select ");
+        appendColumns("e.", columnNames, sql);
+        sql.append(" from ").append(temporaryTableName).append(" e where not exists (select 1 from ")
+            .append(qualifiedTableName).append(" a where ").append(condition).append(")");
+        int missingRowCount = 0;
+        ResultSet resultSet = statement.executeQuery(sql.toString());
+        try {
+            while (resultSet.next()) {
+                if (missingRowCount++ < MAX_REPORTED_ROWS) {
+                    missingRows.add(readRow(resultSet, columnNames.size()));
+                    notes.add(null);
+                }
+            }
+        } finally {
+            resultSet.close();
+        }
+        return missingRowCount;
+    }
+
+    //相同的期望行出现多次时，实际表中也要有同样多的匹配行
+    protected int findMissingDuplicates(Statement statement, String temporaryTableName, String qualifiedTableName, List<String> columnNames,
+                                        boolean[] binaryColumns, String condition, List<Object[]> missingRows, List<String> notes) throws SQLException {
+        StringBuilder sql = new StringBuilder("select ");
+        appendColumns("e.", columnNames, sql);
+        sql.append(", e.ut_count, (select count(*) from ").append(qualifiedTableName).append(" a where ").append(condition)
+            .append(") from (select ");
+        appendColumns("", columnNames, sql);
+        sql.append(", count(*) ut_count from ").append(temporaryTableName).append(" group by ");
+        appendColumns("", columnNames, sql);
+        // 只有大小写或末尾空格不同的期望行不是重复的行
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (binaryColumns[i]) {
+                sql.append(", binary ").append(columnNames.get(i));
+            }
+        }
+        sql.append(" having count(*) > 1) e");
+        int missingRowCount = 0;
+        ResultSet resultSet = statement.executeQuery(sql.toString());
+        try {
+            while (resultSet.next()) {
+                long expectedCount = resultSet.getLong(columnNames.size() + 1);
+                long actualCount = resultSet.getLong(columnNames.size() + 2);
+                if (actualCount < expectedCount) {
+                    missingRowCount++;
+                    if (missingRows.size() < MAX_REPORTED_ROWS) {
+                        missingRows.add(readRow(resultSet, columnNames.size()));
+                        notes.add("expected " + expectedCount + " times, found " + actualCount + " times");
+                    }
+                }
+            }
+        } finally {
+            resultSet.close();
+        }
+        return missingRowCount;
+    }
+
+    protected String getDialect() {
+        return PropertyUtils.getString(BatchInserter.PROPKEY_DATABASE_DIALECT, null, Unitils.getInstance().getConfiguration());
+    }
+
+    protected String getTemporaryTableName(String tableName, List<String> columnNames) {
+        return TEMPORARY_TABLE_PREFIX + Integer.toHexString((tableName.toLowerCase() + columnNames).hashCode());
+    }
+}
@@ -0,0 +1,183 @@
+package com.unitils.boot.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.MergedContextConfiguration;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 按测试类的Spring配置缓存ApplicationContext，配置相同的测试类和测试方法共用一个context。
+ * 缓存的key是Spring的MergedContextConfiguration，也就是Spring的context缓存使用的key，包括检测到的内部配置类和@MockBean等。
+ * 无法得到MergedContextConfiguration时，key由类上的Spring测试注解（@SpringBootTest、@ActiveProfiles、@TestPropertySource等）、
+ * @MockBean等字段注解、测试类的包名（@SpringBootTest从这个包开始查找配置类）和内部配置类组成。超过最大数量时按LRU移除
+ * @Date:Created in 2018-07-08
+ */
+public class ApplicationContextCache {
+
+    private static final Log logger = LogFactory.getLog(ApplicationContextCache.class);
+
+    public static final int DEFAULT_MAX_SIZE = 8;
+
+    private final Map<Class<?>, List<Object>> contextKeys = new ConcurrentHashMap<Class<?>, List<Object>>();
+
+    private final LinkedHashMap<List<Object>, ApplicationContext> contexts = new LinkedHashMap<List<Object>, ApplicationContext>(16, 0.75f, true);
+
+    private final int maxSize;
+
+    public ApplicationContextCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param testClass The test class, not null
+     * @return The active context for the configuration of the test class, null if there is none
+     */
+    public synchronized ApplicationContext get(Class<?> testClass) {
+        List<Object> key = getContextKey(testClass);
+        if (key.isEmpty()) {
+            return null;
+        }
+        ApplicationContext context = contexts.get(key);
+        if (context instanceof ConfigurableApplicationContext && !((ConfigurableApplicationContext) context).isActive()) {
+            // closed by Spring, e.g. because of @DirtiesContext
+            contexts.remove(key);
+            return null;
+        }
+        return context;
+    }
+
+    /**
+     * Stores the context for the configuration of the given test class. Classes without Spring configuration
+     * are not cached.
+     *
+     * @param testClass The test class, not null
+     * @param context   The context, not null
+     */
+    public synchronized void put(Class<?> testClass, ApplicationContext context) {
+        List<Object> key = getContextKey(testClass);
+        if (key.isEmpty()) {
+            return;
+        }
+        contexts.put(key, context);
+        Iterator<Map.Entry<List<Object>, ApplicationContext>> iterator = contexts.entrySet().iterator();
+        while (contexts.size() > maxSize && iterator.hasNext()) {
+            Map.Entry<List<Object>, ApplicationContext> eldest = iterator.next();
+            iterator.remove();
+            logger.debug("Evicted application context for configuration " + eldest.getKey());
+        }
+    }
+
+    /**
+     * @param testClasses The test classes whose contexts are removed, all contexts if empty
+     */
+    public synchronized void remove(Class<?>... testClasses) {
+        if (testClasses.length == 0) {
+            contexts.clear();
+            return;
+        }
+        for (Class<?> testClass : testClasses) {
+            contexts.remove(getContextKey(testClass));
+        }
+    }
+
+    public synchronized int size() {
+        return contexts.size();
+    }
+
+    /**
+     * @param testClass The test class, not null
+     * @return The key of the context configuration of the test class, empty if the class has no Spring configuration
+     */
+    public List<Object> getContextKey(Class<?> testClass) {
+        List<Object> key = contextKeys.get(testClass);
+        if (key == null) {
+            key = createContextKey(testClass);
+            contextKeys.put(testClass, key);
+        }
+        return key;
+    }
+
+    //没有Spring配置注解的类不缓存，其他类使用Spring计算的配置
+    protected List<Object> createContextKey(Class<?> testClass) {
+        List<Object> annotationKey = createAnnotationContextKey(testClass);
+        if (annotationKey.isEmpty()) {
+            return annotationKey;
+        }
+        try {
+            MergedContextConfiguration mergedContextConfiguration = new UnitilsTestContextManager(testClass).getMergedContextConfiguration();
+            if (mergedContextConfiguration != null) {
+                return Collections.<Object>singletonList(mergedContextConfiguration);
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Unable to build the merged context configuration of " + testClass.getName() + ", using its annotations as key", e);
+        }
+        return annotationKey;
+    }
+
+    //注解的equals按属性值比较，所以配置相同的注解得到相同的key
+    protected List<Object> createAnnotationContextKey(Class<?> testClass) {
+        List<Object> key = new ArrayList<Object>();
+        for (Class<?> clazz = testClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Annotation annotation : clazz.getDeclaredAnnotations()) {
+                if (isContextAnnotation(annotation.annotationType(), new HashSet<Class<?>>())) {
+                    key.add(annotation);
+                }
+            }
+            for (Field field : clazz.getDeclaredFields()) {
+                for (Annotation annotation : field.getDeclaredAnnotations()) {
+                    if (annotation.annotationType().getName().startsWith("org.springframework.boot.test.mock.")) {
+                        key.add(Arrays.asList(field.getGenericType().toString(), annotation));
+                    }
+                }
+            }
+        }
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 没有指定配置类时，Spring使用内部的配置类，@SpringBootTest从测试类的包开始查找@SpringBootConfiguration
+        key.add(testClass.getPackage() == null ? "" : testClass.getPackage().getName());
+        for (Class<?> clazz = testClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Class<?> nestedClass : clazz.getDeclaredClasses()) {
+                if (Modifier.isStatic(nestedClass.getModifiers()) && hasContextAnnotation(nestedClass)) {
+                    key.add(nestedClass);
+                }
+            }
+        }
+        return Collections.unmodifiableList(key);
+    }
+
+    private boolean hasContextAnnotation(Class<?> clazz) {
+        for (Annotation annotation : clazz.getDeclaredAnnotations()) {
+            if (isContextAnnotation(annotation.annotationType(), new HashSet<Class<?>>())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Spring的配置注解，或者用配置注解标注的组合注解，事务和@Rollback等不影响context的注解除外
+    protected boolean isContextAnnotation(Class<? extends Annotation> annotationType, Set<Class<?>> visited) {
+        String name = annotationType.getName();
+        if (name.startsWith("java.lang.annotation.") || !visited.add(annotationType)) {
+            return false;
+        }
+        if (name.startsWith("org.springframework.")) {
+            return !name.startsWith("org.springframework.test.annotation.") && !name.startsWith("org.springframework.test.context.jdbc.")
+                && !name.startsWith("org.springframework.transaction.");
+        }
+        for (Annotation metaAnnotation : annotationType.getDeclaredAnnotations()) {
+            if (isContextAnnotation(metaAnnotation.annotationType(), visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+package com.unitils.boot.util;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 按ApplicationContext缓存类型对应的唯一bean名称，避免每次注入都调用getBeansOfType扫描所有bean定义。
+ * context刷新或关闭时清空该context的缓存，context被回收后缓存也随之回收
+ * @Date:Created in 2018-07-08
+ */
+public class BeanTypeResolutionCache {
+
+    /* The bean name per requested type, per context */
+    private final Map<ApplicationContext, Map<Class<?>, String>> beanNames = new WeakHashMap<ApplicationContext, Map<Class<?>, String>>();
+
+    /**
+     * @param context The context, not null
+     * @param type    The requested type, not null
+     * @return The name of the single bean of the given type, null if the type was not resolved yet
+     */
+    public String getBeanName(ApplicationContext context, Class<?> type) {
+        Map<Class<?>, String> contextBeanNames;
+        synchronized (beanNames) {
+            contextBeanNames = beanNames.get(context);
+        }
+        return contextBeanNames == null ? null : contextBeanNames.get(type);
+    }
+
+    /**
+     * Stores the name of the single bean of the given type. Only contexts that publish refresh and close events
+     * are cached, otherwise the cache could not be invalidated.
+     *
+     * @param context  The context, not null
+     * @param type     The requested type, not null
+     * @param beanName The name of the bean, not null
+     */
+    public void put(ApplicationContext context, Class<?> type, String beanName) {
+        if (!(context instanceof ConfigurableApplicationContext)) {
+            return;
+        }
+        Map<Class<?>, String> contextBeanNames;
+        synchronized (beanNames) {
+            contextBeanNames = beanNames.get(context);
+            if (contextBeanNames == null) {
+                contextBeanNames = new ConcurrentHashMap<Class<?>, String>();
+                beanNames.put(context, contextBeanNames);
+                ((ConfigurableApplicationContext) context).addApplicationListener(new InvalidationListener());
+            }
+        }
+        contextBeanNames.put(type, beanName);
+    }
+
+    /**
+     * @param context The context whose resolved types are removed, not null
+     */
+    public void invalidate(ApplicationContext context) {
+        synchronized (beanNames) {
+            Map<Class<?>, String> contextBeanNames = beanNames.get(context);
+            if (contextBeanNames != null) {
+                contextBeanNames.clear();
+            }
+        }
+    }
+
+    //监听器只引用缓存，不引用context本身
+    private class InvalidationListener implements ApplicationListener<ApplicationContextEvent> {
+
+        public void onApplicationEvent(ApplicationContextEvent event) {
+            if (event instanceof ContextRefreshedEvent || event instanceof ContextClosedEvent) {
+                invalidate(event.getApplicationContext());
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.unitils.boot.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 在后台线程中提前启动测试类的Spring Boot context，测试线程同时解析数据集。
+ * context保存在Spring的context缓存中，Spring加载context时对缓存加锁，测试线程需要context时会等待后台线程启动完成。
+ * 每种Spring配置只提前启动一次，启动失败时由测试线程重新启动并报告错误
+ * @Date:Created in 2018-07-08
+ */
+public class ContextWarmer {
+
+    private static final Log logger = LogFactory.getLog(ContextWarmer.class);
+
+    /* The Spring configurations that are warmed or being warmed */
+    private static final Set<List<Object>> warmedContextKeys = new HashSet<List<Object>>();
+
+    private static ExecutorService executorService;
+
+    /**
+     * Starts loading the application context of the given test class on a background thread, unless a context
+     * with the same configuration was warmed before.
+     *
+     * @param testClass  The test class, not null
+     * @param contextKey The key of the Spring configuration of the test class, not null
+     */
+    public static synchronized void warm(final Class<?> testClass, List<Object> contextKey) {
+        if (contextKey.isEmpty() || !warmedContextKeys.add(contextKey)) {
+            return;
+        }
+        getExecutorService().execute(new Runnable() {
+
+            public void run() {
+                long startTime = System.currentTimeMillis();
+                PhaseTimer.begin(testClass);
+                try {
+                    new UnitilsTestContextManager(testClass).getApplicationContext();
+                    logger.info("Warmed application context for " + testClass.getName() + " in " + (System.currentTimeMillis() - startTime) + " ms");
+                } catch (Throwable e) {
+                    logger.warn("Unable to warm application context for " + testClass.getName() + ", it is loaded by the test", e);
+                } finally {
+                    PhaseTimer.end("contextWarmUp");
+                }
+            }
+        });
+    }
+
+    //一个守护线程按顺序启动context，不会阻止JVM退出
+    private static ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "unitils-context-warmer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executorService;
+    }
+}
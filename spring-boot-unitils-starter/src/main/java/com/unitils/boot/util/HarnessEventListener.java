@@ -0,0 +1,35 @@
+package com.unitils.boot.util;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 接收测试框架本身的事件：context的创建和关闭、Excel数据集的解析、表数据的加载
+ * @Date:Created in 2018-07-08
+ */
+public interface HarnessEventListener {
+
+    /**
+     * @param testClass The test class the context was created for, not null
+     * @param nanos     The time it took to create the context, in nanoseconds
+     */
+    void contextCreated(Class<?> testClass, long nanos);
+
+    /**
+     * @param contextName The display name of the closed context, not null
+     */
+    void contextClosed(String contextName);
+
+    /**
+     * @param fileNames The names of the data set files, comma separated, not null
+     * @param rows      The number of rows in the data set
+     * @param bytes     The size of the data set files
+     * @param nanos     The time it took to read the data set, in nanoseconds
+     */
+    void dataSetRead(String fileNames, long rows, long bytes, long nanos);
+
+    /**
+     * @param tableName The name of the table, not null
+     * @param rows      The number of inserted rows
+     * @param nanos     The time it took to insert the rows, in nanoseconds
+     */
+    void tableLoaded(String tableName, long rows, long nanos);
+}
@@ -0,0 +1,92 @@
+package com.unitils.boot.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.ClassUtils;
+import org.unitils.util.PropertyUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 测试框架事件的入口，打开后发送JDK Flight Recorder事件，classpath中有Micrometer时同时记录到Metrics.globalRegistry。
+ * 没有打开时调用方先判断isEnabled，不计时也不创建事件
+ * @Date:Created in 2018-07-08
+ */
+public class HarnessEvents {
+
+    private static final Log logger = LogFactory.getLog(HarnessEvents.class);
+
+    /* Property key indicating whether the events of the test harness are emitted */
+    public static final String PROPKEY_ENABLED = "HarnessEvents.enabled";
+
+    /* Property key indicating whether JDK Flight Recorder events are emitted, if the JDK supports them */
+    public static final String PROPKEY_JFR_ENABLED = "HarnessEvents.jfr.enabled";
+
+    /* Property key indicating whether Micrometer meters are recorded, if Micrometer is on the class path */
+    public static final String PROPKEY_MICROMETER_ENABLED = "HarnessEvents.micrometer.enabled";
+
+    private static volatile boolean enabled;
+
+    private static volatile HarnessEventListener[] listeners = new HarnessEventListener[0];
+
+    /**
+     * Creates the listeners that are enabled and supported by the class path.
+     *
+     * @param configuration The Unitils configuration, not null
+     */
+    public static synchronized void init(Properties configuration) {
+        List<HarnessEventListener> newListeners = new ArrayList<HarnessEventListener>();
+        if (PropertyUtils.getBoolean(PROPKEY_ENABLED, false, configuration)) {
+            ClassLoader classLoader = HarnessEvents.class.getClassLoader();
+            if (PropertyUtils.getBoolean(PROPKEY_JFR_ENABLED, true, configuration) && ClassUtils.isPresent("jdk.jfr.Event", classLoader)) {
+                addListener(newListeners, "com.unitils.boot.util.JfrHarnessEventListener");
+            }
+            if (PropertyUtils.getBoolean(PROPKEY_MICROMETER_ENABLED, true, configuration) && ClassUtils.isPresent("io.micrometer.core.instrument.Metrics", classLoader)) {
+                addListener(newListeners, "com.unitils.boot.util.MicrometerHarnessEventListener");
+            }
+        }
+        listeners = newListeners.toArray(new HarnessEventListener[newListeners.size()]);
+        enabled = !newListeners.isEmpty();
+    }
+
+    //按类名创建，JDK 8和没有Micrometer时不会加载这些类
+    private static void addListener(List<HarnessEventListener> listeners, String className) {
+        try {
+            listeners.add((HarnessEventListener) Class.forName(className).newInstance());
+            logger.info("Emitting harness events to " + className);
+        } catch (Throwable e) {
+            logger.warn("Unable to create harness event listener " + className, e);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void contextCreated(Class<?> testClass, long nanos) {
+        for (HarnessEventListener listener : listeners) {
+            listener.contextCreated(testClass, nanos);
+        }
+    }
+
+    public static void contextClosed(String contextName) {
+        for (HarnessEventListener listener : listeners) {
+            listener.contextClosed(contextName);
+        }
+    }
+
+    public static void dataSetRead(String fileNames, long rows, long bytes, long nanos) {
+        for (HarnessEventListener listener : listeners) {
+            listener.dataSetRead(fileNames, rows, bytes, nanos);
+        }
+    }
+
+    public static void tableLoaded(String tableName, long rows, long nanos) {
+        for (HarnessEventListener listener : listeners) {
+            listener.tableLoaded(tableName, rows, nanos);
+        }
+    }
+}
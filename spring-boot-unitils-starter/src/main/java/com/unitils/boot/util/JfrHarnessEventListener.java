@@ -0,0 +1,118 @@
+package com.unitils.boot.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 发送JDK Flight Recorder的自定义事件，录制时打开com.unitils.boot.*事件即可在JMC中查看。只能在支持JFR的JDK上使用
+ * @Date:Created in 2018-07-08
+ */
+public class JfrHarnessEventListener implements HarnessEventListener {
+
+    public void contextCreated(Class<?> testClass, long nanos) {
+        ContextCreatedEvent event = new ContextCreatedEvent();
+        if (event.isEnabled()) {
+            event.testClass = testClass;
+            event.creationTime = nanos;
+            event.commit();
+        }
+    }
+
+    public void contextClosed(String contextName) {
+        ContextClosedEvent event = new ContextClosedEvent();
+        if (event.isEnabled()) {
+            event.contextName = contextName;
+            event.commit();
+        }
+    }
+
+    public void dataSetRead(String fileNames, long rows, long bytes, long nanos) {
+        DataSetReadEvent event = new DataSetReadEvent();
+        if (event.isEnabled()) {
+            event.fileNames = fileNames;
+            event.rows = rows;
+            event.bytes = bytes;
+            event.readTime = nanos;
+            event.commit();
+        }
+    }
+
+    public void tableLoaded(String tableName, long rows, long nanos) {
+        TableLoadedEvent event = new TableLoadedEvent();
+        if (event.isEnabled()) {
+            event.tableName = tableName;
+            event.rows = rows;
+            event.loadTime = nanos;
+            event.commit();
+        }
+    }
+
+    @Name("com.unitils.boot.ContextCreated")
+    @Label("Application Context Created")
+    @Category({"Unitils", "Context"})
+    @StackTrace(false)
+    public static class ContextCreatedEvent extends Event {
+
+        @Label("Test Class")
+        public Class<?> testClass;
+
+        @Label("Creation Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long creationTime;
+    }
+
+    @Name("com.unitils.boot.ContextClosed")
+    @Label("Application Context Closed")
+    @Category({"Unitils", "Context"})
+    @StackTrace(false)
+    public static class ContextClosedEvent extends Event {
+
+        @Label("Context")
+        public String contextName;
+    }
+
+    @Name("com.unitils.boot.DataSetRead")
+    @Label("Data Set Read")
+    @Description("Excel data set files parsed by MultiSchemaXlsDataSetReader")
+    @Category({"Unitils", "DbUnit"})
+    public static class DataSetReadEvent extends Event {
+
+        @Label("Files")
+        public String fileNames;
+
+        @Label("Rows")
+        public long rows;
+
+        @Label("File Size")
+        @DataAmount
+        public long bytes;
+
+        @Label("Read Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long readTime;
+    }
+
+    @Name("com.unitils.boot.TableLoaded")
+    @Label("Table Loaded")
+    @Category({"Unitils", "DbUnit"})
+    @StackTrace(false)
+    public static class TableLoadedEvent extends Event {
+
+        @Label("Table")
+        public String tableName;
+
+        @Label("Rows")
+        public long rows;
+
+        @Label("Load Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long loadTime;
+    }
+}
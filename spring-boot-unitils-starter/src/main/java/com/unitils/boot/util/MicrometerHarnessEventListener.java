@@ -0,0 +1,45 @@
+package com.unitils.boot.util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 把测试框架的事件记录到Micrometer的Metrics.globalRegistry，Spring Boot的MeterRegistry默认也加入globalRegistry。
+ * 测试类不作为标签，避免每个测试类产生一个指标，需要按测试类区分时使用JFR事件或PhaseTimer的报告
+ * @Date:Created in 2018-07-08
+ */
+public class MicrometerHarnessEventListener implements HarnessEventListener {
+
+    private final MeterRegistry registry;
+
+    public MicrometerHarnessEventListener() {
+        this(Metrics.globalRegistry);
+    }
+
+    public MicrometerHarnessEventListener(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void contextCreated(Class<?> testClass, long nanos) {
+        registry.timer("unitils.context.create").record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void contextClosed(String contextName) {
+        registry.counter("unitils.context.close").increment();
+    }
+
+    public void dataSetRead(String fileNames, long rows, long bytes, long nanos) {
+        registry.timer("unitils.dataset.read").record(nanos, TimeUnit.NANOSECONDS);
+        registry.summary("unitils.dataset.rows").record(rows);
+        DistributionSummary.builder("unitils.dataset.bytes").baseUnit("bytes").register(registry).record(bytes);
+    }
+
+    public void tableLoaded(String tableName, long rows, long nanos) {
+        registry.timer("unitils.table.load", "table", tableName).record(nanos, TimeUnit.NANOSECONDS);
+        registry.summary("unitils.table.rows", "table", tableName).record(rows);
+    }
+}
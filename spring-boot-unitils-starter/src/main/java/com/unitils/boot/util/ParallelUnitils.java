@@ -0,0 +1,169 @@
+package com.unitils.boot.util;
+
+import org.unitils.core.Module;
+import org.unitils.core.ModulesRepository;
+import org.unitils.core.TestContext;
+import org.unitils.core.TestListener;
+import org.unitils.core.Unitils;
+
+import java.lang.reflect.Method;
+import java.util.Properties;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 并行执行测试方法时使用的Unitils实例：模块和配置使用原来的实例，TestContext换成每个线程单独保存的ThreadLocalTestContext，
+ * 测试监听器在调用各个模块前设置的是当前线程的测试。没有挂上自己测试的线程（例如主线程）读写的仍是原来的TestContext，
+ * 所以在替换前创建的runner不受影响。只在并行的runner执行期间替换，最后一个runner结束时恢复原来的实例
+ * @Date:Created in 2018-07-08
+ */
+public class ParallelUnitils extends Unitils {
+
+    /* The number of runners that installed the parallel instance and did not uninstall it yet */
+    private static int installCount;
+
+    private final Unitils unitils;
+
+    private final ThreadLocalTestContext testContext;
+
+    private final TestListener testListener = new ParallelTestListener();
+
+    /**
+     * @param unitils The Unitils instance whose modules and configuration are used, not null
+     */
+    public ParallelUnitils(Unitils unitils) {
+        this.unitils = unitils;
+        this.testContext = new ThreadLocalTestContext(unitils.getTestContext());
+    }
+
+    /**
+     * Replaces the Unitils singleton by a parallel instance that uses the same modules, until every caller
+     * called {@link #uninstall(ParallelUnitils)}. The current parallel instance is returned if there is one.
+     *
+     * @return The parallel instance, not null
+     */
+    public static ParallelUnitils install() {
+        // getInstance在Unitils.class上同步
+        synchronized (Unitils.class) {
+            Unitils unitils = Unitils.getInstance();
+            ParallelUnitils parallelUnitils;
+            if (unitils instanceof ParallelUnitils) {
+                parallelUnitils = (ParallelUnitils) unitils;
+            } else {
+                parallelUnitils = new ParallelUnitils(unitils);
+                Unitils.setInstance(parallelUnitils);
+            }
+            installCount++;
+            return parallelUnitils;
+        }
+    }
+
+    /**
+     * Restores the Unitils instance that the parallel instance was created for, when the last caller of
+     * {@link #install()} uninstalls it.
+     *
+     * @param parallelUnitils The instance returned by install, not null
+     */
+    public static void uninstall(ParallelUnitils parallelUnitils) {
+        synchronized (Unitils.class) {
+            if (--installCount == 0 && Unitils.getInstance() == parallelUnitils) {
+                Unitils.setInstance(parallelUnitils.unitils);
+            }
+        }
+    }
+
+    @Override
+    public void init(Properties configuration) {
+        throw new UnsupportedOperationException("A parallel Unitils instance uses the modules of the instance it was created for");
+    }
+
+    @Override
+    public TestListener getTestListener() {
+        return testListener;
+    }
+
+    @Override
+    public ModulesRepository getModulesRepository() {
+        return unitils.getModulesRepository();
+    }
+
+    @Override
+    public Properties getConfiguration() {
+        return unitils.getConfiguration();
+    }
+
+    @Override
+    public ThreadLocalTestContext getTestContext() {
+        return testContext;
+    }
+
+    /**
+     * The same as the test listener of Unitils, except that the test is set in the test context of the current thread.
+     */
+    private class ParallelTestListener extends TestListener {
+
+        @Override
+        public void beforeTestClass(Class<?> testClass) {
+            setTest(testClass, null, null);
+            for (Module module : getModulesRepository().getModules()) {
+                getModulesRepository().getTestListener(module).beforeTestClass(testClass);
+            }
+        }
+
+        @Override
+        public void afterCreateTestObject(Object testObject) {
+            setTest(testObject.getClass(), testObject, null);
+            for (Module module : getModulesRepository().getModules()) {
+                getModulesRepository().getTestListener(module).afterCreateTestObject(testObject);
+            }
+        }
+
+        @Override
+        public void beforeTestSetUp(Object testObject, Method testMethod) {
+            setTest(testObject.getClass(), testObject, testMethod);
+            for (Module module : getModulesRepository().getModules()) {
+                getModulesRepository().getTestListener(module).beforeTestSetUp(testObject, testMethod);
+            }
+        }
+
+        @Override
+        public void beforeTestMethod(Object testObject, Method testMethod) {
+            setTest(testObject.getClass(), testObject, testMethod);
+            for (Module module : getModulesRepository().getModules()) {
+                getModulesRepository().getTestListener(module).beforeTestMethod(testObject, testMethod);
+            }
+        }
+
+        @Override
+        public void afterTestMethod(Object testObject, Method testMethod, Throwable testThrowable) {
+            setTest(testObject.getClass(), testObject, testMethod);
+            for (Module module : getModulesRepository().getModules()) {
+                getModulesRepository().getTestListener(module).afterTestMethod(testObject, testMethod, testThrowable);
+            }
+        }
+
+        @Override
+        public void afterTestTearDown(Object testObject, Method testMethod) {
+            setTest(testObject.getClass(), testObject, null);
+            for (Module module : getModulesRepository().getModules()) {
+                getModulesRepository().getTestListener(module).afterTestTearDown(testObject, testMethod);
+            }
+        }
+
+        @Override
+        public boolean shouldInvokeTestMethod(Object testObject, Method testMethod) {
+            for (Module module : getModulesRepository().getModules()) {
+                if (!getModulesRepository().getTestListener(module).shouldInvokeTestMethod(testObject, testMethod)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void setTest(Class<?> testClass, Object testObject, Method testMethod) {
+            TestContext currentTestContext = getTestContext();
+            currentTestContext.setTestClass(testClass);
+            currentTestContext.setTestObject(testObject);
+            currentTestContext.setTestMethod(testMethod);
+        }
+    }
+}
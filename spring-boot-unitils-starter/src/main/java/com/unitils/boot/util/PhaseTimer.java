@@ -0,0 +1,305 @@
+package com.unitils.boot.util;
+
+import com.unitils.boot.autoconfigure.StartupPhaseListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitils.util.PropertyUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 按测试类和阶段统计耗时（context启动、数据集解析、DbUnit加载、事务开始和回滚、测试方法本身等）。
+ * 阶段可以嵌套，每个阶段只统计自身的耗时，不包括嵌套在其中的阶段。默认关闭，开启时JVM退出时写入JSON报告，
+ * 默认和surefire的报告放在一起，报告目录不存在时（例如不是在maven中运行）不写报告
+ * @Date:Created in 2018-07-08
+ */
+public class PhaseTimer {
+
+    private static final Log logger = LogFactory.getLog(PhaseTimer.class);
+
+    /* Property key indicating whether the phases of the tests are timed */
+    public static final String PROPKEY_ENABLED = "PhaseTimer.enabled";
+
+    /* Property key of the directory of the JSON report, empty to only time without writing a report */
+    public static final String PROPKEY_REPORT_DIRECTORY = "PhaseTimer.reportDirectory";
+
+    /* The name of the phases that are not part of a test class */
+    public static final String NO_TEST_CLASS = "<none>";
+
+    private static volatile boolean enabled;
+
+    private static boolean initialized;
+
+    /* The statistics per test class name and per phase */
+    private static final ConcurrentMap<String, ConcurrentMap<String, PhaseStatistics>> statistics = new ConcurrentHashMap<String, ConcurrentMap<String, PhaseStatistics>>();
+
+    /* The phases that are running on the current thread, innermost first */
+    private static final ThreadLocal<Deque<Frame>> frames = new ThreadLocal<Deque<Frame>>() {
+
+        @Override
+        protected Deque<Frame> initialValue() {
+            return new ArrayDeque<Frame>();
+        }
+    };
+
+    /**
+     * Enables the timer and registers the report of this JVM, only the first call has effect.
+     *
+     * @param configuration The Unitils configuration, not null
+     */
+    public static synchronized void init(Properties configuration) {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        enabled = PropertyUtils.getBoolean(PROPKEY_ENABLED, false, configuration);
+        String reportDirectory = PropertyUtils.getString(PROPKEY_REPORT_DIRECTORY, null, configuration);
+        if (!enabled || reportDirectory == null || reportDirectory.trim().isEmpty()) {
+            return;
+        }
+        final File reportFile = new File(reportDirectory.trim(), "unitils-phases-" + StartupPhaseListener.getForkName().replaceAll("[^A-Za-z0-9_.-]", "_") + ".json");
+        Runtime.getRuntime().addShutdownHook(new Thread("unitils-phase-report") {
+
+            @Override
+            public void run() {
+                // 运行期间可能被关闭，工作目录不是项目目录时不在其他地方创建目录
+                if (!enabled) {
+                    return;
+                }
+                if (!reportFile.getAbsoluteFile().getParentFile().isDirectory()) {
+                    logger.debug("Report directory of " + reportFile + " does not exist, phase report not written");
+                    return;
+                }
+                writeReport(reportFile);
+            }
+        });
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches timing on or off regardless of the configuration, e.g. for a single run of a test.
+     *
+     * @param enabled True to time the phases
+     */
+    public static void setEnabled(boolean enabled) {
+        PhaseTimer.enabled = enabled;
+    }
+
+    /**
+     * Gets the test class of the innermost phase of the current thread, to be passed to tasks that run
+     * on other threads as part of that phase.
+     *
+     * @return The test class, null if there is none or timing is disabled
+     */
+    public static Class<?> getCurrentTestClass() {
+        if (!enabled) {
+            return null;
+        }
+        Deque<Frame> threadFrames = frames.get();
+        return threadFrames.isEmpty() ? null : threadFrames.peek().testClass;
+    }
+
+    /**
+     * Starts a phase of the given test class on the current thread. Every call must be followed by a call
+     * to {@link #end(String)}, e.g. in a finally block.
+     *
+     * @param testClass The test class, null to use the test class of the enclosing phase
+     */
+    public static void begin(Class<?> testClass) {
+        if (!enabled) {
+            return;
+        }
+        Deque<Frame> threadFrames = frames.get();
+        if (testClass == null && !threadFrames.isEmpty()) {
+            testClass = threadFrames.peek().testClass;
+        }
+        threadFrames.push(new Frame(testClass, System.nanoTime()));
+    }
+
+    /**
+     * Starts a phase of the test class of the enclosing phase.
+     */
+    public static void begin() {
+        begin(null);
+    }
+
+    /**
+     * Ends the phase that was started last on the current thread and records its time, without the time of the
+     * phases nested in it.
+     *
+     * @param phase The name of the phase, not null
+     */
+    public static void end(String phase) {
+        if (!enabled) {
+            return;
+        }
+        Deque<Frame> threadFrames = frames.get();
+        if (threadFrames.isEmpty()) {
+            return;
+        }
+        Frame frame = threadFrames.pop();
+        long elapsed = System.nanoTime() - frame.startTime;
+        if (!threadFrames.isEmpty()) {
+            threadFrames.peek().nestedTime += elapsed;
+        }
+        record(frame.testClass == null ? NO_TEST_CLASS : frame.testClass.getName(), phase, elapsed - frame.nestedTime);
+    }
+
+    /**
+     * Records the time of a phase that was measured elsewhere, e.g. the time a test spent getting database
+     * connections. The time is part of the phases that were running meanwhile and is not subtracted from them.
+     *
+     * @param testClass The test class, null if the time is not part of a test class
+     * @param phase     The name of the phase, not null
+     * @param nanos     The time, in nanoseconds
+     */
+    public static void record(Class<?> testClass, String phase, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        record(testClass == null ? NO_TEST_CLASS : testClass.getName(), phase, nanos);
+    }
+
+    protected static void record(String testClassName, String phase, long nanos) {
+        ConcurrentMap<String, PhaseStatistics> phases = statistics.get(testClassName);
+        if (phases == null) {
+            ConcurrentMap<String, PhaseStatistics> newPhases = new ConcurrentHashMap<String, PhaseStatistics>();
+            phases = statistics.putIfAbsent(testClassName, newPhases);
+            if (phases == null) {
+                phases = newPhases;
+            }
+        }
+        PhaseStatistics phaseStatistics = phases.get(phase);
+        if (phaseStatistics == null) {
+            PhaseStatistics newPhaseStatistics = new PhaseStatistics();
+            phaseStatistics = phases.putIfAbsent(phase, newPhaseStatistics);
+            if (phaseStatistics == null) {
+                phaseStatistics = newPhaseStatistics;
+            }
+        }
+        phaseStatistics.add(nanos);
+    }
+
+    /**
+     * Writes the statistics per test class and per phase, and the startup phases of the Spring Boot applications,
+     * as JSON to the given file. The directory of the file is created if needed.
+     *
+     * @param reportFile The file, not null
+     */
+    public static void writeReport(File reportFile) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"fork\": ").append(quote(StartupPhaseListener.getForkName())).append(",\n  \"startups\": [");
+        List<Map<String, Long>> startups = StartupPhaseListener.getStartups();
+        for (int i = 0; i < startups.size(); i++) {
+            json.append(i == 0 ? "\n    {" : ",\n    {");
+            boolean first = true;
+            for (Map.Entry<String, Long> phase : startups.get(i).entrySet()) {
+                json.append(first ? "" : ", ").append(quote(phase.getKey())).append(": ").append(phase.getValue());
+                first = false;
+            }
+            json.append("}");
+        }
+        json.append(startups.isEmpty() ? "],\n" : "\n  ],\n").append("  \"classes\": {");
+        boolean firstClass = true;
+        for (Map.Entry<String, ConcurrentMap<String, PhaseStatistics>> testClass : new TreeMap<String, ConcurrentMap<String, PhaseStatistics>>(statistics).entrySet()) {
+            json.append(firstClass ? "\n    " : ",\n    ").append(quote(testClass.getKey())).append(": {");
+            boolean firstPhase = true;
+            for (Map.Entry<String, PhaseStatistics> phase : new TreeMap<String, PhaseStatistics>(testClass.getValue()).entrySet()) {
+                json.append(firstPhase ? "\n      " : ",\n      ").append(quote(phase.getKey())).append(": ").append(phase.getValue().toJson());
+                firstPhase = false;
+            }
+            json.append("\n    }");
+            firstClass = false;
+        }
+        json.append(statistics.isEmpty() ? "}\n}\n" : "\n  }\n}\n");
+
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8");
+            writer.write(json.toString());
+        } catch (IOException e) {
+            logger.warn("Unable to write phase report " + reportFile, e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all recorded statistics.
+     */
+    public static void reset() {
+        statistics.clear();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static class Frame {
+
+        private final Class<?> testClass;
+
+        private final long startTime;
+
+        /* The time of the phases nested in this phase */
+        private long nestedTime;
+
+        private Frame(Class<?> testClass, long startTime) {
+            this.testClass = testClass;
+            this.startTime = startTime;
+        }
+    }
+
+    protected static class PhaseStatistics {
+
+        private long count;
+
+        private long totalTime;
+
+        private long maxTime;
+
+        protected synchronized void add(long nanos) {
+            count++;
+            totalTime += nanos;
+            maxTime = Math.max(maxTime, nanos);
+        }
+
+        protected synchronized String toJson() {
+            return String.format(Locale.ROOT, "{\"count\": %d, \"totalMs\": %.3f, \"maxMs\": %.3f}", count, totalTime / 1e6, maxTime / 1e6);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.unitils.boot.util;
+
+import org.unitils.TestRunnerAccessor;
+import org.unitils.core.TestContext;
+
+import java.lang.reflect.Method;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 每个线程单独保存当前测试类、测试实例和测试方法的TestContext，
+ * 并行执行测试方法时各个线程的Unitils模块读取的是自己线程的测试。
+ * 线程调用attach后使用自己的TestContext，没有attach的线程读写共享的TestContext
+ * @Date:Created in 2018-07-08
+ */
+public class ThreadLocalTestContext extends TestContext {
+
+    private final TestContext sharedTestContext;
+
+    private final ThreadLocal<TestContext> testContexts = new ThreadLocal<TestContext>();
+
+    /**
+     * @param sharedTestContext The test context of the threads that are not attached, not null
+     */
+    public ThreadLocalTestContext(TestContext sharedTestContext) {
+        this.sharedTestContext = sharedTestContext;
+    }
+
+    /**
+     * Gives the current thread its own test context, starting with the test class and runner of the shared context.
+     */
+    public void attach() {
+        TestContext testContext = new TestContext();
+        testContext.setTestClass(sharedTestContext.getTestClass());
+        testContext.setRunner(sharedTestContext.getRunner());
+        testContexts.set(testContext);
+    }
+
+    /**
+     * Lets the current thread use the shared test context again.
+     */
+    public void detach() {
+        testContexts.remove();
+    }
+
+    private TestContext getCurrentTestContext() {
+        TestContext testContext = testContexts.get();
+        return testContext != null ? testContext : sharedTestContext;
+    }
+
+    @Override
+    public Class<?> getTestClass() {
+        return getCurrentTestContext().getTestClass();
+    }
+
+    @Override
+    public void setTestClass(Class<?> testClass) {
+        getCurrentTestContext().setTestClass(testClass);
+    }
+
+    @Override
+    public Object getTestObject() {
+        return getCurrentTestContext().getTestObject();
+    }
+
+    @Override
+    public void setTestObject(Object testObject) {
+        getCurrentTestContext().setTestObject(testObject);
+    }
+
+    @Override
+    public Method getTestMethod() {
+        return getCurrentTestContext().getTestMethod();
+    }
+
+    @Override
+    public void setTestMethod(Method testMethod) {
+        getCurrentTestContext().setTestMethod(testMethod);
+    }
+
+    @Override
+    public TestRunnerAccessor getRunner() {
+        return getCurrentTestContext().getRunner();
+    }
+
+    @Override
+    public void setRunner(TestRunnerAccessor runner) {
+        getCurrentTestContext().setRunner(runner);
+    }
+}
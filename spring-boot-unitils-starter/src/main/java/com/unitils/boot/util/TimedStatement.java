@@ -0,0 +1,33 @@
+package com.unitils.boot.util;
+
+import org.junit.runners.model.Statement;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 统计runner中一层statement的耗时，不包括内层已经统计的statement
+ * @Date:Created in 2018-07-08
+ */
+public class TimedStatement extends Statement {
+
+    private final Statement next;
+
+    private final Class<?> testClass;
+
+    private final String phase;
+
+    public TimedStatement(Statement next, Class<?> testClass, String phase) {
+        this.next = next;
+        this.testClass = testClass;
+        this.phase = phase;
+    }
+
+    @Override
+    public void evaluate() throws Throwable {
+        PhaseTimer.begin(testClass);
+        try {
+            next.evaluate();
+        } finally {
+            PhaseTimer.end(phase);
+        }
+    }
+}
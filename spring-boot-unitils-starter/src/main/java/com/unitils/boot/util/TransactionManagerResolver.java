@@ -0,0 +1,125 @@
+package com.unitils.boot.util;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.unitils.core.UnitilsException;
+import org.unitils.database.annotations.Transactional;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+import static org.unitils.util.AnnotationUtils.getMethodOrClassLevelAnnotationProperty;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 查找测试使用的PlatformTransactionManager并缓存结果。
+ * 每个context的事务管理器只查找一次，context刷新或关闭时清空；
+ * 每个测试方法和测试类上@Transactional的transactionManagerName也只读取一次
+ * @Date:Created in 2018-07-08
+ */
+public class TransactionManagerResolver {
+
+    /* The transaction managers per bean name, per context */
+    private final Map<ApplicationContext, Map<String, PlatformTransactionManager>> transactionManagers =
+            new WeakHashMap<ApplicationContext, Map<String, PlatformTransactionManager>>();
+
+    /* The contexts on which the invalidation listener is registered */
+    private final Set<ApplicationContext> listenedContexts = Collections.newSetFromMap(new WeakHashMap<ApplicationContext, Boolean>());
+
+    /* The transactionManagerName of the @Transactional annotation per [test method, test class] */
+    private final Map<List<Object>, String> transactionManagerNames = new ConcurrentHashMap<List<Object>, String>();
+
+    /**
+     * @param context The context, not null
+     * @return True if the context contains at least one transaction manager
+     */
+    public boolean hasTransactionManager(ApplicationContext context) {
+        return !getTransactionManagers(context).isEmpty();
+    }
+
+    /**
+     * Gets the transaction manager for the given test. If the context contains more than one transaction manager,
+     * the transactionManagerName of the {@link Transactional} annotation of the test method or class selects the
+     * correct one.
+     * <p/>
+     * A UnitilsException is thrown when no transaction manager could be found.
+     *
+     * @param context    The context, not null
+     * @param testMethod The test method, null if there is no current test method
+     * @param testClass  The test class, not null
+     * @return The transaction manager, not null
+     */
+    public PlatformTransactionManager getTransactionManager(ApplicationContext context, Method testMethod, Class<?> testClass) {
+        Map<String, PlatformTransactionManager> platformTransactionManagers = getTransactionManagers(context);
+        if (platformTransactionManagers.size() == 0) {
+            throw new UnitilsException("Could not find a model of type " + PlatformTransactionManager.class.getSimpleName()
+                    + " in the org.unitils.spring ApplicationContext for this class");
+        }
+        if (platformTransactionManagers.size() > 1) {
+            String transactionManagerName = getTransactionManagerName(testMethod, testClass);
+            if (isEmpty(transactionManagerName))
+                throw new UnitilsException("Found more than one model of type " + PlatformTransactionManager.class.getSimpleName()
+                        + " in the org.unitils.spring ApplicationContext for this class. Use the transactionManagerName on the @Transactional"
+                        + " annotation to select the correct one.");
+            if (!platformTransactionManagers.containsKey(transactionManagerName))
+                throw new UnitilsException("No model of type " + PlatformTransactionManager.class.getSimpleName()
+                        + " found in the org.unitils.spring ApplicationContext with the name " + transactionManagerName);
+            return platformTransactionManagers.get(transactionManagerName);
+        }
+        return platformTransactionManagers.values().iterator().next();
+    }
+
+    /**
+     * @param context The context whose transaction managers are removed, not null
+     */
+    public void invalidate(ApplicationContext context) {
+        synchronized (transactionManagers) {
+            transactionManagers.remove(context);
+        }
+    }
+
+    protected Map<String, PlatformTransactionManager> getTransactionManagers(ApplicationContext context) {
+        synchronized (transactionManagers) {
+            Map<String, PlatformTransactionManager> contextTransactionManagers = transactionManagers.get(context);
+            if (contextTransactionManagers != null) {
+                return contextTransactionManagers;
+            }
+            contextTransactionManagers = Collections.unmodifiableMap(context.getBeansOfType(PlatformTransactionManager.class));
+            // 无法监听刷新和关闭事件的context不缓存
+            if (context instanceof ConfigurableApplicationContext) {
+                if (listenedContexts.add(context)) {
+                    ((ConfigurableApplicationContext) context).addApplicationListener(new InvalidationListener());
+                }
+                transactionManagers.put(context, contextTransactionManagers);
+            }
+            return contextTransactionManagers;
+        }
+    }
+
+    protected String getTransactionManagerName(Method testMethod, Class<?> testClass) {
+        List<Object> key = Arrays.<Object>asList(testMethod, testClass);
+        String transactionManagerName = transactionManagerNames.get(key);
+        if (transactionManagerName == null) {
+            transactionManagerName = getMethodOrClassLevelAnnotationProperty(Transactional.class, "transactionManagerName", "", testMethod, testClass);
+            transactionManagerNames.put(key, transactionManagerName);
+        }
+        return transactionManagerName;
+    }
+
+    //监听器只引用缓存，不引用context本身
+    private class InvalidationListener implements ApplicationListener<ApplicationContextEvent> {
+
+        public void onApplicationEvent(ApplicationContextEvent event) {
+            if (event instanceof ContextRefreshedEvent || event instanceof ContextClosedEvent) {
+                invalidate(event.getApplicationContext());
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.unitils.boot.util;
 
+import com.unitils.boot.SpringBootModule;
+import com.unitils.boot.dbunit.SpringBootDbUnitModule;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.Ignore;
@@ -12,7 +14,9 @@ import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
 import org.junit.runners.model.Statement;
+import org.springframework.context.ApplicationContext;
 import org.springframework.test.annotation.ProfileValueUtils;
 import org.springframework.test.annotation.TestAnnotationUtils;
 import org.springframework.test.context.TestContextManager;
@@ -21,12 +25,23 @@ import org.springframework.test.context.junit4.rules.SpringMethodRule;
 import org.springframework.test.context.junit4.statements.*;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.ReflectionUtils;
+import org.unitils.core.ModulesRepository;
 import org.unitils.core.TestListener;
 import org.unitils.core.Unitils;
 import org.unitils.core.junit.*;
+import org.unitils.database.DatabaseModule;
+import org.unitils.dbunit.DbUnitModule;
+import org.unitils.util.PropertyUtils;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
 
@@ -35,10 +50,26 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
 
     private static final Method withRulesMethod;
 
-    protected Object test;
+    /* Property key of the number of threads that run the test methods of a test class, 1 to run them one after another */
+    public static final String PROPKEY_PARALLELISM = "UnitilsBootBlockJUnit4ClassRunner.parallelism";
+
+    /* Property key indicating whether the application context is started on a background thread when the runner starts to run */
+    public static final String PROPKEY_WARM_CONTEXT = "UnitilsBootBlockJUnit4ClassRunner.warmContext";
 
     protected TestListener unitilsTestListener;
 
+    /* The number of threads that run the test methods */
+    protected final int parallelism;
+
+    /* The Unitils instance of the worker threads while the test methods run in parallel, null otherwise */
+    private ParallelUnitils parallelUnitils;
+
+    /* The test context manager of a worker thread, Spring's TestContextManager keeps the current test in a single TestContext */
+    private final ThreadLocal<TestContextManager> workerTestContextManagers = new ThreadLocal<TestContextManager>();
+
+    /* The test context managers of all worker threads, their after test class callbacks run when all test methods are finished */
+    private final List<TestContextManager> startedWorkerTestContextManagers = new CopyOnWriteArrayList<TestContextManager>();
+
     static {
         if (!ClassUtils.isPresent("org.junit.internal.Throwables", UnitilsBootBlockJUnit4ClassRunner.class.getClassLoader())) {
             throw new IllegalStateException("UnitilsBootBlockJUnit4ClassRunner requires JUnit 4.12 or higher.");
@@ -82,46 +113,134 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
             logger.debug("UnitilsBootBlockJUnit4ClassRunner constructor called with [" + clazz + "]");
         }
         ensureSpringRulesAreNotPresent(clazz);
-        this.testContextManager = createTestContextManager(clazz);
+        // Unitils先初始化，Spring的context缓存创建前设置好缓存大小
+        this.parallelism = getParallelism();
         this.unitilsTestListener = getUnitilsTestListener();
+        PhaseTimer.init(Unitils.getInstance().getConfiguration());
+        this.testContextManager = createTestContextManager(clazz);
     }
 
     protected TestListener getUnitilsTestListener() {
         return Unitils.getInstance().getTestListener();
     }
 
+    protected int getParallelism() {
+        return PropertyUtils.getInt(PROPKEY_PARALLELISM, 1, Unitils.getInstance().getConfiguration());
+    }
+
+    protected boolean isWarmContext() {
+        return PropertyUtils.getBoolean(PROPKEY_WARM_CONTEXT, false, Unitils.getInstance().getConfiguration());
+    }
+
+    /**
+     * Starts the application context of the test class on a background thread. The test thread meanwhile parses
+     * the data sets, see {@link #prefetchDataSets(Class)}, and waits for the context when it creates the first test.
+     */
+    protected void warmApplicationContext(Class<?> testClass) {
+        ModulesRepository modulesRepository = Unitils.getInstance().getModulesRepository();
+        if (modulesRepository.isModuleEnabled(SpringBootModule.class)) {
+            ContextWarmer.warm(testClass, modulesRepository.getModuleOfType(SpringBootModule.class).getContextKey(testClass));
+        }
+    }
+
+    protected void prefetchDataSets(Class<?> testClass) {
+        ModulesRepository modulesRepository = Unitils.getInstance().getModulesRepository();
+        if (modulesRepository.isModuleEnabled(DbUnitModule.class) && modulesRepository.getModuleOfType(DbUnitModule.class) instanceof SpringBootDbUnitModule) {
+            SpringBootDbUnitModule.getModule().prefetchDataSets(testClass);
+        }
+    }
+
     @Override
     protected Statement methodInvoker(FrameworkMethod method, Object test) {
-        this.test = test;
-        Statement statement = super.methodInvoker(method, test);
-        statement = new BeforeTestMethodStatement(unitilsTestListener, statement, method.getMethod(), test);
-        statement = new AfterTestMethodStatement(unitilsTestListener, statement, method.getMethod(), test);
+        Statement statement = timed(super.methodInvoker(method, test), "testMethod");
+        statement = timed(new BeforeTestMethodStatement(unitilsTestListener, statement, method.getMethod(), test), "unitils.beforeTestMethod");
+        statement = timed(new AfterTestMethodStatement(unitilsTestListener, statement, method.getMethod(), test), "unitils.afterTestMethod");
         return statement;
     }
 
+    /**
+     * Times the given statement with the {@link PhaseTimer}, without the time of the timed statements nested in it.
+     *
+     * @param statement The statement, not null
+     * @param phase     The name of the phase, not null
+     * @return The timed statement, the given statement if timing is disabled
+     */
+    protected Statement timed(Statement statement, String phase) {
+        if (!PhaseTimer.isEnabled()) {
+            return statement;
+        }
+        return new TimedStatement(statement, getTestClass().getJavaClass(), phase);
+    }
+
     @Override
     protected Statement classBlock(RunNotifier notifier) {
         Class<?> testClass = getTestClass().getJavaClass();
 
+        if (isWarmContext()) {
+            // context在后台线程中启动，同时解析数据集
+            PhaseTimer.begin(testClass);
+            try {
+                prefetchDataSets(testClass);
+            } finally {
+                PhaseTimer.end("prefetchDataSets");
+            }
+        }
+        if (parallelism > 1) {
+            prepareParallelExecution();
+            setScheduler(new ParallelScheduler(testClass, parallelism));
+        }
         Statement statement = super.classBlock(notifier);
-        statement = new BeforeTestClassStatement(testClass, unitilsTestListener, statement);
+        statement = timed(new BeforeTestClassStatement(testClass, unitilsTestListener, statement), "unitils.beforeTestClass");
         return statement;
     }
 
+    /**
+     * Creates the data sources up front so that the worker threads do not create them concurrently and every
+     * test starts its transaction. The state that Unitils keeps for the current test is made thread-confined
+     * by the {@link ParallelUnitils} instance installed while the runner runs.
+     */
+    protected void prepareParallelExecution() {
+        createDataSources();
+    }
+
+    /**
+     * Creates the data source wrappers of the {@link DatabaseModule} and their data sources. The module keeps
+     * them in plain maps and fields, once they exist other threads only read them.
+     */
+    protected void createDataSources() {
+        ModulesRepository modulesRepository = Unitils.getInstance().getModulesRepository();
+        if (!modulesRepository.isModuleEnabled(DatabaseModule.class)) {
+            return;
+        }
+        DatabaseModule databaseModule = modulesRepository.getModuleOfType(DatabaseModule.class);
+        synchronized (databaseModule) {
+            // 数据源还没创建时，Unitils会推迟到创建数据源时才开始事务，只有创建数据源的那个测试会开始事务
+            List<String> databaseNames = databaseModule.getDatabaseConfigurations().getDatabaseNames();
+            if (databaseNames.isEmpty()) {
+                databaseModule.getWrapper("").getDataSource();
+            }
+            for (String databaseName : databaseNames) {
+                databaseModule.getWrapper(databaseName).getDataSource();
+            }
+        }
+    }
+
     /**
      * Create a new {@link TestContextManager} for the supplied test class.
      * <p>Can be overridden by subclasses.
      * @param clazz the test class to be managed
      */
     protected TestContextManager createTestContextManager(Class<?> clazz) {
-        return new TestContextManager(clazz);
+        return new UnitilsTestContextManager(clazz);
     }
 
     /**
-     * Get the {@link TestContextManager} associated with this runner.
+     * Get the {@link TestContextManager} associated with this runner. Worker threads of a parallel run each
+     * have their own manager, the application context is shared through Spring's context cache.
      */
     protected final TestContextManager getTestContextManager() {
-        return this.testContextManager;
+        TestContextManager workerTestContextManager = this.workerTestContextManagers.get();
+        return (workerTestContextManager != null ? workerTestContextManager : this.testContextManager);
     }
 
     /**
@@ -153,7 +272,27 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
             notifier.fireTestIgnored(getDescription());
             return;
         }
-        super.run(notifier);
+        if (isWarmContext()) {
+            // 在执行测试类时才启动，只创建runner而不执行的测试类（例如被过滤的测试类）不启动context。
+            // 后台线程启动context时会获取Unitils的数据源，同时测试线程预先解析数据集也会获取，先在当前线程创建好
+            createDataSources();
+            warmApplicationContext(getTestClass().getJavaClass());
+        }
+        if (parallelism <= 1) {
+            super.run(notifier);
+            return;
+        }
+        // 只在执行期间替换Unitils的实例，测试监听器要从并行的Unitils实例中获取
+        parallelUnitils = ParallelUnitils.install();
+        TestListener testListener = unitilsTestListener;
+        unitilsTestListener = parallelUnitils.getTestListener();
+        try {
+            super.run(notifier);
+        } finally {
+            unitilsTestListener = testListener;
+            ParallelUnitils.uninstall(parallelUnitils);
+            parallelUnitils = null;
+        }
     }
 
     /**
@@ -166,7 +305,10 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
     @Override
     protected Statement withBeforeClasses(Statement statement) {
         Statement junitBeforeClasses = super.withBeforeClasses(statement);
-        return new RunBeforeTestClassCallbacks(junitBeforeClasses, getTestContextManager());
+        if (junitBeforeClasses != statement) {
+            junitBeforeClasses = timed(junitBeforeClasses, "junit.beforeClass");
+        }
+        return timed(new RunBeforeTestClassCallbacks(junitBeforeClasses, getTestContextManager()), "spring.beforeTestClass");
     }
 
     /**
@@ -178,7 +320,10 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
     @Override
     protected Statement withAfterClasses(Statement statement) {
         Statement junitAfterClasses = super.withAfterClasses(statement);
-        return new RunAfterTestClassCallbacks(junitAfterClasses, getTestContextManager());
+        if (junitAfterClasses != statement) {
+            junitAfterClasses = timed(junitAfterClasses, "junit.afterClass");
+        }
+        return timed(new RunAfterTestClassCallbacks(junitAfterClasses, getTestContextManager()), "spring.afterTestClass");
     }
 
     /**
@@ -189,11 +334,66 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
      */
     @Override
     protected Object createTest() throws Exception {
+        if (parallelism > 1 && workerTestContextManagers.get() == null) {
+            startWorkerTestContextManager();
+        }
         Object testInstance = super.createTest();
+        // Spring的context缓存中没有时在这里加载context
+        long startTime = System.nanoTime();
         getTestContextManager().prepareTestInstance(testInstance);
+        registerApplicationContext(testInstance.getClass(), System.nanoTime() - startTime);
         return testInstance;
     }
 
+    /**
+     * Creates the test context manager of the current worker thread and runs its before test class callbacks,
+     * like the runner does for its own manager. A failing callback fails the test and is retried by the next test.
+     */
+    protected void startWorkerTestContextManager() throws Exception {
+        TestContextManager workerTestContextManager = createTestContextManager(getTestClass().getJavaClass());
+        workerTestContextManager.beforeTestClass();
+        workerTestContextManagers.set(workerTestContextManager);
+        startedWorkerTestContextManagers.add(workerTestContextManager);
+    }
+
+    /**
+     * Runs the after test class callbacks of the test context managers of the worker threads.
+     */
+    protected void finishWorkerTestContextManagers() {
+        Throwable failure = null;
+        for (TestContextManager workerTestContextManager : startedWorkerTestContextManagers) {
+            try {
+                workerTestContextManager.afterTestClass();
+            } catch (Throwable e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        startedWorkerTestContextManagers.clear();
+        if (failure != null) {
+            throw new IllegalStateException("After test class callbacks of the worker threads failed", failure);
+        }
+    }
+
+    /**
+     * Registers the context that Spring loaded for the test class with the {@link SpringBootModule}, so that
+     * test classes reusing a context from the Spring context cache are injected from that same context.
+     * The time it took to prepare the test instance is the load time of a context that was not cached yet.
+     */
+    protected void registerApplicationContext(Class<?> testClass, long loadNanos) {
+        if (!(getTestContextManager() instanceof UnitilsTestContextManager)) {
+            return;
+        }
+        ModulesRepository modulesRepository = Unitils.getInstance().getModulesRepository();
+        if (modulesRepository.isModuleEnabled(SpringBootModule.class)) {
+            ApplicationContext applicationContext = ((UnitilsTestContextManager) getTestContextManager()).getApplicationContext();
+            modulesRepository.getModuleOfType(SpringBootModule.class).registerApplicationContext(testClass, applicationContext, loadNanos);
+        }
+    }
+
     /**
      * Perform the same logic as
      * {@link BlockJUnit4ClassRunner#runChild(FrameworkMethod, RunNotifier)},
@@ -249,7 +449,13 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
             testInstance = new ReflectiveCallable() {
                 @Override
                 protected Object runReflectiveCall() throws Throwable {
-                    return createTest();
+                    // 包括等待context启动和Spring的依赖注入
+                    PhaseTimer.begin(getTestClass().getJavaClass());
+                    try {
+                        return createTest();
+                    } finally {
+                        PhaseTimer.end("createTest");
+                    }
                 }
             }.run();
         }
@@ -265,8 +471,8 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
         statement = withPotentialRepeat(frameworkMethod, testInstance, statement);
         statement = withPotentialTimeout(frameworkMethod, testInstance, statement);
         Method testMethod = frameworkMethod.getMethod();
-        statement = new BeforeTestSetUpStatement(test, testMethod, unitilsTestListener, statement);
-        statement = new AfterTestTearDownStatement(unitilsTestListener, statement, test, testMethod);
+        statement = timed(new BeforeTestSetUpStatement(testInstance, testMethod, unitilsTestListener, statement), "unitils.beforeTestSetUp");
+        statement = timed(new AfterTestTearDownStatement(unitilsTestListener, statement, testInstance, testMethod), "unitils.afterTestTearDown");
         return statement;
     }
 
@@ -323,8 +529,11 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
     @Override
     protected Statement withBefores(FrameworkMethod frameworkMethod, Object testInstance, Statement statement) {
         Statement junitBefores = super.withBefores(frameworkMethod, testInstance, statement);
-        return new RunBeforeTestMethodCallbacks(junitBefores, testInstance, frameworkMethod.getMethod(),
-                getTestContextManager());
+        if (junitBefores != statement) {
+            junitBefores = timed(junitBefores, "junit.before");
+        }
+        return timed(new RunBeforeTestMethodCallbacks(junitBefores, testInstance, frameworkMethod.getMethod(),
+                getTestContextManager()), "spring.beforeTestMethod");
     }
 
     /**
@@ -337,8 +546,11 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
     @Override
     protected Statement withAfters(FrameworkMethod frameworkMethod, Object testInstance, Statement statement) {
         Statement junitAfters = super.withAfters(frameworkMethod, testInstance, statement);
-        return new RunAfterTestMethodCallbacks(junitAfters, testInstance, frameworkMethod.getMethod(),
-                getTestContextManager());
+        if (junitAfters != statement) {
+            junitAfters = timed(junitAfters, "junit.after");
+        }
+        return timed(new RunAfterTestMethodCallbacks(junitAfters, testInstance, frameworkMethod.getMethod(),
+                getTestContextManager()), "spring.afterTestMethod");
     }
 
     /**
@@ -352,5 +564,55 @@ public class UnitilsBootBlockJUnit4ClassRunner extends BlockJUnit4ClassRunner {
         return new SpringRepeat(next, frameworkMethod.getMethod());
     }
 
+    /**
+     * Runs the test methods on a bounded pool and waits until all of them are finished. Every worker thread
+     * gets its own {@link TestContextManager} and Unitils test context; the Spring and Unitils transactions
+     * are bound to the thread, so each test method uses its own connection and transaction.
+     */
+    protected class ParallelScheduler implements RunnerScheduler {
+
+        private final Class<?> testClass;
+
+        private final ExecutorService executorService;
+
+        public ParallelScheduler(final Class<?> testClass, int parallelism) {
+            this.testClass = testClass;
+            this.executorService = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+
+                private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "unitils-" + testClass.getSimpleName() + "-" + threadNumber.getAndIncrement());
+                }
+            });
+        }
+
+        public void schedule(final Runnable childStatement) {
+            final ThreadLocalTestContext testContext = parallelUnitils.getTestContext();
+            executorService.execute(new Runnable() {
+
+                public void run() {
+                    testContext.attach();
+                    try {
+                        childStatement.run();
+                    } finally {
+                        testContext.detach();
+                    }
+                }
+            });
+        }
+
+        public void finished() {
+            executorService.shutdown();
+            try {
+                executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            finishWorkerTestContextManagers();
+        }
+    }
+
 
 }
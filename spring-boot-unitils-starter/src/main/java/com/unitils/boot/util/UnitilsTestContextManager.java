@@ -0,0 +1,43 @@
+package com.unitils.boot.util;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.MergedContextConfiguration;
+import org.springframework.test.context.TestContextManager;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 暴露当前测试类的ApplicationContext，context由Spring的context缓存加载
+ * @Date:Created in 2018-07-08
+ */
+public class UnitilsTestContextManager extends TestContextManager {
+
+    public UnitilsTestContextManager(Class<?> testClass) {
+        super(testClass);
+    }
+
+    /**
+     * @return The application context of the test class, loaded by Spring if needed, not null
+     */
+    public ApplicationContext getApplicationContext() {
+        return getTestContext().getApplicationContext();
+    }
+
+    /**
+     * The configuration that Spring uses as the key of its context cache, it includes the detected default
+     * configuration classes, the context customizers like the mock beans and the parent configuration.
+     *
+     * @return The merged context configuration of the test class, null if the test context does not expose it
+     */
+    public MergedContextConfiguration getMergedContextConfiguration() {
+        // Spring 4的DefaultTestContext没有公开的getter
+        Field field = ReflectionUtils.findField(getTestContext().getClass(), "mergedContextConfiguration", MergedContextConfiguration.class);
+        if (field == null) {
+            return null;
+        }
+        ReflectionUtils.makeAccessible(field);
+        return (MergedContextConfiguration) ReflectionUtils.getField(field, getTestContext());
+    }
+}
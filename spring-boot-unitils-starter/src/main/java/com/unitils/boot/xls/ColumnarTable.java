@@ -0,0 +1,149 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoSuchColumnException;
+import org.dbunit.dataset.RowOutOfBoundsException;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 数据按列存放在数组中的只读表。元数据和列名到下标的映射只构造一次，空字符串在构造时转换成null，
+ * 读取单元格只是数组下标访问，不再每次按列名查找（DbUnit每次都会把列名转成大写）和创建元数据
+ * @Date:Created in 2018-07-08
+ */
+public class ColumnarTable extends AbstractTable {
+
+    private final ITableMetaData metaData;
+
+    /* The values per column, then per row */
+    private final Object[][] values;
+
+    private final int rowCount;
+
+    /* The index of every column by its name and by its upper case name */
+    private final Map<String, Integer> columnIndexes;
+
+    /**
+     * Creates a table of the given values, empty strings are replaced by null.
+     *
+     * @param metaData The meta data, not null
+     * @param values   The values per column and then per row, the array is used as is, not null
+     * @param rowCount The number of rows
+     */
+    public ColumnarTable(ITableMetaData metaData, Object[][] values, int rowCount) throws DataSetException {
+        Column[] columns = metaData.getColumns();
+        if (values.length != columns.length) {
+            throw new DataSetException("Table " + metaData.getTableName() + " has " + columns.length + " columns but values for " + values.length);
+        }
+        this.metaData = metaData;
+        this.values = values;
+        this.rowCount = rowCount;
+        this.columnIndexes = new HashMap<String, Integer>(columns.length * 4);
+        // 倒序放入，同名的列以第一个为准，和DbUnit一致
+        for (int c = columns.length - 1; c >= 0; c--) {
+            columnIndexes.put(columns[c].getColumnName(), c);
+            columnIndexes.put(columns[c].getColumnName().toUpperCase(Locale.ENGLISH), c);
+            Object[] columnValues = values[c];
+            for (int row = 0; row < rowCount; row++) {
+                columnValues[row] = normalize(columnValues[row]);
+            }
+        }
+    }
+
+    private ColumnarTable(ColumnarTable table, String tableName) throws DataSetException {
+        this.metaData = new DefaultTableMetaData(tableName, table.metaData.getColumns(), table.metaData.getPrimaryKeys());
+        this.values = table.values;
+        this.rowCount = table.rowCount;
+        this.columnIndexes = table.columnIndexes;
+    }
+
+    /**
+     * Copies all rows of the given table, e.g. a sheet parsed by POI. A columnar table is not copied,
+     * only its name is changed.
+     *
+     * @param tableName The name of the copy, not null
+     * @param table     The table to copy, not null
+     * @return The copy, not null
+     */
+    public static ColumnarTable copyOf(String tableName, ITable table) throws DataSetException {
+        if (table instanceof ColumnarTable) {
+            return ((ColumnarTable) table).withTableName(tableName);
+        }
+        ITableMetaData sourceMetaData = table.getTableMetaData();
+        Column[] columns = sourceMetaData.getColumns();
+        int rowCount = table.getRowCount();
+        Object[][] values = new Object[columns.length][rowCount];
+        for (int c = 0; c < columns.length; c++) {
+            String columnName = columns[c].getColumnName();
+            for (int row = 0; row < rowCount; row++) {
+                values[c][row] = table.getValue(row, columnName);
+            }
+        }
+        return new ColumnarTable(new DefaultTableMetaData(tableName, columns, sourceMetaData.getPrimaryKeys()), values, rowCount);
+    }
+
+    /**
+     * @param tableName The table name, not null
+     * @return A table with the given name that shares the values of this table, not null
+     */
+    public ColumnarTable withTableName(String tableName) throws DataSetException {
+        return new ColumnarTable(this, tableName);
+    }
+
+    /**
+     * The normalization that is applied to every value of an Excel data set: empty strings are null.
+     *
+     * @param value The value as read from the file, null for an empty cell
+     * @return The value of the data set
+     */
+    public static Object normalize(Object value) {
+        if (value instanceof String && ((String) value).isEmpty()) {
+            return null;
+        }
+        return value;
+    }
+
+    public ITableMetaData getTableMetaData() {
+        return metaData;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public Object getValue(int row, String column) throws DataSetException {
+        return getValue(row, getColumnIndex(column));
+    }
+
+    /**
+     * @param row         The row index
+     * @param columnIndex The index of the column in the meta data
+     * @return The value, null for an empty cell
+     */
+    public Object getValue(int row, int columnIndex) throws DataSetException {
+        if (row < 0 || row >= rowCount) {
+            throw new RowOutOfBoundsException(row + " > " + (rowCount - 1));
+        }
+        return values[columnIndex][row];
+    }
+
+    @Override
+    public int getColumnIndex(String column) throws DataSetException {
+        Integer index = columnIndexes.get(column);
+        if (index == null) {
+            index = columnIndexes.get(column.toUpperCase(Locale.ENGLISH));
+            if (index == null) {
+                throw new NoSuchColumnException(metaData.getTableName(), column);
+            }
+        }
+        return index;
+    }
+}
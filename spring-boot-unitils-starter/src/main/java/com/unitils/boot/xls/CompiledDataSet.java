@@ -0,0 +1,256 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.*;
+import org.dbunit.dataset.datatype.DataType;
+import org.unitils.core.UnitilsException;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 预编译的二进制数据集格式，由Excel文件生成，加载时顺序读取，不再经过POI解析。
+ * 文件头记录了源文件的大小和CRC32，源文件内容变化后编译结果自动失效。修改时间不可靠（git checkout、cp -p），不参与判断。
+ * 读取时把编译文件映射到内存，直接从映射的内存中解码，不经过输入流的复制
+ * @Date:Created in 2018-07-08
+ */
+public class CompiledDataSet {
+
+    /* Extension appended to the name of the source file, e.g. getUserInfo.xls.dsb */
+    public static final String FILE_EXTENSION = ".dsb";
+
+    private static final int MAGIC = 0x55445342;
+
+    private static final short VERSION = 3;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_DECIMAL = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private CompiledDataSet() {
+    }
+
+    /**
+     * @param sourceFile The xls file, not null
+     * @return The compiled file next to the given source file, it does not need to exist
+     */
+    public static File getCompiledFile(File sourceFile) {
+        return new File(sourceFile.getPath() + FILE_EXTENSION);
+    }
+
+    /**
+     * Writes the given data set to the target file in the compiled format.
+     *
+     * @param dataSet    The parsed data set, not null
+     * @param sourceFile The file the data set was parsed from, not null
+     * @param targetFile The file to write, not null
+     */
+    public static void write(IDataSet dataSet, File sourceFile, File targetFile) throws IOException, DataSetException {
+        File tempFile = new File(targetFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(sourceFile.length());
+            out.writeLong(checksum(sourceFile));
+
+            String[] tableNames = dataSet.getTableNames();
+            out.writeInt(tableNames.length);
+            for (String tableName : tableNames) {
+                ITable table = dataSet.getTable(tableName);
+                Column[] columns = table.getTableMetaData().getColumns();
+                writeString(out, tableName);
+                out.writeInt(columns.length);
+                for (Column column : columns) {
+                    writeString(out, column.getColumnName());
+                }
+
+                // rows are buffered so the reader can skip a whole table using its length
+                ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+                DataOutputStream rows = new DataOutputStream(rowBytes);
+                int rowCount = table.getRowCount();
+                for (int row = 0; row < rowCount; row++) {
+                    for (Column column : columns) {
+                        writeValue(rows, table.getValue(row, column.getColumnName()));
+                    }
+                }
+                rows.flush();
+                out.writeInt(rowCount);
+                out.writeInt(rowBytes.size());
+                rowBytes.writeTo(out);
+            }
+        } finally {
+            out.close();
+        }
+        if (targetFile.exists() && !targetFile.delete()) {
+            throw new IOException("Unable to replace compiled data set " + targetFile);
+        }
+        if (!tempFile.renameTo(targetFile)) {
+            throw new IOException("Unable to write compiled data set " + targetFile);
+        }
+    }
+
+    /**
+     * @param compiledFile The compiled file, not null
+     * @param sourceFile   The xls file it was compiled from, not null
+     * @return Whether the compiled file exists and was compiled from the current content of the source file. The checksum
+     * of the source file is calculated when its size is unchanged
+     */
+    public static boolean isUpToDate(File compiledFile, File sourceFile) {
+        if (!compiledFile.isFile()) {
+            return false;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(compiledFile)));
+            try {
+                if (in.readInt() != MAGIC || in.readShort() != VERSION || in.readLong() != sourceFile.length()) {
+                    return false;
+                }
+                return in.readLong() == checksum(sourceFile);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a compiled data set from a read-only memory mapping of the file. The values are decoded into
+     * columnar tables, the mapping is released when it is garbage collected.
+     *
+     * @param compiledFile The compiled file, not null
+     * @return The tables in sheet order, not null
+     */
+    public static List<ITable> read(File compiledFile) {
+        try {
+            MappedByteBuffer in;
+            FileInputStream inputStream = new FileInputStream(compiledFile);
+            try {
+                FileChannel channel = inputStream.getChannel();
+                in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                inputStream.close();
+            }
+            if (in.getInt() != MAGIC || in.getShort() != VERSION) {
+                throw new UnitilsException("Not a compiled data set: " + compiledFile);
+            }
+            in.getLong();
+            in.getLong();
+
+            int tableCount = in.getInt();
+            List<ITable> tables = new ArrayList<ITable>(tableCount);
+            for (int i = 0; i < tableCount; i++) {
+                String tableName = readString(in);
+                Column[] columns = new Column[in.getInt()];
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = new Column(readString(in), DataType.UNKNOWN);
+                }
+                int rowCount = in.getInt();
+                in.getInt();
+                Object[][] values = new Object[columns.length][rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    for (int c = 0; c < columns.length; c++) {
+                        values[c][row] = readValue(in);
+                    }
+                }
+                tables.add(new ColumnarTable(new DefaultTableMetaData(tableName, columns), values, rowCount));
+            }
+            return tables;
+        } catch (IOException e) {
+            throw new UnitilsException("Unable to read compiled data set " + compiledFile, e);
+        } catch (DataSetException e) {
+            throw new UnitilsException("Corrupt compiled data set " + compiledFile, e);
+        } catch (RuntimeException e) {
+            if (e instanceof UnitilsException) {
+                throw e;
+            }
+            // 截断的文件读取时抛出BufferUnderflowException
+            throw new UnitilsException("Corrupt compiled data set " + compiledFile, e);
+        }
+    }
+
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            byte[] unscaled = decimal.unscaledValue().toByteArray();
+            out.writeByte(TYPE_DECIMAL);
+            out.writeInt(decimal.scale());
+            out.writeInt(unscaled.length);
+            out.write(unscaled);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            throw new UnitilsException("Unsupported data set value type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_DECIMAL:
+                int scale = in.getInt();
+                byte[] unscaled = new byte[in.getInt()];
+                in.get(unscaled);
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            case TYPE_LONG:
+                return in.getLong();
+            case TYPE_BOOLEAN:
+                return in.get() != 0 ? Boolean.TRUE : Boolean.FALSE;
+            default:
+                throw new UnitilsException("Corrupt compiled data set, unknown value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
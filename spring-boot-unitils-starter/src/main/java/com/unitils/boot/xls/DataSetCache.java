@@ -0,0 +1,225 @@
+package com.unitils.boot.xls;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.dataset.ITable;
+import org.unitils.core.UnitilsException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 进程级的数据集解析缓存，按文件的规范路径、最后修改时间和文件大小缓存已经解析好的表，
+ * 缓存的表是只读的，可以在不同的测试类之间共享。多个线程同时读取同一个没有缓存的文件时只解析一次，其他线程等待解析结果
+ * @Date:Created in 2018-07-08
+ */
+public class DataSetCache {
+
+    private static final Log logger = LogFactory.getLog(DataSetCache.class);
+
+    /* Default maximum number of parsed files kept in the cache */
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    private static final DataSetCache instance = new DataSetCache(DEFAULT_MAX_SIZE);
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final LinkedHashMap<Key, FutureTask<Map<String, List<ITable>>>> entries;
+
+    private volatile int maxSize;
+
+    public DataSetCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Key, FutureTask<Map<String, List<ITable>>>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, FutureTask<Map<String, List<ITable>>>> eldest) {
+                return size() > DataSetCache.this.maxSize;
+            }
+        };
+    }
+
+    public static DataSetCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the tables parsed from the given file, parsing it with the given loader when the file is not cached
+     * yet or has been modified since it was cached.
+     *
+     * @param file      The data set file, not null
+     * @param signature Identifies the reader settings that influence the parse result, e.g. the default schema
+     * @param loader    Parses the file on a cache miss, not null
+     * @return The tables per schema, not modifiable
+     */
+    public Map<String, List<ITable>> get(File file, String signature, Loader loader) {
+        if (maxSize <= 0) {
+            missCount.incrementAndGet();
+            return loader.load(file);
+        }
+        Key key = new Key(file, signature);
+        FutureTask<Map<String, List<ITable>>> task;
+        boolean loading = false;
+        synchronized (entries) {
+            task = entries.get(key);
+            if (task == null) {
+                task = new FutureTask<Map<String, List<ITable>>>(new LoadTask(file, loader));
+                entries.put(key, task);
+                loading = true;
+            }
+        }
+        if (!loading) {
+            hitCount.incrementAndGet();
+            return getResult(key, task);
+        }
+        missCount.incrementAndGet();
+        // 在调用线程中解析，同时读取这个文件的其他线程等待结果
+        task.run();
+        Map<String, List<ITable>> tables = getResult(key, task);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Cached parsed data set " + key.path + ", hits: " + hitCount.get() + ", misses: " + missCount.get());
+        }
+        return tables;
+    }
+
+    //解析失败时移除缓存项，下次重新解析
+    private Map<String, List<ITable>> getResult(Key key, FutureTask<Map<String, List<ITable>>> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnitilsException("Interrupted while waiting for data set " + key.path, e);
+        } catch (ExecutionException e) {
+            synchronized (entries) {
+                if (entries.get(key) == task) {
+                    entries.remove(key);
+                }
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new UnitilsException("Unable to parse data set " + key.path, e.getCause());
+        }
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        synchronized (entries) {
+            Iterator<Key> iterator = entries.keySet().iterator();
+            while (entries.size() > Math.max(maxSize, 0) && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static Map<String, List<ITable>> unmodifiable(Map<String, List<ITable>> tables) {
+        Map<String, List<ITable>> result = new LinkedHashMap<String, List<ITable>>();
+        for (Map.Entry<String, List<ITable>> entry : tables.entrySet()) {
+            result.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<ITable>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static class LoadTask implements Callable<Map<String, List<ITable>>> {
+
+        private final File file;
+
+        private final Loader loader;
+
+        LoadTask(File file, Loader loader) {
+            this.file = file;
+            this.loader = loader;
+        }
+
+        public Map<String, List<ITable>> call() {
+            return unmodifiable(loader.load(file));
+        }
+    }
+
+    /**
+     * Parses a data set file into tables per schema
+     */
+    public interface Loader {
+
+        Map<String, List<ITable>> load(File file);
+    }
+
+    private static class Key {
+
+        private final String path;
+
+        private final long lastModified;
+
+        private final long length;
+
+        private final String signature;
+
+        Key(File file, String signature) {
+            try {
+                this.path = file.getCanonicalPath();
+            } catch (IOException e) {
+                throw new UnitilsException("Unable to resolve the canonical path of " + file, e);
+            }
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.signature = signature;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return lastModified == key.lastModified && length == key.length && path.equals(key.path)
+                && (signature == null ? key.signature == null : signature.equals(key.signature));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            result = 31 * result + (int) (length ^ (length >>> 32));
+            result = 31 * result + (signature == null ? 0 : signature.hashCode());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.unitils.boot.xls;
+
+import com.unitils.boot.datasetloadstrategy.DataSetFingerprints;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 合并数据集中的表，同一个schema中的每张表只加载一次。
+ * 一个数据集的多个文件中：内容相同的sheet按指纹去重只保留一个，内容不同的同名表按文件顺序合并成一张表，
+ * 列为所有sheet中出现过的列，sheet中没有的列为空。只有行数和列都相同的sheet才计算指纹，其他sheet在加载前不需要读取数据。
+ * 类和方法上的数据集：方法上的行按主键覆盖类上主键相同的行，方法上的表中没有的列使用被覆盖的行的值，
+ * 表没有主键或者缺少主键列时方法上的表替换类上的整张表
+ * @Date:Created in 2018-07-08
+ */
+public class DataSetMerger {
+
+    /**
+     * Merges the tables with the same name, the order of the first occurrences is kept.
+     *
+     * @param tables The tables, not null
+     * @return The tables with distinct names, not null
+     */
+    public static List<ITable> mergeTables(List<ITable> tables) throws DataSetException {
+        Map<String, List<ITable>> tablesByName = groupByName(tables);
+        List<ITable> result = new ArrayList<ITable>(tablesByName.size());
+        for (List<ITable> sameNameTables : tablesByName.values()) {
+            result.add(sameNameTables.size() == 1 ? sameNameTables.get(0) : mergeTable(sameNameTables));
+        }
+        return result;
+    }
+
+    /**
+     * Merges the class and method level data sets of a test per schema. A table that is in both data sets contains
+     * the rows of the method level table and the rows of the class level table with another primary key. A method level
+     * row that replaces a class level row takes the values of the columns that only the class level table has from the
+     * replaced row. If the table
+     * has no primary key or one of the tables lacks a primary key column, the method level table replaces the class level table.
+     *
+     * @param primaryKeyResolver Gets the primary key of the tables in the database, not null
+     * @param classDataSet       The class level data set, not null
+     * @param methodDataSet      The method level data set, not null
+     * @return The merged data set, not null
+     */
+    public static MultiSchemaDataSet merge(PrimaryKeyResolver primaryKeyResolver, MultiSchemaDataSet classDataSet,
+                                           MultiSchemaDataSet methodDataSet) throws DataSetException {
+        MultiSchemaDataSet result = new MultiSchemaDataSet();
+        for (String schemaName : classDataSet.getSchemaNames()) {
+            if (!methodDataSet.getSchemaNames().contains(schemaName)) {
+                result.setDataSetForSchema(schemaName, classDataSet.getDataSetForSchema(schemaName));
+                continue;
+            }
+            Map<String, List<ITable>> tablesByName = groupByName(getTables(classDataSet.getDataSetForSchema(schemaName)));
+            for (Map.Entry<String, List<ITable>> entry : groupByName(getTables(methodDataSet.getDataSetForSchema(schemaName))).entrySet()) {
+                List<ITable> classTables = tablesByName.get(entry.getKey());
+                if (classTables == null) {
+                    tablesByName.put(entry.getKey(), entry.getValue());
+                    continue;
+                }
+                ITable methodTable = entry.getValue().get(0);
+                List<String> primaryKeyNames = primaryKeyResolver.getPrimaryKeyNames(schemaName, methodTable.getTableMetaData().getTableName());
+                tablesByName.put(entry.getKey(), Arrays.asList(override(classTables.get(0), methodTable, primaryKeyNames)));
+            }
+            List<ITable> tables = new ArrayList<ITable>(tablesByName.size());
+            for (List<ITable> sameNameTables : tablesByName.values()) {
+                tables.add(sameNameTables.get(0));
+            }
+            result.setDataSetForSchema(schemaName, new DefaultDataSet(tables.toArray(new ITable[tables.size()])));
+        }
+        for (String schemaName : methodDataSet.getSchemaNames()) {
+            if (!classDataSet.getSchemaNames().contains(schemaName)) {
+                result.setDataSetForSchema(schemaName, methodDataSet.getDataSetForSchema(schemaName));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the primary key of a table, e.g. from the meta data of the database.
+     */
+    public interface PrimaryKeyResolver {
+
+        /**
+         * @param schemaName The name of the schema, not null
+         * @param tableName  The name of the table, not null
+         * @return The names of the primary key columns, empty if the table has no primary key or does not exist
+         */
+        List<String> getPrimaryKeyNames(String schemaName, String tableName) throws DataSetException;
+    }
+
+    //类上的行中主键和方法上某一行相同的被替换，方法上的行记录被替换的第一个类上的行
+    private static ITable override(ITable classTable, ITable methodTable, List<String> primaryKeyNames) throws DataSetException {
+        if (primaryKeyNames.isEmpty() || !hasColumns(classTable, primaryKeyNames) || !hasColumns(methodTable, primaryKeyNames)) {
+            return methodTable;
+        }
+        Map<List<Object>, Integer> classKeys = new HashMap<List<Object>, Integer>();
+        List<List<Object>> classRowKeys = new ArrayList<List<Object>>(classTable.getRowCount());
+        for (int row = 0; row < classTable.getRowCount(); row++) {
+            List<Object> key = getKey(classTable, row, primaryKeyNames);
+            classRowKeys.add(key);
+            if (!key.contains(null) && !classKeys.containsKey(key)) {
+                classKeys.put(key, row);
+            }
+        }
+        Set<List<Object>> methodKeys = new HashSet<List<Object>>();
+        int[] replacedRows = new int[methodTable.getRowCount()];
+        for (int row = 0; row < methodTable.getRowCount(); row++) {
+            List<Object> key = getKey(methodTable, row, primaryKeyNames);
+            methodKeys.add(key);
+            Integer classRow = classKeys.get(key);
+            replacedRows[row] = classRow == null ? -1 : classRow;
+        }
+        BitSet classRows = new BitSet(classTable.getRowCount());
+        for (int row = 0; row < classTable.getRowCount(); row++) {
+            List<Object> key = classRowKeys.get(row);
+            if (key.contains(null) || !methodKeys.contains(key)) {
+                classRows.set(row);
+            }
+        }
+        BitSet methodRows = new BitSet(methodTable.getRowCount());
+        methodRows.set(0, methodTable.getRowCount());
+        return new MergedTable(methodTable.getTableMetaData().getTableName(), Arrays.asList(classTable, methodTable), Arrays.asList(classRows, methodRows),
+            Arrays.asList(null, replacedRows));
+    }
+
+    //主键值按文本比较，数字去掉末尾的0，Excel中的数字1.0和文本1是同一个主键
+    private static List<Object> getKey(ITable table, int row, List<String> primaryKeyNames) throws DataSetException {
+        List<Object> key = new ArrayList<Object>(primaryKeyNames.size());
+        for (String primaryKeyName : primaryKeyNames) {
+            Object value = ColumnarTable.normalize(table.getValue(row, primaryKeyName));
+            if (value instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal) value;
+                value = decimal.signum() == 0 ? "0" : decimal.stripTrailingZeros().toPlainString();
+            }
+            key.add(value == null ? null : value.toString());
+        }
+        return key;
+    }
+
+    private static boolean hasColumns(ITable table, List<String> columnNames) throws DataSetException {
+        Set<String> tableColumnNames = new HashSet<String>();
+        for (Column column : table.getTableMetaData().getColumns()) {
+            tableColumnNames.add(column.getColumnName().toUpperCase(Locale.ENGLISH));
+        }
+        for (String columnName : columnNames) {
+            if (!tableColumnNames.contains(columnName.toUpperCase(Locale.ENGLISH))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //同名表的内容相同时直接使用第一张表，内容不同时拼接成MergedTable，不复制数据
+    private static ITable mergeTable(List<ITable> tables) throws DataSetException {
+        List<ITable> distinctTables = new ArrayList<ITable>();
+        Map<String, Set<DataSetFingerprints.Fingerprint>> fingerprintsByShape = new HashMap<String, Set<DataSetFingerprints.Fingerprint>>();
+        Map<String, ITable> firstTableByShape = new HashMap<String, ITable>();
+        for (ITable table : tables) {
+            String shape = getShape(table);
+            ITable firstTable = firstTableByShape.get(shape);
+            if (firstTable == null) {
+                // 行数或列不同的表内容一定不同，不需要读取数据计算指纹
+                firstTableByShape.put(shape, table);
+                distinctTables.add(table);
+                continue;
+            }
+            Set<DataSetFingerprints.Fingerprint> fingerprints = fingerprintsByShape.get(shape);
+            if (fingerprints == null) {
+                fingerprints = new HashSet<DataSetFingerprints.Fingerprint>();
+                fingerprints.add(DataSetFingerprints.calculate(firstTable));
+                fingerprintsByShape.put(shape, fingerprints);
+            }
+            if (fingerprints.add(DataSetFingerprints.calculate(table))) {
+                distinctTables.add(table);
+            }
+        }
+        if (distinctTables.size() == 1) {
+            return distinctTables.get(0);
+        }
+        return MergedTable.of(distinctTables.get(0).getTableMetaData().getTableName(), distinctTables);
+    }
+
+    private static String getShape(ITable table) throws DataSetException {
+        StringBuilder shape = new StringBuilder().append(table.getRowCount());
+        for (Column column : table.getTableMetaData().getColumns()) {
+            shape.append(',').append(column.getColumnName().toUpperCase(Locale.ENGLISH));
+        }
+        return shape.toString();
+    }
+
+    private static Map<String, List<ITable>> groupByName(List<ITable> tables) throws DataSetException {
+        Map<String, List<ITable>> tablesByName = new LinkedHashMap<String, List<ITable>>();
+        for (ITable table : tables) {
+            String tableName = table.getTableMetaData().getTableName().toUpperCase(Locale.ENGLISH);
+            if (!tablesByName.containsKey(tableName)) {
+                tablesByName.put(tableName, new ArrayList<ITable>());
+            }
+            tablesByName.get(tableName).add(table);
+        }
+        return tablesByName;
+    }
+
+    private static List<ITable> getTables(IDataSet dataSet) throws DataSetException {
+        List<ITable> tables = new ArrayList<ITable>();
+        for (String tableName : dataSet.getTableNames()) {
+            tables.add(dataSet.getTable(tableName));
+        }
+        return tables;
+    }
+}
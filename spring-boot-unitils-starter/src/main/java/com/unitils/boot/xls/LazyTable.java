@@ -0,0 +1,109 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 延迟读取数据的表。创建时只记录sheet的位置、表头和行数，第一次读取单元格时才把整个sheet转换成ColumnarTable，
+ * 没有被读取的sheet不会转换。加载到多个schema的sheet共享同一个转换结果，
+ * 同一个工作簿的sheet按顺序转换，POI的工作簿不能被多个线程同时读取。
+ * 放入DataSetCache的表同样延迟转换，缓存保存每个sheet的转换结果。没有转换的sheet引用整个POI工作簿，
+ * 同一个工作簿的sheet都转换后才释放工作簿
+ * @Date:Created in 2018-07-08
+ */
+public class LazyTable extends AbstractTable {
+
+    private final ITableMetaData metaData;
+
+    private final Sheet sheet;
+
+    /**
+     * @param tableName    The name of the table, not null
+     * @param source       The sheet as read by POI, only its meta data and row count are read now, not null
+     * @param workbookLock The lock shared by the sheets of the same workbook, not null
+     */
+    public LazyTable(String tableName, ITable source, Object workbookLock) throws DataSetException {
+        this.metaData = createMetaData(tableName, source.getTableMetaData());
+        this.sheet = new Sheet(source, workbookLock);
+    }
+
+    private LazyTable(LazyTable table, String tableName) throws DataSetException {
+        this.metaData = createMetaData(tableName, table.metaData);
+        this.sheet = table.sheet;
+    }
+
+    /**
+     * @param tableName The table name, not null
+     * @return A table with the given name that shares the sheet of this table, not null
+     */
+    public LazyTable withTableName(String tableName) throws DataSetException {
+        return new LazyTable(this, tableName);
+    }
+
+    /**
+     * @return Whether the values of the sheet have been read
+     */
+    public boolean isMaterialized() {
+        return sheet.isMaterialized();
+    }
+
+    public ITableMetaData getTableMetaData() {
+        return metaData;
+    }
+
+    public int getRowCount() {
+        return sheet.rowCount;
+    }
+
+    public Object getValue(int row, String column) throws DataSetException {
+        return sheet.getTable().getValue(row, column);
+    }
+
+    private static ITableMetaData createMetaData(String tableName, ITableMetaData sourceMetaData) throws DataSetException {
+        return new DefaultTableMetaData(tableName, sourceMetaData.getColumns(), sourceMetaData.getPrimaryKeys());
+    }
+
+    /**
+     * The sheet of one or more lazy tables, converted once.
+     */
+    private static class Sheet {
+
+        private final Object workbookLock;
+
+        private final int rowCount;
+
+        /* The sheet as read by POI, released when it is converted */
+        private ITable source;
+
+        private volatile ColumnarTable table;
+
+        Sheet(ITable source, Object workbookLock) {
+            this.source = source;
+            this.workbookLock = workbookLock;
+            this.rowCount = source.getRowCount();
+        }
+
+        boolean isMaterialized() {
+            return table != null;
+        }
+
+        ColumnarTable getTable() throws DataSetException {
+            ColumnarTable result = table;
+            if (result == null) {
+                synchronized (workbookLock) {
+                    result = table;
+                    if (result == null) {
+                        result = ColumnarTable.copyOf(source.getTableMetaData().getTableName(), source);
+                        table = result;
+                        source = null;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 多张同名表按顺序拼接成的表，只记录每一行来自哪张表的哪一行，读取单元格时才从原来的表中读取，
+ * 所以合并不会提前转换延迟读取的sheet。列为所有表中出现过的列，表中没有的列为空，
+ * 替换了第一张表中某一行的行，表中没有的列使用被替换的行的值
+ * @Date:Created in 2018-07-08
+ */
+public class MergedTable extends AbstractTable {
+
+    private final ITableMetaData metaData;
+
+    private final ITable[] tables;
+
+    /* The column name of every merged column in every table, null if the table does not have the column */
+    private final String[][] tableColumnNames;
+
+    private final int[] rowTables;
+
+    private final int[] tableRows;
+
+    /* The row of the first table that is replaced by every row, -1 if the row replaces no row */
+    private final int[] replacedTableRows;
+
+    /**
+     * @param tableName The name of the table, not null
+     * @param tables    The tables, not null
+     * @param rows      The rows of every table that are part of the merged table, not null
+     */
+    public MergedTable(String tableName, List<ITable> tables, List<BitSet> rows) throws DataSetException {
+        this(tableName, tables, rows, null);
+    }
+
+    /**
+     * @param tableName    The name of the table, not null
+     * @param tables       The tables, not null
+     * @param rows         The rows of every table that are part of the merged table, not null
+     * @param replacedRows For every table, the row of the first table that is replaced by every row of the table or -1,
+     *                     the replaced row provides the values of the columns that the table does not have. Null if no rows are replaced
+     */
+    public MergedTable(String tableName, List<ITable> tables, List<BitSet> rows, List<int[]> replacedRows) throws DataSetException {
+        List<Column> columns = new ArrayList<Column>();
+        Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+        int rowCount = 0;
+        for (int t = 0; t < tables.size(); t++) {
+            for (Column column : tables.get(t).getTableMetaData().getColumns()) {
+                String columnName = column.getColumnName().toUpperCase(Locale.ENGLISH);
+                if (!columnIndexes.containsKey(columnName)) {
+                    columnIndexes.put(columnName, columns.size());
+                    columns.add(column);
+                }
+            }
+            rowCount += rows.get(t).cardinality();
+        }
+        this.metaData = new DefaultTableMetaData(tableName, columns.toArray(new Column[columns.size()]));
+        this.tables = tables.toArray(new ITable[tables.size()]);
+        this.tableColumnNames = new String[tables.size()][columns.size()];
+        this.rowTables = new int[rowCount];
+        this.tableRows = new int[rowCount];
+        this.replacedTableRows = new int[rowCount];
+        int index = 0;
+        for (int t = 0; t < tables.size(); t++) {
+            for (Column column : tables.get(t).getTableMetaData().getColumns()) {
+                int columnIndex = columnIndexes.get(column.getColumnName().toUpperCase(Locale.ENGLISH));
+                if (tableColumnNames[t][columnIndex] == null) {
+                    tableColumnNames[t][columnIndex] = column.getColumnName();
+                }
+            }
+            BitSet selectedRows = rows.get(t);
+            for (int row = selectedRows.nextSetBit(0); row >= 0; row = selectedRows.nextSetBit(row + 1)) {
+                rowTables[index] = t;
+                tableRows[index] = row;
+                replacedTableRows[index++] = replacedRows == null || replacedRows.get(t) == null ? -1 : replacedRows.get(t)[row];
+            }
+        }
+    }
+
+    /**
+     * @param tableName The name of the table, not null
+     * @param tables    The tables whose rows are all part of the merged table, not null
+     * @return The merged table, not null
+     */
+    public static MergedTable of(String tableName, List<ITable> tables) throws DataSetException {
+        List<BitSet> rows = new ArrayList<BitSet>(tables.size());
+        for (ITable table : tables) {
+            BitSet tableRows = new BitSet(table.getRowCount());
+            tableRows.set(0, table.getRowCount());
+            rows.add(tableRows);
+        }
+        return new MergedTable(tableName, tables, rows);
+    }
+
+    public ITableMetaData getTableMetaData() {
+        return metaData;
+    }
+
+    public int getRowCount() {
+        return rowTables.length;
+    }
+
+    public Object getValue(int row, String column) throws DataSetException {
+        assertValidRowIndex(row);
+        int columnIndex = getColumnIndex(column);
+        String tableColumnName = tableColumnNames[rowTables[row]][columnIndex];
+        if (tableColumnName != null) {
+            return tables[rowTables[row]].getValue(tableRows[row], tableColumnName);
+        }
+        // 表中没有的列从被替换的行中读取
+        if (replacedTableRows[row] >= 0 && tableColumnNames[0][columnIndex] != null) {
+            return tables[0].getValue(replacedTableRows[row], tableColumnNames[0][columnIndex]);
+        }
+        return null;
+    }
+}
@@ -1,12 +1,21 @@
 package com.unitils.boot.xls;
 
+import com.unitils.boot.dbunit.SpringBootDbUnitModule;
+import com.unitils.boot.util.PhaseTimer;
 import org.unitils.core.UnitilsException;
 import org.unitils.dbunit.datasetfactory.DataSetFactory;
 import org.unitils.dbunit.util.MultiSchemaDataSet;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.unitils.util.PropertyUtils.getBoolean;
+import static org.unitils.util.PropertyUtils.getInt;
 
 /**
  * @Author: yangjianzhou
@@ -15,20 +24,66 @@ import java.util.Properties;
  */
 public class MultiSchemaXlsDataSetFactory implements DataSetFactory {
 
+    /* Property key of the maximum number of parsed data set files kept in memory, 0 disables the cache */
+    public static final String PROPKEY_CACHE_MAX_SIZE = "MultiSchemaXlsDataSetFactory.cache.maxSize";
+
+    /* Property key of the number of threads used to parse the files of one data set, 1 parses them on the test thread */
+    public static final String PROPKEY_PARALLELISM = "MultiSchemaXlsDataSetFactory.parallelism";
+
+    /* The parse pools by parallelism, a pool is never resized so that concurrent factories can not race on its size */
+    private static final Map<Integer, ThreadPoolExecutor> parseExecutors = new HashMap<Integer, ThreadPoolExecutor>();
+
     protected String defaultSchemaName;
 
+    protected SheetNameRouter sheetNameRouter;
+
+    protected DataSetCache dataSetCache;
+
+    protected ExecutorService executorService;
+
+    protected boolean mergeTables;
+
     public void init(Properties configuration, String defaultSchemaName) {
         this.defaultSchemaName = defaultSchemaName;
+        this.sheetNameRouter = SheetNameRouter.create(configuration, defaultSchemaName);
+        this.dataSetCache = DataSetCache.getInstance();
+        this.dataSetCache.setMaxSize(getInt(PROPKEY_CACHE_MAX_SIZE, DataSetCache.DEFAULT_MAX_SIZE, configuration));
+        int parallelism = getInt(PROPKEY_PARALLELISM, Math.min(4, Runtime.getRuntime().availableProcessors()), configuration);
+        this.executorService = parallelism > 1 ? getParseExecutor(parallelism) : null;
+        this.mergeTables = getBoolean(SpringBootDbUnitModule.PROPKEY_MERGE_DATA_SETS, false, configuration);
+    }
+
+    //并行数相同的工厂共享一个固定大小的线程池，创建后不再调整大小，线程是守护线程，不会阻止JVM退出
+    private static synchronized ExecutorService getParseExecutor(final int parallelism) {
+        ThreadPoolExecutor parseExecutor = parseExecutors.get(parallelism);
+        if (parseExecutor == null) {
+            parseExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "unitils-dataset-parser-" + parallelism + "-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            parseExecutor.allowCoreThreadTimeOut(true);
+            parseExecutors.put(parallelism, parseExecutor);
+        }
+        return parseExecutor;
     }
 
     public MultiSchemaDataSet createDataSet(File... dataSetFiles) {
+        PhaseTimer.begin();
         try {
             MultiSchemaXlsDataSetReader xlsDataSetReader = new MultiSchemaXlsDataSetReader(
-                defaultSchemaName);
+                sheetNameRouter, dataSetCache, executorService, mergeTables);
             return xlsDataSetReader.readDataSetXls(dataSetFiles);
         } catch (Exception e) {
             throw new UnitilsException("创建数据集失败: "
                 + Arrays.toString(dataSetFiles), e);
+        } finally {
+            PhaseTimer.end("dataset.parse");
         }
     }
 
@@ -1,6 +1,7 @@
 package com.unitils.boot.xls;
 
-import org.apache.commons.lang.StringUtils;
+import com.unitils.boot.util.HarnessEvents;
+import com.unitils.boot.util.PhaseTimer;
 import org.dbunit.database.AmbiguousTableNameException;
 import org.dbunit.dataset.*;
 import org.dbunit.dataset.excel.XlsDataSet;
@@ -9,7 +10,9 @@ import org.unitils.dbunit.util.MultiSchemaDataSet;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @Author: yangjianzhou
@@ -17,20 +20,60 @@ import java.util.*;
  * @Date:Created in 2018-07-08
  */
 public class MultiSchemaXlsDataSetReader {
-    private String pattern = ".";
-    private String defaultSchemaName;
+    private SheetNameRouter sheetNameRouter;
+    private DataSetCache dataSetCache;
+    private ExecutorService executorService;
+    private boolean mergeTables;
 
     public MultiSchemaXlsDataSetReader(String defaultSchemaName) {
-        this.defaultSchemaName = defaultSchemaName;
+        this(defaultSchemaName, null, null);
+    }
+
+    public MultiSchemaXlsDataSetReader(String defaultSchemaName, DataSetCache dataSetCache) {
+        this(defaultSchemaName, dataSetCache, null);
+    }
+
+    /**
+     * @param defaultSchemaName The schema for sheets without a schema prefix
+     * @param dataSetCache      The cache for parsed files, null to always parse
+     * @param executorService   The pool to parse multiple files in parallel, null to parse them on the calling thread
+     */
+    public MultiSchemaXlsDataSetReader(String defaultSchemaName, DataSetCache dataSetCache, ExecutorService executorService) {
+        this(new SheetNameRouter(defaultSchemaName), dataSetCache, executorService);
+    }
+
+    /**
+     * @param sheetNameRouter The router of the sheets to schemas and tables, not null
+     * @param dataSetCache    The cache for parsed files, null to always parse
+     * @param executorService The pool to parse multiple files in parallel, null to parse them on the calling thread
+     */
+    public MultiSchemaXlsDataSetReader(SheetNameRouter sheetNameRouter, DataSetCache dataSetCache, ExecutorService executorService) {
+        this(sheetNameRouter, dataSetCache, executorService, false);
+    }
+
+    /**
+     * @param sheetNameRouter The router of the sheets to schemas and tables, not null
+     * @param dataSetCache    The cache for parsed files, null to always parse
+     * @param executorService The pool to parse multiple files in parallel, null to parse them on the calling thread
+     * @param mergeTables     True to merge the tables with the same name in multiple files, see {@link DataSetMerger#mergeTables}
+     */
+    public MultiSchemaXlsDataSetReader(SheetNameRouter sheetNameRouter, DataSetCache dataSetCache, ExecutorService executorService,
+                                       boolean mergeTables) {
+        this.sheetNameRouter = sheetNameRouter;
+        this.dataSetCache = dataSetCache;
+        this.executorService = executorService;
+        this.mergeTables = mergeTables;
     }
 
     public MultiSchemaDataSet readDataSetXls(File... dataSetFiles) {
+        long startTime = HarnessEvents.isEnabled() ? System.nanoTime() : 0;
         try {
             Map<String, List<ITable>> tbMap = getTables(dataSetFiles);
             MultiSchemaDataSet dataSets = new MultiSchemaDataSet();
 
             for (Map.Entry<String, List<ITable>> entry : tbMap.entrySet()) {
-                List<ITable> tables = entry.getValue();
+                // 多个文件中的同名表合并成一张表，不合并时DbUnit会报AmbiguousTableNameException
+                List<ITable> tables = mergeTables ? DataSetMerger.mergeTables(entry.getValue()) : entry.getValue();
                 try {
                     DefaultDataSet ds = new DefaultDataSet(tables.toArray(new ITable[]{}));
                     dataSets.setDataSetForSchema(entry.getKey(), ds);
@@ -38,35 +81,41 @@ public class MultiSchemaXlsDataSetReader {
                     throw new UnitilsException("构造DataSet失败！", e);
                 }
             }
+            if (HarnessEvents.isEnabled()) {
+                fireDataSetRead(tbMap, dataSetFiles, System.nanoTime() - startTime);
+            }
             return dataSets;
         } catch (Exception e) {
             throw new UnitilsException("解析Excel文件出错：", e);
         }
     }
 
+    private void fireDataSetRead(Map<String, List<ITable>> tableMap, File[] dataSetFiles, long nanos) {
+        long rows = 0;
+        for (List<ITable> tables : tableMap.values()) {
+            for (ITable table : tables) {
+                rows += table.getRowCount();
+            }
+        }
+        long bytes = 0;
+        StringBuilder fileNames = new StringBuilder();
+        for (File dataSetFile : dataSetFiles) {
+            bytes += dataSetFile.length();
+            fileNames.append(fileNames.length() == 0 ? "" : ",").append(dataSetFile.getName());
+        }
+        HarnessEvents.dataSetRead(fileNames.toString(), rows, bytes, nanos);
+    }
+
     private Map<String, List<ITable>> getTables(File... dataSetFiles) {
-        Map<String, List<ITable>> tableMap = new HashMap<String, List<ITable>>();
-        // 需要根据schema把Table重新组合一下
+        Map<String, List<ITable>> tableMap = new LinkedHashMap<String, List<ITable>>();
+        // 需要根据schema把Table重新组合一下，按文件的顺序合并，结果和顺序解析一致
         try {
-            String schema, tableName;
-            for (File file : dataSetFiles) {
-                IDataSet dataSet = new XlsDataSet(new FileInputStream(file));
-                String[] tableNames = dataSet.getTableNames();
-                for (String tn : tableNames) {
-                    String[] temp = tn.split(pattern);
-                    if (temp.length == 2) {
-                        schema = temp[0];
-                        tableName = temp[1];
-                    } else {
-                        schema = this.defaultSchemaName;
-                        tableName = tn;
-                    }
-
-                    ITable table = dataSet.getTable(tn);
-                    if (!tableMap.containsKey(schema)) {
-                        tableMap.put(schema, new ArrayList<ITable>());
+            for (Map<String, List<ITable>> fileTables : readAllTables(dataSetFiles)) {
+                for (Map.Entry<String, List<ITable>> entry : fileTables.entrySet()) {
+                    if (!tableMap.containsKey(entry.getKey())) {
+                        tableMap.put(entry.getKey(), new ArrayList<ITable>());
                     }
-                    tableMap.get(schema).add(new XlsTable(tableName, table));
+                    tableMap.get(entry.getKey()).addAll(entry.getValue());
                 }
             }
         } catch (Exception e) {
@@ -75,40 +124,107 @@ public class MultiSchemaXlsDataSetReader {
         return tableMap;
     }
 
-    //构造XslTable表
-    class XlsTable extends AbstractTable {
-        private ITable delegate;
-        private String tableName;
-
-        public XlsTable(String tableName, ITable table) {
-            this.delegate = table;
-            this.tableName = tableName;
+    //多个文件时并行解析，返回结果和文件的顺序一致。解析线程中的耗时记录到调用线程当前的测试类
+    private List<Map<String, List<ITable>>> readAllTables(File... dataSetFiles) throws Exception {
+        List<Map<String, List<ITable>>> result = new ArrayList<Map<String, List<ITable>>>(dataSetFiles.length);
+        final Class<?> testClass = PhaseTimer.getCurrentTestClass();
+        if (executorService == null || dataSetFiles.length < 2) {
+            for (File file : dataSetFiles) {
+                result.add(readTables(file, testClass));
+            }
+            return result;
         }
-
-        public int getRowCount() {
-            return delegate.getRowCount();
+        List<Future<Map<String, List<ITable>>>> futures = new ArrayList<Future<Map<String, List<ITable>>>>(dataSetFiles.length);
+        for (final File file : dataSetFiles) {
+            futures.add(executorService.submit(new Callable<Map<String, List<ITable>>>() {
+                public Map<String, List<ITable>> call() {
+                    return readTables(file, testClass);
+                }
+            }));
         }
+        try {
+            for (Future<Map<String, List<ITable>>> future : futures) {
+                result.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            for (Future<Map<String, List<ITable>>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return result;
+    }
 
-        public ITableMetaData getTableMetaData() {
-            ITableMetaData meta = delegate.getTableMetaData();
-            try {
-                return new DefaultTableMetaData(tableName, meta.getColumns(),
-                    meta.getPrimaryKeys());
-            } catch (DataSetException e) {
-                throw new UnitilsException("Don't get the meta info from  "
-                    + meta, e);
+    //同一个文件只解析一次，解析结果放到缓存中
+    private Map<String, List<ITable>> readTables(File file, Class<?> testClass) {
+        PhaseTimer.begin(testClass);
+        try {
+            if (dataSetCache == null) {
+                return parseTables(file);
             }
+            // 缓存中的表也是LazyTable，每个sheet在第一次使用时转换一次，转换结果随缓存共享
+            return dataSetCache.get(file, sheetNameRouter.getSignature(), new DataSetCache.Loader() {
+                public Map<String, List<ITable>> load(File file) {
+                    return parseTables(file);
+                }
+            });
+        } finally {
+            PhaseTimer.end("dataset.parseFile");
         }
+    }
 
-        public Object getValue(int row, String column) throws DataSetException {
-            Object delta = delegate.getValue(row, column);
-            if (delta instanceof String) {
-                if (StringUtils.isEmpty((String) delta)) {
-                    return null;
+    private Map<String, List<ITable>> parseTables(File file) {
+        Map<String, List<ITable>> tableMap = new LinkedHashMap<String, List<ITable>>();
+        try {
+            Object workbookLock = new Object();
+            for (ITable table : readSheets(file)) {
+                // 加载到多个schema的sheet只读取一次，各个schema的表共享数据
+                ITable schemaTable = null;
+                for (String[] schemaAndTableName : sheetNameRouter.route(table.getTableMetaData().getTableName())) {
+                    String schema = schemaAndTableName[0];
+                    String tableName = schemaAndTableName[1];
+                    if (!tableMap.containsKey(schema)) {
+                        tableMap.put(schema, new ArrayList<ITable>());
+                    }
+                    schemaTable = createTable(tableName, schemaTable == null ? table : schemaTable, workbookLock);
+                    tableMap.get(schema).add(schemaTable);
                 }
             }
-            return delta;
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to create DbUnit dataset for data set file: " + file, e);
         }
+        return tableMap;
+    }
 
+    //POI读取的sheet在第一次读取单元格时才转换，预编译文件中的表已经是ColumnarTable，只修改表名
+    private ITable createTable(String tableName, ITable table, Object workbookLock) throws DataSetException {
+        if (table instanceof ColumnarTable) {
+            return ((ColumnarTable) table).withTableName(tableName);
+        }
+        if (table instanceof LazyTable) {
+            return ((LazyTable) table).withTableName(tableName);
+        }
+        return new LazyTable(tableName, table, workbookLock);
+    }
+
+    //有预编译的二进制文件时直接读取，否则用POI解析Excel
+    private List<ITable> readSheets(File file) throws Exception {
+        File compiledFile = CompiledDataSet.getCompiledFile(file);
+        if (CompiledDataSet.isUpToDate(compiledFile, file)) {
+            return CompiledDataSet.read(compiledFile);
+        }
+        IDataSet dataSet;
+        InputStream in = new FileInputStream(file);
+        try {
+            dataSet = new XlsDataSet(in);
+        } finally {
+            in.close();
+        }
+        List<ITable> tables = new ArrayList<ITable>();
+        for (String tn : dataSet.getTableNames()) {
+            tables.add(dataSet.getTable(tn));
+        }
+        return tables;
     }
 }
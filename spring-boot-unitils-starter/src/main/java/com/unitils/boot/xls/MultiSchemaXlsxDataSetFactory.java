@@ -0,0 +1,63 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.IDataSet;
+import com.unitils.boot.util.PhaseTimer;
+import org.unitils.core.UnitilsException;
+import org.unitils.dbunit.datasetfactory.DataSetFactory;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: xlsx数据集工厂，sheet的内容只在插入数据时才流式读取，适合行数很多的数据集。
+ * 向前遍历时只保留当前行；ExpectedDataSet的比较、反向遍历和按名称获取表时会把整个sheet读入内存，并输出一条info日志，
+ * 行数很多的期望数据用xls格式和HashExpectedDataSetAssert更合适
+ * @Date:Created in 2018-07-08
+ */
+public class MultiSchemaXlsxDataSetFactory implements DataSetFactory {
+
+    protected String defaultSchemaName;
+
+    protected SheetNameRouter sheetNameRouter;
+
+    public void init(Properties configuration, String defaultSchemaName) {
+        this.defaultSchemaName = defaultSchemaName;
+        this.sheetNameRouter = SheetNameRouter.create(configuration, defaultSchemaName);
+    }
+
+    public MultiSchemaDataSet createDataSet(File... dataSetFiles) {
+        PhaseTimer.begin();
+        try {
+            Map<String, List<StreamingXlsxDataSet.SheetRef>> sheetMap = new LinkedHashMap<String, List<StreamingXlsxDataSet.SheetRef>>();
+            for (File file : dataSetFiles) {
+                for (String sheetName : StreamingXlsxDataSet.readSheetNames(file)) {
+                    for (String[] schemaAndTableName : sheetNameRouter.route(sheetName)) {
+                        if (!sheetMap.containsKey(schemaAndTableName[0])) {
+                            sheetMap.put(schemaAndTableName[0], new ArrayList<StreamingXlsxDataSet.SheetRef>());
+                        }
+                        sheetMap.get(schemaAndTableName[0]).add(new StreamingXlsxDataSet.SheetRef(file, sheetName, schemaAndTableName[1]));
+                    }
+                }
+            }
+
+            MultiSchemaDataSet dataSets = new MultiSchemaDataSet();
+            for (Map.Entry<String, List<StreamingXlsxDataSet.SheetRef>> entry : sheetMap.entrySet()) {
+                IDataSet dataSet = new StreamingXlsxDataSet(entry.getValue());
+                dataSets.setDataSetForSchema(entry.getKey(), dataSet);
+            }
+            return dataSets;
+        } catch (Exception e) {
+            throw new UnitilsException("创建数据集失败: "
+                + Arrays.toString(dataSetFiles), e);
+        } finally {
+            PhaseTimer.end("dataset.parse");
+        }
+    }
+
+    public String getDataSetFileExtension() {
+        return "xlsx";
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.unitils.boot.xls;
+
+import org.unitils.core.UnitilsException;
+import org.unitils.util.PropertyUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 根据sheet名称确定数据加载到哪个schema的哪张表。sheet名称为schema.table时拆分出schema，
+ * 分隔符按字面值匹配，不是正则表达式；没有schema前缀时使用默认的schema。
+ * schema可以是别名，通过SheetNameRouter.schema.别名=实际schema配置，不同环境在各自的配置文件中映射到不同的schema，
+ * 一个别名可以映射到逗号分隔的多个schema，同一个sheet会加载到每个schema中
+ * @Date:Created in 2018-07-08
+ */
+public class SheetNameRouter {
+
+    /* Property key of the separator between the schema and the table name in a sheet name */
+    public static final String PROPKEY_SEPARATOR = "SheetNameRouter.separator";
+
+    /* Property key of the case of the table names: keep, lower or upper */
+    public static final String PROPKEY_TABLE_NAME_CASE = "SheetNameRouter.tableNameCase";
+
+    /* Prefix of the property keys that map a schema alias to the physical schemas */
+    public static final String PROPKEY_SCHEMA_ALIAS_PREFIX = "SheetNameRouter.schema.";
+
+    public static final String DEFAULT_SEPARATOR = ".";
+
+    private final String defaultSchemaName;
+
+    private final String separator;
+
+    private final Pattern separatorPattern;
+
+    private final String tableNameCase;
+
+    /* The physical schemas by the lower case alias */
+    private final Map<String, List<String>> schemaAliases;
+
+    public SheetNameRouter(String defaultSchemaName) {
+        this(defaultSchemaName, DEFAULT_SEPARATOR, "keep", Collections.<String, List<String>>emptyMap());
+    }
+
+    /**
+     * @param defaultSchemaName The schema for sheets without a schema prefix
+     * @param separator         The literal separator between schema and table name, not empty
+     * @param tableNameCase     keep, lower or upper
+     * @param schemaAliases     The physical schemas by alias, not null
+     */
+    public SheetNameRouter(String defaultSchemaName, String separator, String tableNameCase, Map<String, List<String>> schemaAliases) {
+        if (separator == null || separator.isEmpty()) {
+            throw new UnitilsException("The separator of schema and table name in sheet names must not be empty");
+        }
+        if (!"keep".equalsIgnoreCase(tableNameCase) && !"lower".equalsIgnoreCase(tableNameCase) && !"upper".equalsIgnoreCase(tableNameCase)) {
+            throw new UnitilsException("Invalid value for " + PROPKEY_TABLE_NAME_CASE + ": " + tableNameCase + ", expected keep, lower or upper");
+        }
+        this.defaultSchemaName = defaultSchemaName;
+        this.separator = separator;
+        this.separatorPattern = Pattern.compile(Pattern.quote(separator));
+        this.tableNameCase = tableNameCase.toLowerCase(Locale.ENGLISH);
+        this.schemaAliases = new TreeMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> entry : schemaAliases.entrySet()) {
+            this.schemaAliases.put(entry.getKey().toLowerCase(Locale.ENGLISH), entry.getValue());
+        }
+    }
+
+    /**
+     * Creates a router with the separator, table name case and schema aliases of the given configuration.
+     *
+     * @param configuration     The Unitils configuration, not null
+     * @param defaultSchemaName The schema for sheets without a schema prefix
+     * @return The router, not null
+     */
+    public static SheetNameRouter create(Properties configuration, String defaultSchemaName) {
+        Map<String, List<String>> schemaAliases = new HashMap<String, List<String>>();
+        for (String propertyName : configuration.stringPropertyNames()) {
+            if (propertyName.startsWith(PROPKEY_SCHEMA_ALIAS_PREFIX)) {
+                List<String> schemaNames = PropertyUtils.getStringList(propertyName, configuration);
+                if (!schemaNames.isEmpty()) {
+                    schemaAliases.put(propertyName.substring(PROPKEY_SCHEMA_ALIAS_PREFIX.length()), schemaNames);
+                }
+            }
+        }
+        return new SheetNameRouter(defaultSchemaName, PropertyUtils.getString(PROPKEY_SEPARATOR, DEFAULT_SEPARATOR, configuration),
+            PropertyUtils.getString(PROPKEY_TABLE_NAME_CASE, "keep", configuration), schemaAliases);
+    }
+
+    /**
+     * @param sheetName The name of the sheet, not null
+     * @return The schema and table name pairs the sheet is loaded into, at least one
+     */
+    public List<String[]> route(String sheetName) {
+        String schemaName = defaultSchemaName;
+        String tableName = sheetName;
+        String[] parts = separatorPattern.split(sheetName, 2);
+        // 分隔符在开头或结尾时不是schema前缀
+        if (parts.length == 2 && !parts[0].isEmpty() && !parts[1].isEmpty()) {
+            schemaName = parts[0];
+            tableName = parts[1];
+        }
+        tableName = applyTableNameCase(tableName);
+        List<String> schemaNames = schemaName == null ? null : schemaAliases.get(schemaName.toLowerCase(Locale.ENGLISH));
+        if (schemaNames == null) {
+            return Collections.singletonList(new String[]{schemaName, tableName});
+        }
+        List<String[]> result = new ArrayList<String[]>(schemaNames.size());
+        for (String physicalSchemaName : schemaNames) {
+            result.add(new String[]{physicalSchemaName, tableName});
+        }
+        return result;
+    }
+
+    /**
+     * @return The settings that influence the routing, used in the key of cached parse results, not null
+     */
+    public String getSignature() {
+        return defaultSchemaName + '|' + separator + '|' + tableNameCase + '|' + schemaAliases;
+    }
+
+    private String applyTableNameCase(String tableName) {
+        if ("lower".equals(tableNameCase)) {
+            return tableName.toLowerCase(Locale.ENGLISH);
+        }
+        if ("upper".equals(tableNameCase)) {
+            return tableName.toUpperCase(Locale.ENGLISH);
+        }
+        return tableName;
+    }
+}
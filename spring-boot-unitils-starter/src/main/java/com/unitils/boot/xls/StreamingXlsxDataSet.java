@@ -0,0 +1,607 @@
+package com.unitils.boot.xls;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.dbunit.dataset.*;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.unitils.core.UnitilsException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.*;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 流式读取xlsx的数据集，sheet用StAX逐行解析，向前遍历时内存占用和sheet的大小无关。
+ * 每次遍历都会重新打开文件，因此可以被CleanInsert这类先删除再插入的操作遍历多次。
+ * 行数在第一次需要时单独扫描一遍sheet并记录下来；反向遍历（例如DbUnit的DeleteOperation倒序删除）时读取表的数据、
+ * 向后读取已经读过的行和按名称获取表时，会把整个sheet读入内存并输出info日志，读完后立即关闭文件。
+ * Excel不保存空行，行号不连续时中间补上空行，和xls中的行号一致
+ * @Date:Created in 2018-07-08
+ */
+public class StreamingXlsxDataSet extends AbstractDataSet {
+
+    private static final Log logger = LogFactory.getLog(StreamingXlsxDataSet.class);
+
+    private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+    private final List<SheetRef> sheets;
+
+    public StreamingXlsxDataSet(List<SheetRef> sheets) {
+        this.sheets = sheets;
+    }
+
+    /**
+     * Lists the sheets of the workbook without parsing their content.
+     *
+     * @param file The xlsx file, not null
+     * @return The sheet names in workbook order, not null
+     */
+    public static List<String> readSheetNames(File file) {
+        OPCPackage pkg = openPackage(file);
+        try {
+            List<String> sheetNames = new ArrayList<String>();
+            XSSFReader.SheetIterator iterator = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+            while (iterator.hasNext()) {
+                iterator.next().close();
+                sheetNames.add(iterator.getSheetName());
+            }
+            return sheetNames;
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to read the sheets of " + file, e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    @Override
+    protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+        if (reversed) {
+            return new BufferedTableIterator();
+        }
+        return new SheetTableIterator();
+    }
+
+    @Override
+    public String[] getTableNames() throws DataSetException {
+        String[] tableNames = new String[sheets.size()];
+        for (int i = 0; i < tableNames.length; i++) {
+            tableNames[i] = sheets.get(i).tableName;
+        }
+        return tableNames;
+    }
+
+    @Override
+    public ITableMetaData getTableMetaData(String tableName) throws DataSetException {
+        StreamingXlsxTable table = openTable(getSheet(tableName));
+        try {
+            return table.getTableMetaData();
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Reads the whole sheet of the given table into memory, the file is closed when this method returns.
+     */
+    @Override
+    public ITable getTable(String tableName) throws DataSetException {
+        return readTable(getSheet(tableName));
+    }
+
+    private SheetRef getSheet(String tableName) throws NoSuchTableException {
+        for (SheetRef sheet : sheets) {
+            if (sheet.tableName.equalsIgnoreCase(tableName)) {
+                return sheet;
+            }
+        }
+        throw new NoSuchTableException(tableName);
+    }
+
+    /**
+     * Opens the given sheet in its own package, the package is closed together with the table.
+     */
+    static StreamingXlsxTable openTable(SheetRef sheet) throws DataSetException {
+        OPCPackage pkg = openPackage(sheet.file);
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheetIterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheetIterator.hasNext()) {
+                InputStream in = sheetIterator.next();
+                if (sheetIterator.getSheetName().equals(sheet.sheetName)) {
+                    return new StreamingXlsxTable(sheet, in, new ReadOnlySharedStringsTable(pkg), reader.getStylesTable(), pkg);
+                }
+                in.close();
+            }
+        } catch (DataSetException e) {
+            pkg.revert();
+            throw e;
+        } catch (Exception e) {
+            pkg.revert();
+            throw new DataSetException("Unable to read sheet " + sheet.sheetName + " of " + sheet.file, e);
+        }
+        pkg.revert();
+        throw new DataSetException("Sheet " + sheet.sheetName + " not found in " + sheet.file);
+    }
+
+    //单独打开sheet读取所有行
+    static ColumnarTable readTable(SheetRef sheet) throws DataSetException {
+        StreamingXlsxTable table = openTable(sheet);
+        try {
+            ColumnarTable result = table.readAll();
+            logger.info("Read all " + result.getRowCount() + " rows of sheet " + sheet.sheetName + " of " + sheet.file
+                + " into memory, streaming only supports reading the rows in order");
+            return result;
+        } finally {
+            table.close();
+        }
+    }
+
+    private static OPCPackage openPackage(File file) {
+        try {
+            return OPCPackage.open(file, PackageAccess.READ);
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to open xlsx file " + file, e);
+        }
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * A sheet of a workbook that is exposed as a table of this data set
+     */
+    public static class SheetRef {
+
+        private final File file;
+
+        private final String sheetName;
+
+        private final String tableName;
+
+        /* The number of data rows, -1 until the sheet has been counted */
+        private volatile int rowCount = -1;
+
+        public SheetRef(File file, String sheetName, String tableName) {
+            this.file = file;
+            this.sheetName = sheetName;
+            this.tableName = tableName;
+        }
+
+        int getRowCount() throws DataSetException {
+            int result = rowCount;
+            if (result < 0) {
+                StreamingXlsxTable table = openTable(this);
+                try {
+                    result = table.countRemainingRows();
+                } finally {
+                    table.close();
+                }
+                rowCount = result;
+            }
+            return result;
+        }
+    }
+
+    //反向遍历时读取数据的表完整读入内存，DbUnit会倒序读取表中的行；只读取表头时不读取数据
+    private class BufferedTableIterator implements ITableIterator {
+
+        private int index = sheets.size();
+
+        private ITable currentTable;
+
+        public boolean next() throws DataSetException {
+            currentTable = null;
+            return --index >= 0;
+        }
+
+        public ITableMetaData getTableMetaData() throws DataSetException {
+            if (currentTable != null) {
+                return currentTable.getTableMetaData();
+            }
+            StreamingXlsxTable table = openTable(getCurrentSheet());
+            try {
+                return table.getTableMetaData();
+            } finally {
+                table.close();
+            }
+        }
+
+        public ITable getTable() throws DataSetException {
+            if (currentTable == null) {
+                currentTable = readTable(getCurrentSheet());
+            }
+            return currentTable;
+        }
+
+        private SheetRef getCurrentSheet() {
+            if (index < 0 || index >= sheets.size()) {
+                throw new IllegalStateException("next() must be called first");
+            }
+            return sheets.get(index);
+        }
+    }
+
+    //按顺序打开每个文件，只返回属于本数据集的sheet
+    private class SheetTableIterator implements ITableIterator {
+
+        private int index = -1;
+
+        private File openFile;
+
+        private OPCPackage pkg;
+
+        private ReadOnlySharedStringsTable sharedStrings;
+
+        private StylesTable styles;
+
+        private XSSFReader.SheetIterator sheetIterator;
+
+        private StreamingXlsxTable currentTable;
+
+        public boolean next() throws DataSetException {
+            closeCurrentTable();
+            if (++index >= sheets.size()) {
+                closePackage();
+                return false;
+            }
+            SheetRef sheet = sheets.get(index);
+            try {
+                if (!sheet.file.equals(openFile)) {
+                    closePackage();
+                    pkg = openPackage(sheet.file);
+                    openFile = sheet.file;
+                    XSSFReader reader = new XSSFReader(pkg);
+                    sharedStrings = new ReadOnlySharedStringsTable(pkg);
+                    styles = reader.getStylesTable();
+                    sheetIterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+                }
+                while (sheetIterator.hasNext()) {
+                    InputStream in = sheetIterator.next();
+                    if (sheetIterator.getSheetName().equals(sheet.sheetName)) {
+                        currentTable = new StreamingXlsxTable(sheet, in, sharedStrings, styles, null);
+                        return true;
+                    }
+                    in.close();
+                }
+            } catch (DataSetException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new DataSetException("Unable to read sheet " + sheet.sheetName + " of " + sheet.file, e);
+            }
+            throw new DataSetException("Sheet " + sheet.sheetName + " not found in " + sheet.file);
+        }
+
+        public ITableMetaData getTableMetaData() throws DataSetException {
+            return getTable().getTableMetaData();
+        }
+
+        public ITable getTable() throws DataSetException {
+            if (currentTable == null) {
+                throw new IllegalStateException("next() must be called first");
+            }
+            return currentTable;
+        }
+
+        private void closeCurrentTable() {
+            if (currentTable != null) {
+                currentTable.close();
+                currentTable = null;
+            }
+        }
+
+        private void closePackage() {
+            if (pkg != null) {
+                pkg.revert();
+                pkg = null;
+                openFile = null;
+            }
+        }
+    }
+
+    //向前读取的表，同一时间只在内存中保留当前行；向后读取时重新打开sheet读入全部行
+    static class StreamingXlsxTable extends AbstractTable {
+
+        private final SheetRef sheet;
+
+        /* The package that is closed with this table, null if it is owned by an iterator */
+        private final OPCPackage pkg;
+
+        private final ITableMetaData metaData;
+
+        private final InputStream in;
+
+        private final XMLStreamReader reader;
+
+        private final ReadOnlySharedStringsTable sharedStrings;
+
+        private final StylesTable styles;
+
+        private final DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+
+        private int currentRow = -1;
+
+        private Object[] currentValues;
+
+        private boolean exhausted;
+
+        /* The number of the next row of the sheet returned by readRow, starting at 1 for the header */
+        private int nextRowNumber = 1;
+
+        /* A row read after a gap in the row numbers, returned when the empty rows of the gap have been returned */
+        private Object[] pendingRow;
+
+        private int pendingRowNumber;
+
+        /* All rows of the sheet, read when a row before the current row is requested */
+        private ColumnarTable bufferedTable;
+
+        StreamingXlsxTable(SheetRef sheet, InputStream in, ReadOnlySharedStringsTable sharedStrings, StylesTable styles,
+                           OPCPackage pkg) throws DataSetException {
+            this.sheet = sheet;
+            this.pkg = pkg;
+            this.in = in;
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.symbols.setDecimalSeparator('.');
+            try {
+                this.reader = xmlInputFactory.createXMLStreamReader(in);
+            } catch (XMLStreamException e) {
+                throw new DataSetException("Unable to parse sheet " + sheet.tableName, e);
+            }
+            this.metaData = createMetaData(sheet.tableName, readRow());
+        }
+
+        public ITableMetaData getTableMetaData() {
+            return metaData;
+        }
+
+        public int getRowCount() {
+            if (bufferedTable != null) {
+                return bufferedTable.getRowCount();
+            }
+            try {
+                return sheet.getRowCount();
+            } catch (DataSetException e) {
+                throw new UnitilsException("Unable to count the rows of sheet " + sheet.sheetName + " of " + sheet.file, e);
+            }
+        }
+
+        public Object getValue(int row, String column) throws DataSetException {
+            if (bufferedTable == null && row < currentRow) {
+                bufferedTable = readTable(sheet);
+                close();
+            }
+            if (bufferedTable != null) {
+                return bufferedTable.getValue(row, column);
+            }
+            while (currentRow < row) {
+                currentValues = exhausted ? null : readRow();
+                if (currentValues == null) {
+                    exhausted = true;
+                    throw new RowOutOfBoundsException(row + " > " + currentRow);
+                }
+                currentRow++;
+            }
+            int columnIndex = getColumnIndex(column);
+            return columnIndex < currentValues.length ? ColumnarTable.normalize(currentValues[columnIndex]) : null;
+        }
+
+        void close() {
+            try {
+                reader.close();
+                in.close();
+            } catch (Exception e) {
+                // ignore, the stream is read only
+            }
+            if (pkg != null) {
+                pkg.revert();
+            }
+        }
+
+        //读取剩余的所有行，计数时不保留单元格的值
+        int countRemainingRows() throws DataSetException {
+            int count = 0;
+            while (readRow() != null) {
+                count++;
+            }
+            return count;
+        }
+
+        ColumnarTable readAll() throws DataSetException {
+            List<Object[]> rows = new ArrayList<Object[]>();
+            Object[] row;
+            while ((row = readRow()) != null) {
+                rows.add(row);
+            }
+            Column[] columns = metaData.getColumns();
+            Object[][] values = new Object[columns.length][rows.size()];
+            for (int r = 0; r < rows.size(); r++) {
+                Object[] rowValues = rows.get(r);
+                for (int c = 0; c < columns.length && c < rowValues.length; c++) {
+                    values[c][r] = rowValues[c];
+                }
+            }
+            sheet.rowCount = rows.size();
+            return new ColumnarTable(metaData, values, rows.size());
+        }
+
+        private static ITableMetaData createMetaData(String tableName, Object[] header) {
+            List<Column> columns = new ArrayList<Column>();
+            if (header != null) {
+                for (Object value : header) {
+                    String columnName = value == null ? null : value.toString().trim();
+                    if (StringUtils.isEmpty(columnName)) {
+                        break;
+                    }
+                    columns.add(new Column(columnName, DataType.UNKNOWN));
+                }
+            }
+            return new DefaultTableMetaData(tableName, columns.toArray(new Column[columns.size()]));
+        }
+
+        //读取下一行，没有更多行时返回null。Excel省略的空行按row元素的r属性补上
+        private Object[] readRow() throws DataSetException {
+            if (pendingRow != null) {
+                if (nextRowNumber++ < pendingRowNumber) {
+                    return new Object[0];
+                }
+                Object[] row = pendingRow;
+                pendingRow = null;
+                return row;
+            }
+            try {
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT && "row".equals(reader.getLocalName())) {
+                        String ref = reader.getAttributeValue(null, "r");
+                        int rowNumber = ref == null ? nextRowNumber : Integer.parseInt(ref);
+                        Object[] row = readCells();
+                        if (rowNumber < nextRowNumber) {
+                            throw new DataSetException("Row " + rowNumber + " of sheet " + tableName() + " is out of order");
+                        }
+                        if (rowNumber > nextRowNumber++) {
+                            pendingRow = row;
+                            pendingRowNumber = rowNumber;
+                            return new Object[0];
+                        }
+                        return row;
+                    }
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                throw new DataSetException("Unable to parse sheet " + tableName(), e);
+            }
+        }
+
+        private Object[] readCells() throws XMLStreamException, DataSetException {
+            List<Object> values = new ArrayList<Object>();
+            int nextIndex = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "row".equals(reader.getLocalName())) {
+                    break;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT || !"c".equals(reader.getLocalName())) {
+                    continue;
+                }
+                String ref = reader.getAttributeValue(null, "r");
+                int index = ref == null ? nextIndex : columnIndex(ref);
+                String type = reader.getAttributeValue(null, "t");
+                String style = reader.getAttributeValue(null, "s");
+                Object value = readCellValue(type, style, ref);
+                while (values.size() <= index) {
+                    values.add(null);
+                }
+                values.set(index, value);
+                nextIndex = index + 1;
+            }
+            return values.toArray();
+        }
+
+        private Object readCellValue(String type, String style, String ref) throws XMLStreamException, DataSetException {
+            String text = null;
+            StringBuilder inlineText = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "c".equals(reader.getLocalName())) {
+                    break;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if ("v".equals(reader.getLocalName())) {
+                    text = reader.getElementText();
+                } else if ("t".equals(reader.getLocalName())) {
+                    if (inlineText == null) {
+                        inlineText = new StringBuilder();
+                    }
+                    inlineText.append(reader.getElementText());
+                }
+            }
+            if ("inlineStr".equals(type)) {
+                return inlineText == null ? null : inlineText.toString();
+            }
+            if (text == null) {
+                return null;
+            }
+            if ("s".equals(type)) {
+                return sharedStrings.getEntryAt(Integer.parseInt(text));
+            }
+            if ("str".equals(type)) {
+                return text;
+            }
+            if ("b".equals(type)) {
+                return "1".equals(text) ? Boolean.TRUE : Boolean.FALSE;
+            }
+            if ("e".equals(type)) {
+                throw new DataTypeException("Error at cell " + ref + " of sheet " + tableName());
+            }
+            return getNumericValue(Double.parseDouble(text), style);
+        }
+
+        //与DbUnit的XlsTable保持一致：日期格式转换成毫秒数，其他数字转换成BigDecimal
+        private Object getNumericValue(double value, String style) {
+            String formatString = null;
+            if (style != null && styles != null) {
+                XSSFCellStyle cellStyle = styles.getStyleAt(Integer.parseInt(style));
+                formatString = cellStyle.getDataFormatString();
+                if (DateUtil.isADateFormat(cellStyle.getDataFormat(), formatString)) {
+                    return DateUtil.getJavaDate(value).getTime();
+                }
+                if ("####################".equals(formatString)) {
+                    return new BigDecimal(String.valueOf(value)).longValue();
+                }
+            }
+            if (formatString != null && !formatString.equals("General") && !formatString.equals("@")) {
+                try {
+                    return new BigDecimal(new DecimalFormat(formatString, symbols).format(value));
+                } catch (RuntimeException e) {
+                    // not a numeric format, use the raw value
+                }
+            }
+            String valueString = String.valueOf(value);
+            if (valueString.endsWith(".0")) {
+                valueString = valueString.substring(0, valueString.length() - 2);
+            }
+            return new BigDecimal(valueString);
+        }
+
+        private String tableName() {
+            return metaData == null ? "" : metaData.getTableName();
+        }
+
+        private static int columnIndex(String ref) {
+            int index = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                index = index * 26 + (c - 'A' + 1);
+            }
+            return index - 1;
+        }
+    }
+}
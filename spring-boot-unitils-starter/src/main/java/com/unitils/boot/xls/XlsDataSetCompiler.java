@@ -0,0 +1,96 @@
+package com.unitils.boot.xls;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.dataset.excel.XlsDataSet;
+import org.unitils.core.UnitilsException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 把目录下所有的xls数据集编译成二进制格式，在构建时执行，例如在测试工程的pom中配置：
+ * <pre>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *     &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;id&gt;compile-xls-datasets&lt;/id&gt;
+ *             &lt;phase&gt;process-test-classes&lt;/phase&gt;
+ *             &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *             &lt;configuration&gt;
+ *                 &lt;mainClass&gt;com.unitils.boot.xls.XlsDataSetCompiler&lt;/mainClass&gt;
+ *                 &lt;classpathScope&gt;test&lt;/classpathScope&gt;
+ *                 &lt;arguments&gt;&lt;argument&gt;${project.build.testOutputDirectory}&lt;/argument&gt;&lt;/arguments&gt;
+ *             &lt;/configuration&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * @Date:Created in 2018-07-08
+ */
+public class XlsDataSetCompiler {
+
+    private static final Log logger = LogFactory.getLog(XlsDataSetCompiler.class);
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: XlsDataSetCompiler <directory>...");
+        }
+        XlsDataSetCompiler compiler = new XlsDataSetCompiler();
+        int compiled = 0;
+        for (String arg : args) {
+            compiled += compiler.compileDirectory(new File(arg));
+        }
+        logger.info("Compiled " + compiled + " xls data set(s)");
+    }
+
+    /**
+     * Compiles all xls files in the given directory and its sub directories. Files that are already up to date
+     * are skipped.
+     *
+     * @param directory The directory, not null
+     * @return The number of files that were compiled
+     */
+    public int compileDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int compiled = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                compiled += compileDirectory(file);
+            } else if (file.getName().endsWith(".xls") && compile(file)) {
+                compiled++;
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * @param xlsFile The xls file, not null
+     * @return False if the compiled file was already up to date
+     */
+    public boolean compile(File xlsFile) {
+        File compiledFile = CompiledDataSet.getCompiledFile(xlsFile);
+        if (CompiledDataSet.isUpToDate(compiledFile, xlsFile)) {
+            return false;
+        }
+        try {
+            InputStream in = new FileInputStream(xlsFile);
+            try {
+                CompiledDataSet.write(new XlsDataSet(in), xlsFile, compiledFile);
+            } finally {
+                in.close();
+            }
+            logger.debug("Compiled " + xlsFile + " to " + compiledFile);
+            return true;
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to compile xls data set " + xlsFile, e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.unitils.boot.autoconfigure;
+
+import com.unitils.boot.util.PhaseTimer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class StartupPhaseListenerTest {
+
+    private boolean enabled;
+
+    @Before
+    public void setUp() {
+        enabled = PhaseTimer.isEnabled();
+        PhaseTimer.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        PhaseTimer.setEnabled(enabled);
+    }
+
+    @Test
+    public void springBoot2Phases() {
+        StartupPhaseListener listener = new StartupPhaseListener(new SpringApplication(StartupPhaseListenerTest.class), new String[0]);
+        listener.starting();
+        listener.environmentPrepared(null);
+        listener.contextPrepared(null);
+        listener.contextLoaded(null);
+        listener.started(null);
+        listener.running(null);
+        Assert.assertEquals(Arrays.asList("environment", "contextPrepared", "sourcesLoaded", "refresh", "runners"), getLastPhases());
+    }
+
+    @Test
+    public void springBoot15Phases() {
+        // Spring Boot 1.5启动结束时只调用finished
+        StartupPhaseListener listener = new StartupPhaseListener(new SpringApplication(StartupPhaseListenerTest.class), new String[0]);
+        listener.starting();
+        listener.environmentPrepared(null);
+        listener.contextPrepared(null);
+        listener.contextLoaded(null);
+        listener.finished(null, null);
+        Assert.assertEquals(Arrays.asList("environment", "contextPrepared", "sourcesLoaded", "refreshAndRunners"), getLastPhases());
+    }
+
+    @Test
+    public void failedStartupIsNotRecorded() {
+        StartupPhaseListener listener = new StartupPhaseListener(new SpringApplication(StartupPhaseListenerTest.class), new String[0]);
+        int startups = StartupPhaseListener.getStartups().size();
+        listener.starting();
+        listener.finished(null, new IllegalStateException());
+        Assert.assertEquals(startups, StartupPhaseListener.getStartups().size());
+    }
+
+    @Test
+    public void loadTimeOfContext() throws Exception {
+        PhaseTimer.setEnabled(false);
+        GenericApplicationContext context = new GenericApplicationContext();
+        StartupPhaseListener listener = new StartupPhaseListener(new SpringApplication(StartupPhaseListenerTest.class), new String[0]);
+        listener.starting();
+        Thread.sleep(20);
+        listener.started(context);
+        // 启动耗时总是记录，不依赖PhaseTimer
+        Assert.assertTrue(StartupPhaseListener.getLoadTime(context) >= 20);
+        Assert.assertNull(StartupPhaseListener.getLoadTime(new GenericApplicationContext()));
+    }
+
+    @Test
+    public void applicationNameFromSources() {
+        // 测试中推断出的主类是surefire的启动类，使用配置类的名称
+        SpringApplication application = new SpringApplication(StartupPhaseListenerTest.class);
+        application.setMainApplicationClass(String.class);
+        Assert.assertEquals("StartupPhaseListenerTest", new StartupPhaseListener(application, new String[0]).getApplicationName());
+    }
+
+    @Test
+    public void applicationNameWithoutSources() {
+        SpringApplication application = new SpringApplication();
+        application.setMainApplicationClass(StartupPhaseListenerTest.class);
+        Assert.assertEquals("StartupPhaseListenerTest", new StartupPhaseListener(application, new String[0]).getApplicationName());
+    }
+
+    @Test
+    public void notRecordedWithoutPhaseTimer() {
+        PhaseTimer.setEnabled(false);
+        StartupPhaseListener listener = new StartupPhaseListener(new SpringApplication(StartupPhaseListenerTest.class), new String[0]);
+        int startups = StartupPhaseListener.getStartups().size();
+        listener.starting();
+        listener.started(null);
+        listener.running(null);
+        Assert.assertEquals(startups, StartupPhaseListener.getStartups().size());
+    }
+
+    private List<String> getLastPhases() {
+        List<Map<String, Long>> startups = StartupPhaseListener.getStartups();
+        return Arrays.asList(startups.get(startups.size() - 1).keySet().toArray(new String[0]));
+    }
+}
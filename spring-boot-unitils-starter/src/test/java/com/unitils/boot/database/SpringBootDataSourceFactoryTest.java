@@ -0,0 +1,110 @@
+package com.unitils.boot.database;
+
+import com.unitils.boot.SpringBootModule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ContextConfiguration;
+import org.unitils.core.TestContext;
+import org.unitils.core.Unitils;
+import org.unitils.database.config.DatabaseConfiguration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+
+public class SpringBootDataSourceFactoryTest {
+
+    private GenericApplicationContext contextA;
+
+    private GenericApplicationContext contextB;
+
+    private DataSource dataSource;
+
+    @Before
+    public void setUp() {
+        contextA = createContext();
+        contextB = createContext();
+        SpringBootDataSourceFactory.registerApplicationDataSource(contextA, new DriverManagerDataSource("jdbc:h2:mem:context_a", "sa", ""));
+        SpringBootDataSourceFactory.registerApplicationDataSource(contextB, new DriverManagerDataSource("jdbc:h2:mem:context_b", "sa", ""));
+
+        SpringBootDataSourceFactory factory = new SpringBootDataSourceFactory();
+        factory.init(new DatabaseConfiguration("", "h2", "org.h2.Driver", "jdbc:h2:mem:properties", "sa", "", "PUBLIC",
+            Collections.singletonList("PUBLIC"), true, true));
+        dataSource = factory.createDataSource();
+    }
+
+    @After
+    public void tearDown() {
+        SpringBootDataSourceFactory.unregisterApplicationDataSource(contextA);
+        SpringBootDataSourceFactory.unregisterApplicationDataSource(contextB);
+        contextA.close();
+        contextB.close();
+    }
+
+    @Test
+    public void usesContextOfCurrentTest() throws Exception {
+        runAsContextATest(new Runnable() {
+            public void run() {
+                Assert.assertEquals("jdbc:h2:mem:context_a", getUrl());
+            }
+        });
+    }
+
+    // 没有当前测试的context时不使用其他context的连接池
+    @Test
+    public void usesPropertiesDataSourceWithoutCurrentContext() throws Exception {
+        Assert.assertEquals("jdbc:h2:mem:properties", getUrl());
+    }
+
+    @Test
+    public void closedContextIsRemoved() throws Exception {
+        runAsContextATest(new Runnable() {
+            public void run() {
+                SpringBootDataSourceFactory.unregisterApplicationDataSource(contextA);
+                Assert.assertEquals("jdbc:h2:mem:properties", getUrl());
+            }
+        });
+    }
+
+    private void runAsContextATest(Runnable test) {
+        SpringBootModule springBootModule = Unitils.getInstance().getModulesRepository().getModuleOfType(SpringBootModule.class);
+        springBootModule.registerApplicationContext(ContextATest.class, contextA);
+        TestContext testContext = Unitils.getInstance().getTestContext();
+        Class<?> testClass = testContext.getTestClass();
+        testContext.setTestClass(ContextATest.class);
+        try {
+            test.run();
+        } finally {
+            testContext.setTestClass(testClass);
+            springBootModule.invalidateApplicationContext(ContextATest.class);
+        }
+    }
+
+    private String getUrl() {
+        try {
+            Connection connection = dataSource.getConnection();
+            try {
+                return connection.getMetaData().getURL();
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private GenericApplicationContext createContext() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+        return context;
+    }
+
+    @ContextConfiguration
+    private static class ContextATest {
+    }
+}
@@ -0,0 +1,97 @@
+package com.unitils.boot.database;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.unitils.core.ConfigurationLoader;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+public class WorkerSchemaModuleTest {
+
+    private static final String URL = "jdbc:h2:mem:worker_schema_test;DB_CLOSE_DELAY=-1";
+
+    @Test
+    public void createsSchemaOfWorker() throws Exception {
+        Properties configuration = createConfiguration();
+        new WorkerSchemaModule().init(configuration);
+
+        Assert.assertEquals("TEST_w3", configuration.getProperty(WorkerSchemaModule.PROPKEY_DATABASE_SCHEMA_NAMES));
+        Assert.assertEquals(URL + ";SCHEMA=TEST_w3", configuration.getProperty(WorkerSchemaModule.PROPKEY_DATABASE_URL));
+        // DDL脚本中的两张表和标记表
+        Assert.assertEquals(3, countTables("TEST_W3"));
+    }
+
+    @Test
+    public void reusesExistingSchema() throws Exception {
+        new WorkerSchemaModule().init(createConfiguration());
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            connection.createStatement().execute("insert into TEST_W3.t_user (id, name) values (1, 'zhangsan')");
+        } finally {
+            connection.close();
+        }
+        new WorkerSchemaModule().init(createConfiguration());
+        Assert.assertEquals(1, queryInt("select count(*) from TEST_W3.t_user"));
+    }
+
+    @Test
+    public void recreatesSchemaWhenDdlChanged() throws Exception {
+        new WorkerSchemaModule().init(createConfiguration());
+        execute("insert into TEST_W3.t_user (id, name) values (2, 'lisi')");
+        // 模拟用旧版本的DDL脚本创建的schema
+        execute("update TEST_W3." + DdlScripts.MARKER_TABLE_NAME + " set ddl_hash = 'old'");
+        new WorkerSchemaModule().init(createConfiguration());
+        Assert.assertEquals(0, queryInt("select count(*) from TEST_W3.t_user"));
+        Assert.assertEquals(3, countTables("TEST_W3"));
+    }
+
+    @Test
+    public void recreatesSchemaWithoutMarker() throws Exception {
+        new WorkerSchemaModule().init(createConfiguration());
+        execute("drop table TEST_W3." + DdlScripts.MARKER_TABLE_NAME);
+        execute("create table TEST_W3.t_obsolete (id int)");
+        new WorkerSchemaModule().init(createConfiguration());
+        Assert.assertEquals(0, queryInt("select count(*) from INFORMATION_SCHEMA.TABLES where TABLE_SCHEMA = 'TEST_W3' and TABLE_NAME = 'T_OBSOLETE'"));
+        Assert.assertEquals(3, countTables("TEST_W3"));
+    }
+
+    private void execute(String sql) throws Exception {
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            connection.createStatement().execute(sql);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private Properties createConfiguration() {
+        Properties configuration = new ConfigurationLoader().loadConfiguration();
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_DRIVER_CLASS_NAME, "org.h2.Driver");
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_URL, URL);
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_USER_NAME, "sa");
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_PASSWORD, "");
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_SCHEMA_NAMES, "TEST");
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DATABASE_DIALECT, "h2");
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_WORKER_ID, "3");
+        configuration.setProperty(WorkerSchemaModule.PROPKEY_DDL_SCRIPTS, "test.ddl");
+        return configuration;
+    }
+
+    private int countTables(String schemaName) throws Exception {
+        return queryInt("select count(*) from INFORMATION_SCHEMA.TABLES where TABLE_SCHEMA = '" + schemaName + "'");
+    }
+
+    private int queryInt(String sql) throws Exception {
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            ResultSet resultSet = connection.createStatement().executeQuery(sql);
+            resultSet.next();
+            return resultSet.getInt(1);
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+public class BatchInserterTest {
+
+    private Connection connection;
+
+    private DatabaseConnection databaseConnection;
+
+    @Before
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:batch", "sa", "");
+        Statement statement = connection.createStatement();
+        statement.execute("create table t_user (id int primary key, name varchar(20), age int)");
+        statement.execute("create table t_role (id int primary key, user_id int)");
+        statement.close();
+        databaseConnection = new DatabaseConnection(connection, "PUBLIC");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.createStatement().execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void test_insert_jdbcBatch() throws Exception {
+        BatchInserter inserter = new BatchInserter(databaseConnection, 2, false);
+        Assert.assertEquals(5, inserter.insert(createUsers(5)));
+        assertUsers(5);
+    }
+
+    @Test
+    public void test_insert_multiRow() throws Exception {
+        BatchInserter inserter = new BatchInserter(databaseConnection, 2, true);
+        Assert.assertEquals(5, inserter.insert(createUsers(5)));
+        assertUsers(5);
+    }
+
+    @Test
+    public void test_insert_empty() throws Exception {
+        BatchInserter inserter = new BatchInserter(databaseConnection, 2, true);
+        Assert.assertEquals(0, inserter.insert(createUsers(0)));
+        Assert.assertEquals(0, count("t_user"));
+    }
+
+    @Test
+    public void test_insert_columnSubset() throws Exception {
+        DefaultTable table = new DefaultTable("T_USER", new Column[]{new Column("ID", DataType.UNKNOWN)});
+        table.addRow(new Object[]{"7"});
+        new BatchInserter(databaseConnection, 10, false).insert(table);
+
+        ResultSet resultSet = connection.createStatement().executeQuery("select id, name from t_user");
+        Assert.assertTrue(resultSet.next());
+        Assert.assertEquals(7, resultSet.getInt(1));
+        Assert.assertNull(resultSet.getString(2));
+    }
+
+    @Test
+    public void test_deleteAll() throws Exception {
+        BatchInserter inserter = new BatchInserter(databaseConnection, 10, false);
+        inserter.insert(createUsers(3));
+        connection.createStatement().execute("insert into t_role values (1, 1)");
+
+        inserter.deleteAll(Arrays.asList("T_USER", "T_ROLE"));
+        Assert.assertEquals(0, count("t_user"));
+        Assert.assertEquals(0, count("t_role"));
+    }
+
+    @Test
+    public void test_getQualifiedTableName() throws Exception {
+        BatchInserter inserter = new BatchInserter(databaseConnection, 10, false);
+        Assert.assertEquals("PUBLIC.T_USER", inserter.getQualifiedTableName("t_user"));
+        Assert.assertEquals(Arrays.asList("ID"), inserter.getPrimaryKeyNames("T_USER"));
+    }
+
+    private DefaultTable createUsers(int rowCount) throws Exception {
+        DefaultTable table = new DefaultTable("T_USER", new Column[]{
+            new Column("ID", DataType.UNKNOWN), new Column("NAME", DataType.UNKNOWN), new Column("AGE", DataType.UNKNOWN)});
+        for (int i = 1; i <= rowCount; i++) {
+            table.addRow(new Object[]{String.valueOf(i), "user" + i, i % 2 == 0 ? null : "20"});
+        }
+        return table;
+    }
+
+    private void assertUsers(int rowCount) throws Exception {
+        ResultSet resultSet = connection.createStatement().executeQuery("select id, name, age from t_user order by id");
+        for (int i = 1; i <= rowCount; i++) {
+            Assert.assertTrue(resultSet.next());
+            Assert.assertEquals(i, resultSet.getInt(1));
+            Assert.assertEquals("user" + i, resultSet.getString(2));
+            Assert.assertEquals(i % 2 == 0 ? null : Integer.valueOf(20), resultSet.getObject(3));
+        }
+        Assert.assertFalse(resultSet.next());
+    }
+
+    private int count(String tableName) throws Exception {
+        ResultSet resultSet = connection.createStatement().executeQuery("select count(*) from " + tableName);
+        resultSet.next();
+        return resultSet.getInt(1);
+    }
+}
@@ -0,0 +1,63 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import com.unitils.boot.xls.ColumnarTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+public class DataSetFingerprintsTest {
+
+    @Test
+    public void test_calculate_sameContent() throws Exception {
+        DataSetFingerprints.Fingerprint fingerprint = DataSetFingerprints.calculate(createTable("1", "zhangsan"));
+        Assert.assertEquals(fingerprint, DataSetFingerprints.calculate(createTable("1", "zhangsan")));
+        Assert.assertEquals(fingerprint.hashCode(), DataSetFingerprints.calculate(createTable("1", "zhangsan")).hashCode());
+        Assert.assertEquals(1, fingerprint.getRowCount());
+        Assert.assertEquals(32, fingerprint.getHash().length());
+    }
+
+    @Test
+    public void test_calculate_differentContent() throws Exception {
+        DataSetFingerprints.Fingerprint fingerprint = DataSetFingerprints.calculate(createTable("1", "zhangsan"));
+        Assert.assertNotEquals(fingerprint, DataSetFingerprints.calculate(createTable("1", "lisi")));
+        Assert.assertNotEquals(fingerprint, DataSetFingerprints.calculate(createTable("1", null)));
+        // 值的类型不同时指纹不同
+        Assert.assertNotEquals(fingerprint, DataSetFingerprints.calculate(createTable(new BigDecimal("1"), "zhangsan")));
+        // 列之间的边界是指纹的一部分
+        Assert.assertNotEquals(DataSetFingerprints.calculate(createTable("1a", "b")), DataSetFingerprints.calculate(createTable("1", "ab")));
+    }
+
+    @Test
+    public void test_getFingerprint_immutableTableOnce() throws Exception {
+        DataSetFingerprints fingerprints = new DataSetFingerprints();
+        ColumnarTable table = ColumnarTable.copyOf("t_user", createTable("1", "zhangsan"));
+        DataSetFingerprints.Fingerprint fingerprint = fingerprints.getFingerprint(table);
+        Assert.assertSame(fingerprint, fingerprints.getFingerprint(table));
+        Assert.assertEquals(DataSetFingerprints.calculate(table), fingerprint);
+
+        // 可以继续添加行的表每次重新计算
+        DefaultTable defaultTable = createTable("1", "zhangsan");
+        DataSetFingerprints.Fingerprint defaultFingerprint = fingerprints.getFingerprint(defaultTable);
+        defaultTable.addRow(new Object[]{"2", "lisi"});
+        Assert.assertNotEquals(defaultFingerprint, fingerprints.getFingerprint(defaultTable));
+    }
+
+    @Test
+    public void test_invalidateAll() throws Exception {
+        DataSetFingerprints fingerprints = new DataSetFingerprints();
+        fingerprints.put("db.PUBLIC.t_user", DataSetFingerprints.calculate(createTable("1", "zhangsan")));
+        Assert.assertNotNull(fingerprints.get("db.PUBLIC.t_user"));
+        fingerprints.invalidateAll();
+        Assert.assertNull(fingerprints.get("db.PUBLIC.t_user"));
+    }
+
+    private DefaultTable createTable(Object id, Object name) throws Exception {
+        DefaultTable table = new DefaultTable("t_user", new Column[]{new Column("id", DataType.UNKNOWN), new Column("name", DataType.UNKNOWN)});
+        table.addRow(new Object[]{id, name});
+        return table;
+    }
+}
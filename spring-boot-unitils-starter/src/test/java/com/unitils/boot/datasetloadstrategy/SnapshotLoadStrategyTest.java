@@ -0,0 +1,61 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.unitils.UnitilsJUnit4TestClassRunner;
+import org.unitils.database.annotations.TestDataSource;
+import org.unitils.dbunit.annotation.DataSet;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(UnitilsJUnit4TestClassRunner.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+@DataSet(value = "users.xls", loadStrategy = SnapshotLoadStrategy.class)
+public class SnapshotLoadStrategyTest {
+
+    @TestDataSource
+    private DataSource dataSource;
+
+    @Test
+    public void test1_restore() throws Exception {
+        Assert.assertEquals(3, queryInt("select count(*) from t_user"));
+        getConnection().createStatement().execute("delete from t_user where id = 1");
+    }
+
+    @Test
+    public void test2_restoreAfterRollback() throws Exception {
+        Assert.assertEquals(3, queryInt("select count(*) from t_user"));
+        Assert.assertEquals(1, queryInt("select count(*) from t_user where age is null"));
+    }
+
+    @Test
+    public void test3_snapshotTableName() throws Exception {
+        // 快照表名包含JVM的标识：ut_snap_<jvm>_<hash>_<index>
+        List<String> tableNames = new ArrayList<String>();
+        ResultSet resultSet = getConnection().createStatement().executeQuery(
+            "select TABLE_NAME from INFORMATION_SCHEMA.TABLES where lower(TABLE_NAME) like 'ut_snap_%'");
+        while (resultSet.next()) {
+            tableNames.add(resultSet.getString(1));
+        }
+        Assert.assertEquals(1, tableNames.size());
+        Assert.assertTrue(tableNames.get(0), tableNames.get(0).toLowerCase().matches("ut_snap_[0-9a-z]+_[0-9a-f]{8}_0"));
+    }
+
+    private Connection getConnection() {
+        return DataSourceUtils.getConnection(dataSource);
+    }
+
+    private int queryInt(String sql) throws Exception {
+        ResultSet resultSet = getConnection().createStatement().executeQuery(sql);
+        resultSet.next();
+        return resultSet.getInt(1);
+    }
+}
@@ -0,0 +1,77 @@
+package com.unitils.boot.datasetloadstrategy;
+
+import com.unitils.boot.util.HarnessEvents;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.unitils.UnitilsJUnit4TestClassRunner;
+import org.unitils.dbunit.annotation.DataSet;
+
+import java.util.Properties;
+
+@RunWith(UnitilsJUnit4TestClassRunner.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TableLoadedEventTest {
+
+    private static final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeClass
+    public static void enableEvents() {
+        Properties configuration = new Properties();
+        configuration.setProperty(HarnessEvents.PROPKEY_ENABLED, "true");
+        configuration.setProperty(HarnessEvents.PROPKEY_JFR_ENABLED, "false");
+        HarnessEvents.init(configuration);
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterClass
+    public static void disableEvents() {
+        Metrics.removeRegistry(registry);
+        HarnessEvents.init(new Properties());
+    }
+
+    @Test
+    @DataSet("users.xls")
+    public void test1_defaultStrategy() {
+        assertLoaded(1);
+    }
+
+    @Test
+    @DataSet(value = "users.xls", loadStrategy = BatchCleanInsertLoadStrategy.class)
+    public void test2_batchStrategy() {
+        assertLoaded(2);
+    }
+
+    @Test
+    @DataSet(value = "users.xls", loadStrategy = FingerprintCleanInsertLoadStrategy.class)
+    public void test3_fingerprintStrategy() {
+        assertLoaded(3);
+    }
+
+    // 数据集没有变化，跳过加载时不记录
+    @Test
+    @DataSet(value = "users.xls", loadStrategy = FingerprintCleanInsertLoadStrategy.class)
+    public void test4_fingerprintStrategyUnchanged() {
+        assertLoaded(3);
+    }
+
+    @Test
+    @DataSet(value = "users.xls", loadStrategy = SnapshotLoadStrategy.class)
+    public void test5_snapshotStrategy() {
+        assertLoaded(4);
+    }
+
+    private void assertLoaded(long count) {
+        Timer timer = registry.find("unitils.table.load").tags("table", "t_user").timer();
+        Assert.assertNotNull(registry.getMeters().toString(), timer);
+        Assert.assertEquals(count, timer.count());
+        Assert.assertEquals(3 * count, (long) registry.find("unitils.table.rows").tags("table", "t_user").summary().totalAmount());
+    }
+}
@@ -0,0 +1,112 @@
+package com.unitils.boot.dbunit;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.unitils.UnitilsJUnit4TestClassRunner;
+import org.unitils.database.annotations.TestDataSource;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+
+import javax.sql.DataSource;
+import java.sql.Statement;
+
+@RunWith(UnitilsJUnit4TestClassRunner.class)
+public class HashExpectedDataSetAssertTest {
+
+    private static final Column[] COLUMNS = {new Column("id", DataType.UNKNOWN), new Column("name", DataType.UNKNOWN)};
+
+    @TestDataSource
+    private DataSource dataSource;
+
+    private final HashExpectedDataSetAssert expectedDataSetAssert = new HashExpectedDataSetAssert();
+
+    @Before
+    public void setUp() throws Exception {
+        Statement statement = DataSourceUtils.getConnection(dataSource).createStatement();
+        statement.execute("delete from t_user");
+        statement.execute("insert into t_user (id, name) values (1, 'a'), (2, 'a')");
+    }
+
+    @Test
+    public void test_wildcards() throws Exception {
+        assertEqual(users(new Object[]{"1", null}, new Object[]{null, "a"}));
+    }
+
+    @Test
+    public void test_wildcardsReassigned() throws Exception {
+        // (1, a)先匹配(*, a)，(2, a)只能匹配(*, a)，需要把(1, a)换到(1, *)
+        assertEqual(users(new Object[]{null, "a"}, new Object[]{"1", null}));
+    }
+
+    @Test
+    public void test_wildcardsMissingRow() throws Exception {
+        // 两个实际行最多匹配三个期望行中的两个
+        String differences = assertDifferent(users(new Object[]{null, "a"}, new Object[]{"1", null}, new Object[]{null, "a"}));
+        Assert.assertTrue(differences, differences.contains("Missing row"));
+        Assert.assertFalse(differences, differences.contains("Different row"));
+    }
+
+    @Test
+    public void test_caseSensitive() throws Exception {
+        String differences = assertDifferent(users(new Object[]{"1", "A"}));
+        Assert.assertTrue(differences, differences.contains("name: \"A\" <-> \"a\""));
+        Assert.assertFalse(differences, differences.contains("id:"));
+    }
+
+    @Test
+    public void test_duplicateRows() throws Exception {
+        String differences = assertDifferent(users(new Object[]{"1", "a"}, new Object[]{"1", "a"}));
+        Assert.assertTrue(differences, differences.contains("expected 2 times, found 1 times"));
+    }
+
+    @Test
+    public void test_manyWildcardRows() throws Exception {
+        // 第k行的name和第k-1行相同或age和第k-1行相同，最后一行要把前面所有的行依次换到另一个期望行
+        int rowCount = 5000;
+        Statement statement = DataSourceUtils.getConnection(dataSource).createStatement();
+        statement.execute("delete from t_user");
+        for (int k = 1; k <= rowCount; k++) {
+            statement.addBatch("insert into t_user (id, name, age) values (" + k + ", 'n" + (k + 1) / 2 + "', " + (k / 2 + 1) + ")");
+        }
+        statement.executeBatch();
+
+        DefaultTable table = new DefaultTable("t_user", new Column[]{new Column("id", DataType.UNKNOWN), new Column("name", DataType.UNKNOWN),
+            new Column("age", DataType.UNKNOWN)});
+        for (int j = 1; j <= rowCount / 2; j++) {
+            table.addRow(new Object[]{null, "n" + j, null});
+        }
+        for (int j = 1; j <= rowCount / 2; j++) {
+            table.addRow(new Object[]{null, null, String.valueOf(j)});
+        }
+        assertEqual(new DefaultDataSet(table));
+    }
+
+    private void assertEqual(IDataSet expectedDataSet) {
+        expectedDataSetAssert.assertEqualDataSets("PUBLIC", expectedDataSet, new DbUnitDatabaseConnection(dataSource, "PUBLIC"));
+    }
+
+    private String assertDifferent(IDataSet expectedDataSet) {
+        try {
+            assertEqual(expectedDataSet);
+        } catch (AssertionError e) {
+            return e.getMessage();
+        }
+        Assert.fail("Expected differences");
+        return null;
+    }
+
+    private IDataSet users(Object[]... rows) throws Exception {
+        DefaultTable table = new DefaultTable("t_user", COLUMNS);
+        for (Object[] row : rows) {
+            table.addRow(row);
+        }
+        return new DefaultDataSet(table);
+    }
+}
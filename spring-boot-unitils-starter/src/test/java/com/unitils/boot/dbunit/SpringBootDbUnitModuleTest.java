@@ -0,0 +1,37 @@
+package com.unitils.boot.dbunit;
+
+import com.unitils.boot.datasetloadstrategy.TableLoadedEventTest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.unitils.dbmaintainer.locator.resourcepickingstrategie.ResourcePickingStrategie;
+import org.unitils.dbmaintainer.locator.resourcepickingstrategie.impl.UniqueMostRecentPickingStrategie;
+
+import java.io.File;
+
+public class SpringBootDbUnitModuleTest {
+
+    private final SpringBootDbUnitModule module = new SpringBootDbUnitModule();
+
+    private final ResourcePickingStrategie resourcePickingStrategie = new UniqueMostRecentPickingStrategie();
+
+    @Test
+    public void test_locateDataSetFile_packageRelative() throws Exception {
+        // 相对名称先在测试类的包中查找，得到classpath中的文件而不是每次不同的临时文件
+        File file = module.locateDataSetFile("users.xls", resourcePickingStrategie, TableLoadedEventTest.class);
+        Assert.assertNotNull(file);
+        Assert.assertEquals(new File(TableLoadedEventTest.class.getResource("users.xls").toURI()), file);
+        Assert.assertEquals(file, module.locateDataSetFile("users.xls", resourcePickingStrategie, TableLoadedEventTest.class));
+    }
+
+    @Test
+    public void test_locateDataSetFile_absolute() throws Exception {
+        File file = module.locateDataSetFile("/com/unitils/boot/datasetloadstrategy/users.xls", resourcePickingStrategie, SpringBootDbUnitModuleTest.class);
+        Assert.assertEquals(new File(TableLoadedEventTest.class.getResource("users.xls").toURI()), file);
+        Assert.assertNotNull(module.locateDataSetFile("com/unitils/boot/datasetloadstrategy/users.xls", resourcePickingStrategie, SpringBootDbUnitModuleTest.class));
+    }
+
+    @Test
+    public void test_locateDataSetFile_notFound() {
+        Assert.assertNull(module.locateDataSetFile("users.xls", resourcePickingStrategie, SpringBootDbUnitModuleTest.class));
+    }
+}
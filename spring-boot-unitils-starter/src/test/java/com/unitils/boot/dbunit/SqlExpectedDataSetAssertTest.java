@@ -0,0 +1,155 @@
+package com.unitils.boot.dbunit;
+
+import com.unitils.boot.database.EmbeddedDatabaseModule;
+import com.unitils.boot.datasetloadstrategy.BatchInserter;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.unitils.UnitilsJUnit4TestClassRunner;
+import org.unitils.database.annotations.TestDataSource;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+@RunWith(UnitilsJUnit4TestClassRunner.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SqlExpectedDataSetAssertTest {
+
+    private static final Column[] COLUMNS = {new Column("id", DataType.UNKNOWN), new Column("name", DataType.UNKNOWN), new Column("age", DataType.UNKNOWN)};
+
+    @TestDataSource
+    private DataSource dataSource;
+
+    private final SqlExpectedDataSetAssert expectedDataSetAssert = new SqlExpectedDataSetAssert();
+
+    @Before
+    public void setUp() throws Exception {
+        Statement statement = getConnection().createStatement();
+        statement.execute("delete from t_user");
+        statement.execute("insert into t_user (id, name, age) values (1, 'aaa', 20), (2, 'bbb', 30)");
+    }
+
+    @Test
+    public void test1_equal() throws Exception {
+        assertEqual(users(new Object[]{"1", "aaa", "20"}, new Object[]{"2", null, "30"}));
+    }
+
+    @Test
+    public void test2_caseSensitive() throws Exception {
+        assertDifferent(users(new Object[]{"1", "AAA", "20"}));
+    }
+
+    @Test
+    public void test3_trailingSpace() throws Exception {
+        assertDifferent(users(new Object[]{"1", "aaa ", "20"}));
+    }
+
+    @Test
+    public void test4_duplicateRows() throws Exception {
+        assertDifferent(users(new Object[]{null, "aaa", null}, new Object[]{null, "aaa", null}));
+    }
+
+    @Test
+    public void test5_temporaryTableNotCommitted() throws Exception {
+        getConnection().createStatement().execute("insert into t_user (id, name, age) values (99, 'zzz', 1)");
+        assertEqual(users(new Object[]{"99", "zzz", "1"}));
+    }
+
+    @Test
+    public void test6_rolledBack() throws Exception {
+        // 比较时没有提交上一个测试的事务
+        Connection connection = DriverManager.getConnection(EmbeddedDatabaseModule.DEFAULT_URL, "sa", "");
+        try {
+            Assert.assertEquals(0, queryInt(connection, "select count(*) from t_user where id = 99"));
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void test7_temporaryTableDroppedWithoutTransaction() throws Exception {
+        Connection connection = DriverManager.getConnection(EmbeddedDatabaseModule.DEFAULT_URL, "sa", "");
+        try {
+            DbUnitDatabaseConnection dbUnitConnection = new DbUnitDatabaseConnection(new SingleConnectionDataSource(connection, true), "PUBLIC");
+            try {
+                expectedDataSetAssert.assertEqualDataSets("PUBLIC", users(new Object[]{"-1", "none", "1"}), dbUnitConnection);
+                Assert.fail();
+            } catch (AssertionError e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("Missing row"));
+            }
+            Assert.assertEquals(0, queryInt(connection, "select count(*) from INFORMATION_SCHEMA.TABLES where lower(TABLE_NAME) like 'ut_exp_%'"));
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void test8_mysqlComparesStringsAsBinary() throws Exception {
+        SqlExpectedDataSetAssert mysqlAssert = new SqlExpectedDataSetAssert() {
+
+            @Override
+            protected String getDialect() {
+                return "mysql";
+            }
+        };
+        BatchInserter inserter = BatchInserter.create(getDbUnitConnection());
+        boolean[] binaryColumns = mysqlAssert.getBinaryColumns(users().getTable("t_user"), "t_user", inserter);
+        Assert.assertEquals("[false, true, false]", Arrays.toString(binaryColumns));
+
+        Statement statement = getConnection().createStatement();
+        mysqlAssert.createTemporaryTable(statement, true, true, "ut_exp_test", "t_user", Arrays.asList("id", "name", "age"));
+        statement.execute("insert into ut_exp_test (id, name, age) values (1, 'aaa', null)");
+        Assert.assertEquals("e.id = a.id and binary e.name = a.name and (e.age is null or e.age = a.age)",
+            mysqlAssert.getMatchCondition(statement, "ut_exp_test", Arrays.asList("id", "name", "age"), binaryColumns));
+    }
+
+    private void assertEqual(IDataSet expectedDataSet) {
+        expectedDataSetAssert.assertEqualDataSets("PUBLIC", expectedDataSet, getDbUnitConnection());
+    }
+
+    private void assertDifferent(IDataSet expectedDataSet) {
+        try {
+            assertEqual(expectedDataSet);
+        } catch (AssertionError e) {
+            return;
+        }
+        Assert.fail("Expected differences");
+    }
+
+    private IDataSet users(Object[]... rows) throws Exception {
+        DefaultTable table = new DefaultTable("t_user", COLUMNS);
+        for (Object[] row : rows) {
+            table.addRow(row);
+        }
+        return new DefaultDataSet(table);
+    }
+
+    private DbUnitDatabaseConnection getDbUnitConnection() {
+        return new DbUnitDatabaseConnection(dataSource, "PUBLIC");
+    }
+
+    private Connection getConnection() {
+        return DataSourceUtils.getConnection(dataSource);
+    }
+
+    private int queryInt(Connection connection, String sql) throws Exception {
+        ResultSet resultSet = connection.createStatement().executeQuery(sql);
+        resultSet.next();
+        return resultSet.getInt(1);
+    }
+}
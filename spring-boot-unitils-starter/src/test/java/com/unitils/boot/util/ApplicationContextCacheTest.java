@@ -0,0 +1,64 @@
+package com.unitils.boot.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.MergedContextConfiguration;
+
+public class ApplicationContextCacheTest {
+
+    private ApplicationContextCache applicationContextCache = new ApplicationContextCache(ApplicationContextCache.DEFAULT_MAX_SIZE);
+
+    @Test
+    public void test_getContextKey_sameConfiguration() {
+        Assert.assertEquals(applicationContextCache.getContextKey(FirstTest.class), applicationContextCache.getContextKey(SameConfigTest.class));
+        Assert.assertTrue(applicationContextCache.getContextKey(FirstTest.class).get(0) instanceof MergedContextConfiguration);
+    }
+
+    @Test
+    public void test_getContextKey_nestedConfiguration() {
+        // 注解相同，但Spring检测到的内部配置类不同
+        Assert.assertNotEquals(applicationContextCache.getContextKey(NestedConfigTest.class),
+            applicationContextCache.getContextKey(OtherNestedConfigTest.class));
+    }
+
+    @Test
+    public void test_getContextKey_noSpringConfiguration() {
+        Assert.assertTrue(applicationContextCache.getContextKey(ApplicationContextCacheTest.class).isEmpty());
+    }
+
+    @Test
+    public void test_createAnnotationContextKey_nestedConfiguration() {
+        Assert.assertNotEquals(applicationContextCache.createAnnotationContextKey(NestedConfigTest.class),
+            applicationContextCache.createAnnotationContextKey(OtherNestedConfigTest.class));
+    }
+
+    @ContextConfiguration(classes = Config.class)
+    public static class FirstTest {
+    }
+
+    @ContextConfiguration(classes = Config.class)
+    public static class SameConfigTest {
+    }
+
+    @ContextConfiguration
+    public static class NestedConfigTest {
+
+        @Configuration
+        static class NestedConfig {
+        }
+    }
+
+    @ContextConfiguration
+    public static class OtherNestedConfigTest {
+
+        @Configuration
+        static class NestedConfig {
+        }
+    }
+
+    @Configuration
+    static class Config {
+    }
+}
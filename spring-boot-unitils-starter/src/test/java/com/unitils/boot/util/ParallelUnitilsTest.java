@@ -0,0 +1,23 @@
+package com.unitils.boot.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.unitils.core.Unitils;
+
+public class ParallelUnitilsTest {
+
+    @Test
+    public void test_installAndUninstall() {
+        Unitils unitils = Unitils.getInstance();
+        ParallelUnitils parallelUnitils = ParallelUnitils.install();
+        Assert.assertSame(parallelUnitils, Unitils.getInstance());
+        Assert.assertSame(unitils.getModulesRepository(), parallelUnitils.getModulesRepository());
+
+        // 同时执行的runner共用一个实例，最后一个结束时才恢复
+        Assert.assertSame(parallelUnitils, ParallelUnitils.install());
+        ParallelUnitils.uninstall(parallelUnitils);
+        Assert.assertSame(parallelUnitils, Unitils.getInstance());
+        ParallelUnitils.uninstall(parallelUnitils);
+        Assert.assertSame(unitils, Unitils.getInstance());
+    }
+}
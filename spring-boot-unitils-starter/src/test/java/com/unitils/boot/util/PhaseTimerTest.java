@@ -0,0 +1,108 @@
+package com.unitils.boot.util;
+
+import com.unitils.boot.xls.MultiSchemaXlsDataSetReader;
+import com.unitils.boot.xls.TestWorkbooks;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.unitils.boot.xls.TestWorkbooks.sheet;
+
+public class PhaseTimerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    private boolean enabled;
+
+    @Before
+    public void setUp() {
+        enabled = PhaseTimer.isEnabled();
+        PhaseTimer.setEnabled(true);
+        PhaseTimer.reset();
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+        PhaseTimer.reset();
+        PhaseTimer.setEnabled(enabled);
+    }
+
+    @Test
+    public void test_nestedPhases() throws Exception {
+        PhaseTimer.begin(PhaseTimerTest.class);
+        PhaseTimer.begin();
+        Assert.assertEquals(PhaseTimerTest.class, PhaseTimer.getCurrentTestClass());
+        Thread.sleep(20);
+        PhaseTimer.end("inner");
+        PhaseTimer.end("outer");
+        PhaseTimer.begin(null);
+        PhaseTimer.end("outside");
+        Assert.assertNull(PhaseTimer.getCurrentTestClass());
+
+        String report = writeReport();
+        Assert.assertTrue(getTotalMs(report, PhaseTimerTest.class.getName(), "inner") >= 20);
+        // 外层阶段不包括嵌套阶段的耗时
+        Assert.assertTrue(getTotalMs(report, PhaseTimerTest.class.getName(), "outer") < 20);
+        Assert.assertTrue(report.contains("\"" + PhaseTimer.NO_TEST_CLASS + "\": {\n      \"outside\""));
+    }
+
+    @Test
+    public void test_record() throws Exception {
+        PhaseTimer.begin(PhaseTimerTest.class);
+        PhaseTimer.record(PhaseTimerTest.class, "database.getConnection", 30000000L);
+        PhaseTimer.end("outer");
+
+        String report = writeReport();
+        Assert.assertEquals(30.0, getTotalMs(report, PhaseTimerTest.class.getName(), "database.getConnection"), 0.001);
+        // 记录的耗时和其他阶段重叠，不从外层阶段中减去
+        Assert.assertTrue(getTotalMs(report, PhaseTimerTest.class.getName(), "outer") < 30);
+    }
+
+    @Test
+    public void test_parsePoolPhasesOfTestClass() throws Exception {
+        File file1 = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1));
+        File file2 = TestWorkbooks.write(folder.newFile("roles.xls"), sheet("role", "id").row(2));
+
+        PhaseTimer.begin(PhaseTimerTest.class);
+        try {
+            new MultiSchemaXlsDataSetReader("PUBLIC", null, executorService).readDataSetXls(file1, file2);
+        } finally {
+            PhaseTimer.end("dataset.parse");
+        }
+
+        String report = writeReport();
+        Assert.assertTrue(report, report.contains("\"dataset.parseFile\": {\"count\": 2"));
+        Assert.assertFalse(report, report.contains(PhaseTimer.NO_TEST_CLASS));
+        Assert.assertTrue(getTotalMs(report, PhaseTimerTest.class.getName(), "dataset.parseFile") >= 0);
+    }
+
+    private String writeReport() throws Exception {
+        File reportFile = new File(folder.getRoot(), "phases.json");
+        PhaseTimer.writeReport(reportFile);
+        return new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private double getTotalMs(String report, String testClassName, String phase) {
+        int classStart = report.indexOf("\"" + testClassName + "\": {");
+        Assert.assertTrue(report, classStart >= 0);
+        String classReport = report.substring(classStart, report.indexOf("\n    }", classStart));
+        Matcher matcher = Pattern.compile(Pattern.quote("\"" + phase + "\": {\"count\": ") + "\\d+, \"totalMs\": ([0-9.]+)").matcher(classReport);
+        Assert.assertTrue(report, matcher.find());
+        return Double.parseDouble(matcher.group(1));
+    }
+}
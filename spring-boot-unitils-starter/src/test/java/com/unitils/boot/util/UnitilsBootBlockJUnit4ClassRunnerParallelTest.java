@@ -0,0 +1,74 @@
+package com.unitils.boot.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.model.InitializationError;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestContext;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.support.AbstractTestExecutionListener;
+import org.unitils.core.Unitils;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(UnitilsBootBlockJUnit4ClassRunnerParallelTest.ParallelRunner.class)
+@ContextConfiguration(classes = UnitilsBootBlockJUnit4ClassRunnerParallelTest.Config.class)
+@TestExecutionListeners(listeners = UnitilsBootBlockJUnit4ClassRunnerParallelTest.BeforeTestClassListener.class,
+    mergeMode = TestExecutionListeners.MergeMode.MERGE_WITH_DEFAULTS)
+public class UnitilsBootBlockJUnit4ClassRunnerParallelTest {
+
+    /* The threads that ran the before test class callbacks of a test context manager */
+    private static final Set<Thread> beforeTestClassThreads = ConcurrentHashMap.newKeySet();
+
+    // 两个测试方法同时执行时才能通过
+    private static final CyclicBarrier barrier = new CyclicBarrier(2);
+
+    @Test
+    public void test1() throws Exception {
+        assertThreadConfined("test1");
+    }
+
+    @Test
+    public void test2() throws Exception {
+        assertThreadConfined("test2");
+    }
+
+    private void assertThreadConfined(String methodName) throws Exception {
+        Assert.assertTrue(Unitils.getInstance() instanceof ParallelUnitils);
+        Assert.assertTrue(beforeTestClassThreads.contains(Thread.currentThread()));
+        barrier.await(10, TimeUnit.SECONDS);
+        org.unitils.core.TestContext testContext = Unitils.getInstance().getTestContext();
+        Assert.assertEquals(methodName, testContext.getTestMethod().getName());
+        Assert.assertSame(this, testContext.getTestObject());
+        Assert.assertEquals(getClass(), testContext.getTestClass());
+        barrier.await(10, TimeUnit.SECONDS);
+    }
+
+    public static class ParallelRunner extends UnitilsBootBlockJUnit4ClassRunner {
+
+        public ParallelRunner(Class<?> clazz) throws InitializationError {
+            super(clazz);
+        }
+
+        @Override
+        protected int getParallelism() {
+            return 2;
+        }
+    }
+
+    public static class BeforeTestClassListener extends AbstractTestExecutionListener {
+
+        @Override
+        public void beforeTestClass(TestContext testContext) {
+            beforeTestClassThreads.add(Thread.currentThread());
+        }
+    }
+
+    // 不加@Configuration，不需要CGLIB代理
+    static class Config {
+    }
+}
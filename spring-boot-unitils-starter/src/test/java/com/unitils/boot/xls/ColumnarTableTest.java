@@ -0,0 +1,65 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.NoSuchColumnException;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColumnarTableTest {
+
+    private static final Column[] COLUMNS = {new Column("id", DataType.UNKNOWN), new Column("Name", DataType.UNKNOWN)};
+
+    @Test
+    public void test_copyOf() throws Exception {
+        DefaultTable source = new DefaultTable("t_user", COLUMNS);
+        source.addRow(new Object[]{"1", "aaa"});
+        source.addRow(new Object[]{"2", ""});
+
+        ColumnarTable table = ColumnarTable.copyOf("T_USER", source);
+        Assert.assertEquals("T_USER", table.getTableMetaData().getTableName());
+        Assert.assertEquals(2, table.getRowCount());
+        Assert.assertEquals("aaa", table.getValue(0, "Name"));
+        // 列名不区分大小写，空字符串转换成null
+        Assert.assertEquals("2", table.getValue(1, "ID"));
+        Assert.assertNull(table.getValue(1, "name"));
+        Assert.assertEquals("aaa", table.getValue(0, 1));
+    }
+
+    @Test
+    public void test_copyOfColumnarTable() throws Exception {
+        ColumnarTable table = new ColumnarTable(new DefaultTableMetaData("t_user", COLUMNS), new Object[][]{{"1"}, {"aaa"}}, 1);
+        ColumnarTable copy = ColumnarTable.copyOf("s2_user", table);
+        Assert.assertEquals("s2_user", copy.getTableMetaData().getTableName());
+        Assert.assertEquals("t_user", table.getTableMetaData().getTableName());
+        Assert.assertEquals("aaa", copy.getValue(0, "name"));
+    }
+
+    @Test
+    public void test_duplicateColumn() throws Exception {
+        Column[] columns = {new Column("id", DataType.UNKNOWN), new Column("ID", DataType.UNKNOWN)};
+        ColumnarTable table = new ColumnarTable(new DefaultTableMetaData("t_user", columns), new Object[][]{{"1"}, {"2"}}, 1);
+        // 和DbUnit一致，同名的列以第一个为准
+        Assert.assertEquals("1", table.getValue(0, "ID"));
+        Assert.assertEquals("1", table.getValue(0, "id"));
+    }
+
+    @Test(expected = RowOutOfBoundsException.class)
+    public void test_rowOutOfBounds() throws Exception {
+        new ColumnarTable(new DefaultTableMetaData("t_user", COLUMNS), new Object[][]{{"1"}, {"aaa"}}, 1).getValue(1, "id");
+    }
+
+    @Test(expected = NoSuchColumnException.class)
+    public void test_noSuchColumn() throws Exception {
+        new ColumnarTable(new DefaultTableMetaData("t_user", COLUMNS), new Object[][]{{"1"}, {"aaa"}}, 1).getValue(0, "age");
+    }
+
+    @Test(expected = DataSetException.class)
+    public void test_wrongNumberOfColumns() throws Exception {
+        new ColumnarTable(new DefaultTableMetaData("t_user", COLUMNS), new Object[][]{{"1"}}, 1);
+    }
+}
@@ -0,0 +1,72 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.excel.XlsDataSet;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.unitils.boot.xls.TestWorkbooks.sheet;
+
+public class CompiledDataSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_readWhatWasWritten() throws Exception {
+        File xlsFile = TestWorkbooks.write(folder.newFile("users.xls"),
+            sheet("user", "id", "name", "remark").row(1, "zhangsan", null).row(2, "李四", "x"),
+            sheet("role", "id").row(10.5));
+        File compiledFile = CompiledDataSet.getCompiledFile(xlsFile);
+        CompiledDataSet.write(new XlsDataSet(xlsFile), xlsFile, compiledFile);
+
+        List<ITable> tables = CompiledDataSet.read(compiledFile);
+        Assert.assertEquals(2, tables.size());
+        ITable user = tables.get(0);
+        Assert.assertEquals("user", user.getTableMetaData().getTableName());
+        Assert.assertEquals(2, user.getRowCount());
+        Assert.assertEquals(new BigDecimal("1"), user.getValue(0, "id"));
+        Assert.assertEquals("李四", user.getValue(1, "name"));
+        Assert.assertNull(user.getValue(0, "remark"));
+        Assert.assertEquals(new BigDecimal("10.5"), tables.get(1).getValue(0, "id"));
+    }
+
+    @Test
+    public void test_isUpToDate() throws Exception {
+        File xlsFile = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "name").row("aaaa"));
+        File compiledFile = CompiledDataSet.getCompiledFile(xlsFile);
+        Assert.assertFalse(CompiledDataSet.isUpToDate(compiledFile, xlsFile));
+
+        CompiledDataSet.write(new XlsDataSet(xlsFile), xlsFile, compiledFile);
+        Assert.assertTrue(CompiledDataSet.isUpToDate(compiledFile, xlsFile));
+
+        // 只有修改时间变化时按CRC32判断内容没有变化
+        Assert.assertTrue(xlsFile.setLastModified(xlsFile.lastModified() - 60000));
+        Assert.assertTrue(CompiledDataSet.isUpToDate(compiledFile, xlsFile));
+    }
+
+    @Test
+    public void test_isUpToDate_contentChanged() throws Exception {
+        File xlsFile = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "name").row("aaaa"));
+        File compiledFile = CompiledDataSet.getCompiledFile(xlsFile);
+        CompiledDataSet.write(new XlsDataSet(xlsFile), xlsFile, compiledFile);
+        long length = xlsFile.length();
+
+        long lastModified = xlsFile.lastModified();
+
+        // 内容变化但大小和修改时间保留（cp -p、git checkout）时仍然失效
+        TestWorkbooks.write(xlsFile, sheet("user", "name").row("bbbb"));
+        Assert.assertEquals(length, xlsFile.length());
+        Assert.assertTrue(xlsFile.setLastModified(lastModified));
+        Assert.assertFalse(CompiledDataSet.isUpToDate(compiledFile, xlsFile));
+
+        TestWorkbooks.write(xlsFile, sheet("user", "name").row("a much longer value"));
+        Assert.assertFalse(CompiledDataSet.isUpToDate(compiledFile, xlsFile));
+    }
+}
@@ -0,0 +1,151 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.ITable;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.unitils.boot.xls.TestWorkbooks.sheet;
+
+public class DataSetCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private int loadCount;
+
+    private final DataSetCache.Loader loader = new DataSetCache.Loader() {
+
+        public Map<String, List<ITable>> load(File file) {
+            loadCount++;
+            return Collections.singletonMap("PUBLIC", Collections.<ITable>emptyList());
+        }
+    };
+
+    @Test
+    public void test_get_parsesOnce() throws Exception {
+        DataSetCache cache = new DataSetCache(10);
+        File file = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1));
+
+        Map<String, List<ITable>> tables = cache.get(file, "PUBLIC", loader);
+        Assert.assertSame(tables, cache.get(file, "PUBLIC", loader));
+        Assert.assertEquals(1, loadCount);
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void test_get_modifiedFile() throws Exception {
+        DataSetCache cache = new DataSetCache(10);
+        File file = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1));
+        cache.get(file, "PUBLIC", loader);
+
+        Assert.assertTrue(file.setLastModified(file.lastModified() + 60000));
+        cache.get(file, "PUBLIC", loader);
+        TestWorkbooks.write(file, sheet("user", "id", "name").row(1, "zhangsan"));
+        cache.get(file, "PUBLIC", loader);
+        Assert.assertEquals(3, loadCount);
+    }
+
+    @Test
+    public void test_get_otherSignature() throws Exception {
+        DataSetCache cache = new DataSetCache(10);
+        File file = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1));
+        cache.get(file, "PUBLIC", loader);
+        cache.get(file, "OTHER", loader);
+        Assert.assertEquals(2, loadCount);
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void test_maxSize() throws Exception {
+        DataSetCache cache = new DataSetCache(1);
+        File file1 = TestWorkbooks.write(folder.newFile("users1.xls"), sheet("user", "id").row(1));
+        File file2 = TestWorkbooks.write(folder.newFile("users2.xls"), sheet("user", "id").row(2));
+        cache.get(file1, "PUBLIC", loader);
+        cache.get(file2, "PUBLIC", loader);
+        cache.get(file1, "PUBLIC", loader);
+        Assert.assertEquals(3, loadCount);
+        Assert.assertEquals(1, cache.size());
+
+        cache.setMaxSize(0);
+        Assert.assertEquals(0, cache.size());
+        cache.get(file1, "PUBLIC", loader);
+        cache.get(file1, "PUBLIC", loader);
+        Assert.assertEquals(5, loadCount);
+    }
+
+    @Test
+    public void test_get_concurrentMisses() throws Exception {
+        final DataSetCache cache = new DataSetCache(10);
+        final File file = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1));
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final DataSetCache.Loader slowLoader = new DataSetCache.Loader() {
+
+            public Map<String, List<ITable>> load(File file) {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Collections.singletonMap("PUBLIC", Collections.<ITable>emptyList());
+            }
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Callable<Map<String, List<ITable>>> get = new Callable<Map<String, List<ITable>>>() {
+                public Map<String, List<ITable>> call() {
+                    return cache.get(file, "PUBLIC", slowLoader);
+                }
+            };
+            Future<Map<String, List<ITable>>> first = executorService.submit(get);
+            Assert.assertTrue(loading.await(10, TimeUnit.SECONDS));
+            Future<Map<String, List<ITable>>> second = executorService.submit(get);
+            Thread.sleep(100);
+            release.countDown();
+            // 第二个线程等待第一个线程的解析结果
+            Assert.assertSame(first.get(), second.get());
+            Assert.assertEquals(1, loads.get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_get_failureNotCached() throws Exception {
+        DataSetCache cache = new DataSetCache(10);
+        File file = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1));
+        DataSetCache.Loader failingLoader = new DataSetCache.Loader() {
+
+            public Map<String, List<ITable>> load(File file) {
+                loadCount++;
+                throw new IllegalStateException("broken");
+            }
+        };
+        try {
+            cache.get(file, "PUBLIC", failingLoader);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("broken", e.getMessage());
+        }
+        cache.get(file, "PUBLIC", loader);
+        Assert.assertEquals(2, loadCount);
+    }
+}
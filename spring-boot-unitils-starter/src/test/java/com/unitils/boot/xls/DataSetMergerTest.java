@@ -0,0 +1,169 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.unitils.core.UnitilsException;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.unitils.boot.xls.TestWorkbooks.sheet;
+
+public class DataSetMergerTest {
+
+    private static final DataSetMerger.PrimaryKeyResolver ID_PRIMARY_KEY = new DataSetMerger.PrimaryKeyResolver() {
+        public List<String> getPrimaryKeyNames(String schemaName, String tableName) {
+            return "t_user".equalsIgnoreCase(tableName) ? Collections.singletonList("ID") : Collections.<String>emptyList();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_merge_overlappingKeys() throws Exception {
+        DefaultTable classUser = table("t_user", "id", "name", "age");
+        classUser.addRow(new Object[]{new BigDecimal("1"), "aaa", new BigDecimal("10")});
+        classUser.addRow(new Object[]{new BigDecimal("2.0"), "bbb", new BigDecimal("20")});
+        classUser.addRow(new Object[]{new BigDecimal("3"), "ccc", new BigDecimal("30")});
+        DefaultTable methodUser = table("T_USER", "id", "name");
+        methodUser.addRow(new Object[]{"2", "BBB"});
+        methodUser.addRow(new Object[]{new BigDecimal("4"), "ddd"});
+
+        MultiSchemaDataSet merged = DataSetMerger.merge(ID_PRIMARY_KEY, dataSet("PUBLIC", classUser), dataSet("PUBLIC", methodUser));
+
+        // 方法上主键为2的行替换类上的行，方法上没有的age列使用被替换的行的值，类上的其他行保留
+        ITable user = merged.getDataSetForSchema("PUBLIC").getTable("t_user");
+        Assert.assertEquals(4, user.getRowCount());
+        Assert.assertEquals(3, user.getTableMetaData().getColumns().length);
+        assertRow(user, 0, new BigDecimal("1"), "aaa", new BigDecimal("10"));
+        assertRow(user, 1, new BigDecimal("3"), "ccc", new BigDecimal("30"));
+        assertRow(user, 2, "2", "BBB", new BigDecimal("20"));
+        assertRow(user, 3, new BigDecimal("4"), "ddd", null);
+    }
+
+    @Test
+    public void test_merge_noPrimaryKey() throws Exception {
+        DefaultTable classRole = table("t_role", "id");
+        classRole.addRow(new Object[]{"1"});
+        DefaultTable methodRole = table("t_role", "id");
+        methodRole.addRow(new Object[]{"2"});
+
+        MultiSchemaDataSet merged = DataSetMerger.merge(ID_PRIMARY_KEY, dataSet("PUBLIC", classRole), dataSet("PUBLIC", methodRole));
+        Assert.assertSame(methodRole, merged.getDataSetForSchema("PUBLIC").getTable("t_role"));
+    }
+
+    @Test
+    public void test_merge_missingPrimaryKeyColumn() throws Exception {
+        DefaultTable classUser = table("t_user", "id", "name");
+        classUser.addRow(new Object[]{"1", "aaa"});
+        DefaultTable methodUser = table("t_user", "name");
+        methodUser.addRow(new Object[]{"bbb"});
+
+        MultiSchemaDataSet merged = DataSetMerger.merge(ID_PRIMARY_KEY, dataSet("PUBLIC", classUser), dataSet("PUBLIC", methodUser));
+        Assert.assertSame(methodUser, merged.getDataSetForSchema("PUBLIC").getTable("t_user"));
+    }
+
+    @Test
+    public void test_merge_nonOverlappingTablesAndSchemas() throws Exception {
+        DefaultTable classUser = table("t_user", "id");
+        DefaultTable methodRole = table("t_role", "id");
+        DefaultTable otherUser = table("t_user", "id");
+        MultiSchemaDataSet methodDataSet = dataSet("PUBLIC", methodRole);
+        methodDataSet.setDataSetForSchema("OTHER", new DefaultDataSet(otherUser));
+
+        MultiSchemaDataSet merged = DataSetMerger.merge(ID_PRIMARY_KEY, dataSet("PUBLIC", classUser), methodDataSet);
+        Assert.assertSame(classUser, merged.getDataSetForSchema("PUBLIC").getTable("t_user"));
+        Assert.assertSame(methodRole, merged.getDataSetForSchema("PUBLIC").getTable("t_role"));
+        Assert.assertSame(otherUser, merged.getDataSetForSchema("OTHER").getTable("t_user"));
+    }
+
+    @Test
+    public void test_mergeTables_notMaterialized() throws Exception {
+        File file1 = TestWorkbooks.write(folder.newFile("users1.xls"), sheet("user", "id", "name").row(1, "aaa"), sheet("role", "id").row(10));
+        File file2 = TestWorkbooks.write(folder.newFile("users2.xls"), sheet("user", "id").row(2).row(3), sheet("role", "id").row(10));
+        MultiSchemaDataSet dataSet = new MultiSchemaXlsDataSetReader(new SheetNameRouter("PUBLIC"), null, null, true).readDataSetXls(file1, file2);
+
+        // 行数不同的表不计算指纹，合并后读取单元格时才转换
+        ITable user = dataSet.getDataSetForSchema("PUBLIC").getTable("user");
+        Assert.assertTrue(user instanceof MergedTable);
+        Assert.assertEquals(3, user.getRowCount());
+        Assert.assertEquals(new BigDecimal("3"), user.getValue(2, "id"));
+        Assert.assertNull(user.getValue(2, "name"));
+        Assert.assertEquals("aaa", user.getValue(0, "NAME"));
+
+        // 行数和列都相同的表比较内容，相同时只保留一个
+        ITable role = dataSet.getDataSetForSchema("PUBLIC").getTable("role");
+        Assert.assertTrue(role instanceof LazyTable);
+        Assert.assertEquals(1, role.getRowCount());
+    }
+
+    @Test
+    public void test_mergeTables_distinctShapesNotRead() throws Exception {
+        LazyTable user1 = readLazyTable(TestWorkbooks.write(folder.newFile("users1.xls"), sheet("user", "id").row(1)));
+        LazyTable user2 = readLazyTable(TestWorkbooks.write(folder.newFile("users2.xls"), sheet("user", "id").row(2).row(3)));
+
+        ITable user = DataSetMerger.mergeTables(Arrays.<ITable>asList(user1, user2)).get(0);
+        Assert.assertEquals(3, user.getRowCount());
+        Assert.assertFalse(user1.isMaterialized());
+        Assert.assertFalse(user2.isMaterialized());
+
+        Assert.assertEquals(new BigDecimal("2"), user.getValue(1, "id"));
+        Assert.assertFalse(user1.isMaterialized());
+        Assert.assertTrue(user2.isMaterialized());
+    }
+
+    @Test
+    public void test_mergeTables_sameShapeCompared() throws Exception {
+        LazyTable user1 = readLazyTable(TestWorkbooks.write(folder.newFile("users1.xls"), sheet("user", "id").row(1)));
+        LazyTable user2 = readLazyTable(TestWorkbooks.write(folder.newFile("users2.xls"), sheet("user", "id").row(2)));
+
+        ITable user = DataSetMerger.mergeTables(Arrays.<ITable>asList(user1, user2)).get(0);
+        Assert.assertTrue(user1.isMaterialized());
+        Assert.assertEquals(2, user.getRowCount());
+    }
+
+    @Test(expected = UnitilsException.class)
+    public void test_readDataSetXls_sameNameWithoutMerge() throws Exception {
+        File file1 = TestWorkbooks.write(folder.newFile("users1.xls"), sheet("user", "id").row(1));
+        File file2 = TestWorkbooks.write(folder.newFile("users2.xls"), sheet("user", "id").row(2));
+        // 不合并时和DbUnit一致，同名表报错
+        new MultiSchemaXlsDataSetReader("PUBLIC").readDataSetXls(file1, file2);
+    }
+
+    private static LazyTable readLazyTable(File file) throws DataSetException {
+        return (LazyTable) new MultiSchemaXlsDataSetReader("PUBLIC").readDataSetXls(file).getDataSetForSchema("PUBLIC").getTable("user");
+    }
+
+    private static DefaultTable table(String tableName, String... columnNames) {
+        Column[] columns = new Column[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columns[i] = new Column(columnNames[i], DataType.UNKNOWN);
+        }
+        return new DefaultTable(tableName, columns);
+    }
+
+    private static MultiSchemaDataSet dataSet(String schemaName, ITable... tables) throws DataSetException {
+        MultiSchemaDataSet dataSet = new MultiSchemaDataSet();
+        dataSet.setDataSetForSchema(schemaName, new DefaultDataSet(tables));
+        return dataSet;
+    }
+
+    private static void assertRow(ITable table, int row, Object... values) throws DataSetException {
+        Column[] columns = table.getTableMetaData().getColumns();
+        Assert.assertEquals(Arrays.asList(values), Arrays.asList(
+            table.getValue(row, columns[0].getColumnName()), table.getValue(row, columns[1].getColumnName()), table.getValue(row, columns[2].getColumnName())));
+    }
+}
@@ -0,0 +1,105 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.IDataSet;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.unitils.boot.xls.TestWorkbooks.sheet;
+
+public class LazyTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_readOnFirstValue() throws Exception {
+        File file = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id", "name").row(1, "aaa").row(2, ""), sheet("role", "id").row(10));
+        MultiSchemaDataSet dataSet = new MultiSchemaXlsDataSetReader("PUBLIC").readDataSetXls(file);
+
+        LazyTable user = (LazyTable) dataSet.getDataSetForSchema("PUBLIC").getTable("user");
+        LazyTable role = (LazyTable) dataSet.getDataSetForSchema("PUBLIC").getTable("role");
+        // 表头和行数不需要转换
+        Assert.assertEquals(2, user.getRowCount());
+        Assert.assertEquals(2, user.getTableMetaData().getColumns().length);
+        Assert.assertFalse(user.isMaterialized());
+
+        Assert.assertEquals(new BigDecimal("1"), user.getValue(0, "id"));
+        Assert.assertNull(user.getValue(1, "name"));
+        Assert.assertTrue(user.isMaterialized());
+        Assert.assertFalse(role.isMaterialized());
+    }
+
+    @Test
+    public void test_sheetSharedBySchemas() throws Exception {
+        File file = TestWorkbooks.write(folder.newFile("orders.xls"), sheet("order.t_order", "id").row(1));
+        SheetNameRouter router = new SheetNameRouter("PUBLIC", ".", "keep",
+            Collections.singletonMap("order", Arrays.asList("order_0", "order_1")));
+        MultiSchemaDataSet dataSet = new MultiSchemaXlsDataSetReader(router, null, null).readDataSetXls(file);
+
+        LazyTable order0 = (LazyTable) dataSet.getDataSetForSchema("order_0").getTable("t_order");
+        LazyTable order1 = (LazyTable) dataSet.getDataSetForSchema("order_1").getTable("t_order");
+        Assert.assertEquals(new BigDecimal("1"), order0.getValue(0, "id"));
+        Assert.assertTrue(order1.isMaterialized());
+        Assert.assertEquals("t_order", order1.getTableMetaData().getTableName());
+    }
+
+    @Test
+    public void test_cachedTablesLazy() throws Exception {
+        File file = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1), sheet("role", "id").row(10));
+        MultiSchemaXlsDataSetReader reader = new MultiSchemaXlsDataSetReader("PUBLIC", new DataSetCache(10));
+        Assert.assertEquals(new BigDecimal("1"), reader.readDataSetXls(file).getDataSetForSchema("PUBLIC").getTable("user").getValue(0, "id"));
+
+        // 缓存中保存每个sheet的转换结果，没有读取过的sheet不转换
+        IDataSet cached = reader.readDataSetXls(file).getDataSetForSchema("PUBLIC");
+        Assert.assertTrue(((LazyTable) cached.getTable("user")).isMaterialized());
+        LazyTable role = (LazyTable) cached.getTable("role");
+        Assert.assertEquals(1, role.getRowCount());
+        Assert.assertFalse(role.isMaterialized());
+    }
+
+    @Test
+    public void test_concurrentReads() throws Exception {
+        List<TestWorkbooks.TestSheet> sheets = new ArrayList<TestWorkbooks.TestSheet>();
+        for (int i = 0; i < 8; i++) {
+            TestWorkbooks.TestSheet sheet = sheet("table" + i, "id");
+            for (int row = 0; row < 100; row++) {
+                sheet.row(i * 1000 + row);
+            }
+            sheets.add(sheet);
+        }
+        File file = TestWorkbooks.write(folder.newFile("tables.xls"), sheets.toArray(new TestWorkbooks.TestSheet[sheets.size()]));
+        final MultiSchemaDataSet dataSet = new MultiSchemaXlsDataSetReader("PUBLIC").readDataSetXls(file);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<BigDecimal>> futures = new ArrayList<Future<BigDecimal>>();
+            for (int i = 0; i < 8; i++) {
+                final String tableName = "table" + i;
+                futures.add(executorService.submit(new Callable<BigDecimal>() {
+                    public BigDecimal call() throws Exception {
+                        return (BigDecimal) dataSet.getDataSetForSchema("PUBLIC").getTable(tableName).getValue(99, "id");
+                    }
+                }));
+            }
+            for (int i = 0; i < 8; i++) {
+                Assert.assertEquals(new BigDecimal(i * 1000 + 99), futures.get(i).get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
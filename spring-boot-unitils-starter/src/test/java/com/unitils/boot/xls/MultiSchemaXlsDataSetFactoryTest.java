@@ -0,0 +1,33 @@
+package com.unitils.boot.xls;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadPoolExecutor;
+
+public class MultiSchemaXlsDataSetFactoryTest {
+
+    @Test
+    public void test_init_poolPerParallelism() {
+        MultiSchemaXlsDataSetFactory factory2 = createFactory(2);
+        MultiSchemaXlsDataSetFactory factory3 = createFactory(3);
+        MultiSchemaXlsDataSetFactory otherFactory2 = createFactory(2);
+
+        // 不同的并行数使用各自的线程池，已创建的线程池不调整大小
+        Assert.assertNotSame(factory2.executorService, factory3.executorService);
+        Assert.assertSame(factory2.executorService, otherFactory2.executorService);
+        Assert.assertEquals(2, ((ThreadPoolExecutor) factory2.executorService).getMaximumPoolSize());
+        Assert.assertEquals(3, ((ThreadPoolExecutor) factory3.executorService).getMaximumPoolSize());
+        Assert.assertNull(createFactory(1).executorService);
+    }
+
+    private static MultiSchemaXlsDataSetFactory createFactory(int parallelism) {
+        Properties configuration = new Properties();
+        configuration.setProperty(MultiSchemaXlsDataSetFactory.PROPKEY_PARALLELISM, String.valueOf(parallelism));
+        configuration.setProperty(MultiSchemaXlsDataSetFactory.PROPKEY_CACHE_MAX_SIZE, String.valueOf(DataSetCache.DEFAULT_MAX_SIZE));
+        MultiSchemaXlsDataSetFactory factory = new MultiSchemaXlsDataSetFactory();
+        factory.init(configuration, "PUBLIC");
+        return factory;
+    }
+}
@@ -0,0 +1,67 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.unitils.core.UnitilsException;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.unitils.boot.xls.TestWorkbooks.sheet;
+
+public class MultiSchemaXlsDataSetReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void test_readDataSetXls_parallel() throws Exception {
+        File file1 = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1).row(2), sheet("s2.role", "id").row(10));
+        File file2 = TestWorkbooks.write(folder.newFile("orders.xls"), sheet("order", "id").row(100));
+
+        MultiSchemaDataSet sequential = new MultiSchemaXlsDataSetReader("PUBLIC").readDataSetXls(file1, file2);
+        MultiSchemaDataSet parallel = new MultiSchemaXlsDataSetReader("PUBLIC", null, executorService).readDataSetXls(file1, file2);
+
+        Assert.assertEquals(sequential.getSchemaNames(), parallel.getSchemaNames());
+        IDataSet dataSet = parallel.getDataSetForSchema("PUBLIC");
+        Assert.assertEquals(Arrays.asList("user", "order"), Arrays.asList(dataSet.getTableNames()));
+        Assert.assertEquals(new BigDecimal("2"), dataSet.getTable("user").getValue(1, "id"));
+        Assert.assertEquals(new BigDecimal("10"), parallel.getDataSetForSchema("s2").getTable("role").getValue(0, "id"));
+    }
+
+    @Test
+    public void test_readDataSetXls_cached() throws Exception {
+        File file = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1));
+        DataSetCache cache = new DataSetCache(10);
+        MultiSchemaXlsDataSetReader reader = new MultiSchemaXlsDataSetReader("PUBLIC", cache, executorService);
+
+        ITable table1 = reader.readDataSetXls(file).getDataSetForSchema("PUBLIC").getTable("user");
+        ITable table2 = reader.readDataSetXls(file).getDataSetForSchema("PUBLIC").getTable("user");
+        Assert.assertSame(table1, table2);
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getHitCount());
+    }
+
+    @Test(expected = UnitilsException.class)
+    public void test_readDataSetXls_parallelFailure() throws Exception {
+        File file = TestWorkbooks.write(folder.newFile("users.xls"), sheet("user", "id").row(1));
+        File invalidFile = folder.newFile("invalid.xls");
+        new MultiSchemaXlsDataSetReader("PUBLIC", null, executorService).readDataSetXls(file, invalidFile);
+    }
+}
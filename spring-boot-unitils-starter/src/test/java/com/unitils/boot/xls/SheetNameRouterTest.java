@@ -0,0 +1,110 @@
+package com.unitils.boot.xls;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.unitils.core.UnitilsException;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import static com.unitils.boot.xls.TestWorkbooks.sheet;
+
+public class SheetNameRouterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_route() {
+        SheetNameRouter router = new SheetNameRouter("PUBLIC");
+        Assert.assertEquals(Collections.singletonList("PUBLIC.t_user"), route(router, "t_user"));
+        Assert.assertEquals(Collections.singletonList("s2.t_user"), route(router, "s2.t_user"));
+        // 只按第一个分隔符拆分
+        Assert.assertEquals(Collections.singletonList("s2.t.user"), route(router, "s2.t.user"));
+    }
+
+    @Test
+    public void test_routeSeparatorAtStartOrEnd() {
+        SheetNameRouter router = new SheetNameRouter("PUBLIC");
+        Assert.assertEquals(Collections.singletonList("PUBLIC..t_user"), route(router, ".t_user"));
+        Assert.assertEquals(Collections.singletonList("PUBLIC.t_user."), route(router, "t_user."));
+    }
+
+    @Test
+    public void test_routeLiteralSeparator() {
+        SheetNameRouter router = new SheetNameRouter("PUBLIC", "|", "keep", Collections.<String, List<String>>emptyMap());
+        Assert.assertEquals(Collections.singletonList("s2.t_user"), route(router, "s2|t_user"));
+        Assert.assertEquals(Collections.singletonList("PUBLIC.s2.t_user"), route(router, "s2.t_user"));
+    }
+
+    @Test
+    public void test_routeTableNameCase() {
+        SheetNameRouter upper = new SheetNameRouter("PUBLIC", ".", "upper", Collections.<String, List<String>>emptyMap());
+        Assert.assertEquals(Collections.singletonList("s2.T_USER"), route(upper, "s2.t_User"));
+        SheetNameRouter lower = new SheetNameRouter("PUBLIC", ".", "LOWER", Collections.<String, List<String>>emptyMap());
+        Assert.assertEquals(Collections.singletonList("S2.t_user"), route(lower, "S2.T_User"));
+    }
+
+    @Test
+    public void test_routeAliases() {
+        Properties configuration = new Properties();
+        configuration.setProperty("SheetNameRouter.schema.order", "order_0, order_1");
+        configuration.setProperty("SheetNameRouter.schema.Main", "PUBLIC");
+        SheetNameRouter router = SheetNameRouter.create(configuration, "PUBLIC");
+
+        Assert.assertEquals(Arrays.asList("order_0.t_order", "order_1.t_order"), route(router, "order.t_order"));
+        // 别名不区分大小写
+        Assert.assertEquals(Collections.singletonList("PUBLIC.t_user"), route(router, "MAIN.t_user"));
+        Assert.assertEquals(Collections.singletonList("s2.t_user"), route(router, "s2.t_user"));
+    }
+
+    @Test
+    public void test_signature() {
+        Properties configuration = new Properties();
+        String signature = SheetNameRouter.create(configuration, "PUBLIC").getSignature();
+        Assert.assertEquals(signature, SheetNameRouter.create(configuration, "PUBLIC").getSignature());
+        configuration.setProperty("SheetNameRouter.schema.order", "order_0");
+        Assert.assertNotEquals(signature, SheetNameRouter.create(configuration, "PUBLIC").getSignature());
+    }
+
+    @Test(expected = UnitilsException.class)
+    public void test_emptySeparator() {
+        new SheetNameRouter("PUBLIC", "", "keep", Collections.<String, List<String>>emptyMap());
+    }
+
+    @Test(expected = UnitilsException.class)
+    public void test_invalidTableNameCase() {
+        new SheetNameRouter("PUBLIC", ".", "camel", Collections.<String, List<String>>emptyMap());
+    }
+
+    @Test
+    public void test_readDataSetXlsFanOut() throws Exception {
+        File file = TestWorkbooks.write(folder.newFile("orders.xls"), sheet("order.t_order", "id").row(1).row(2));
+        SheetNameRouter router = new SheetNameRouter("PUBLIC", ".", "keep",
+            Collections.singletonMap("order", Arrays.asList("order_0", "order_1")));
+
+        MultiSchemaDataSet dataSet = new MultiSchemaXlsDataSetReader(router, null, null).readDataSetXls(file);
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("order_0", "order_1")), dataSet.getSchemaNames());
+        for (String schemaName : dataSet.getSchemaNames()) {
+            Assert.assertEquals(2, dataSet.getDataSetForSchema(schemaName).getTable("t_order").getRowCount());
+            Assert.assertEquals(new BigDecimal("2"), dataSet.getDataSetForSchema(schemaName).getTable("t_order").getValue(1, "id"));
+        }
+    }
+
+    private List<String> route(SheetNameRouter router, String sheetName) {
+        List<String> result = new ArrayList<String>();
+        for (String[] schemaAndTable : router.route(sheetName)) {
+            result.add(schemaAndTable[0] + '.' + schemaAndTable[1]);
+        }
+        return result;
+    }
+}
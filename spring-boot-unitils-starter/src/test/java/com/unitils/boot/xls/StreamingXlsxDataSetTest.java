@@ -0,0 +1,150 @@
+package com.unitils.boot.xls;
+
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import static com.unitils.boot.xls.TestWorkbooks.sheet;
+
+public class StreamingXlsxDataSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StreamingXlsxDataSet dataSet;
+
+    @Before
+    public void setUp() throws Exception {
+        File file = TestWorkbooks.write(folder.newFile("users.xlsx"),
+            sheet("user", "id", "name").row(1, "zhangsan").row(2, "lisi").row(3, null),
+            sheet("role", "id", "user_id").row(10, 1));
+        dataSet = new StreamingXlsxDataSet(Arrays.asList(
+            new StreamingXlsxDataSet.SheetRef(file, "user", "user"),
+            new StreamingXlsxDataSet.SheetRef(file, "role", "role")));
+    }
+
+    @Test
+    public void test_iterator() throws Exception {
+        ITableIterator iterator = dataSet.iterator();
+        Assert.assertTrue(iterator.next());
+        ITable user = iterator.getTable();
+        Assert.assertEquals("user", user.getTableMetaData().getTableName());
+        Assert.assertEquals(new BigDecimal("1"), user.getValue(0, "id"));
+        Assert.assertEquals("lisi", user.getValue(1, "name"));
+        Assert.assertNull(user.getValue(2, "name"));
+        Assert.assertTrue(iterator.next());
+        Assert.assertEquals("role", iterator.getTableMetaData().getTableName());
+        Assert.assertFalse(iterator.next());
+    }
+
+    @Test
+    public void test_getRowCount() throws Exception {
+        ITableIterator iterator = dataSet.iterator();
+        Assert.assertTrue(iterator.next());
+        ITable user = iterator.getTable();
+        Assert.assertEquals(3, user.getRowCount());
+        // 计数不影响向前读取
+        Assert.assertEquals("zhangsan", user.getValue(0, "name"));
+    }
+
+    @Test
+    public void test_getValue_backward() throws Exception {
+        ITableIterator iterator = dataSet.iterator();
+        Assert.assertTrue(iterator.next());
+        ITable user = iterator.getTable();
+        Assert.assertEquals("lisi", user.getValue(1, "name"));
+        Assert.assertEquals("zhangsan", user.getValue(0, "name"));
+        Assert.assertEquals(new BigDecimal("3"), user.getValue(2, "id"));
+    }
+
+    @Test
+    public void test_reverseIterator() throws Exception {
+        ITableIterator iterator = dataSet.reverseIterator();
+        Assert.assertTrue(iterator.next());
+        Assert.assertEquals("role", iterator.getTableMetaData().getTableName());
+        Assert.assertTrue(iterator.next());
+        ITable user = iterator.getTable();
+        Assert.assertEquals(3, user.getRowCount());
+        Assert.assertEquals(new BigDecimal("3"), user.getValue(2, "id"));
+        Assert.assertEquals("zhangsan", user.getValue(0, "name"));
+        Assert.assertFalse(iterator.next());
+    }
+
+    @Test
+    public void test_getTable() throws Exception {
+        ITable role = dataSet.getTable("ROLE");
+        Assert.assertEquals(1, role.getRowCount());
+        Assert.assertEquals(new BigDecimal("1"), role.getValue(0, "user_id"));
+        Assert.assertEquals(2, dataSet.getTableMetaData("user").getColumns().length);
+    }
+
+    @Test
+    public void test_blankRows() throws Exception {
+        File file = TestWorkbooks.write(folder.newFile("gaps.xlsx"), sheet("user", "id", "name").row(1, "a").blankRow().blankRow().row(4, "d"));
+        StreamingXlsxDataSet gaps = new StreamingXlsxDataSet(Arrays.asList(new StreamingXlsxDataSet.SheetRef(file, "user", "user")));
+
+        // Excel不保存的空行补上，后面的行不前移
+        ITableIterator iterator = gaps.iterator();
+        Assert.assertTrue(iterator.next());
+        ITable user = iterator.getTable();
+        Assert.assertEquals(4, user.getRowCount());
+        Assert.assertEquals("a", user.getValue(0, "name"));
+        Assert.assertNull(user.getValue(1, "id"));
+        Assert.assertNull(user.getValue(2, "name"));
+        Assert.assertEquals(new BigDecimal("4"), user.getValue(3, "id"));
+        Assert.assertEquals("d", gaps.getTable("user").getValue(3, "name"));
+    }
+
+    @Test
+    public void test_reverseIterator_metaDataOnly() throws Exception {
+        ITableIterator iterator = dataSet.reverseIterator();
+        Assert.assertTrue(iterator.next());
+        Assert.assertEquals(2, iterator.getTableMetaData().getColumns().length);
+        Assert.assertTrue(iterator.next());
+        Assert.assertEquals("user", iterator.getTableMetaData().getTableName());
+        Assert.assertEquals(3, iterator.getTable().getRowCount());
+        Assert.assertFalse(iterator.next());
+    }
+
+    @Test
+    public void test_insertAndDelete() throws Exception {
+        Connection connection = DriverManager.getConnection("jdbc:h2:mem:streaming", "sa", "");
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute("create table user (id int primary key, name varchar(20))");
+            statement.execute("create table role (id int primary key, user_id int)");
+            IDatabaseConnection databaseConnection = new DatabaseConnection(connection);
+
+            DatabaseOperation.INSERT.execute(databaseConnection, dataSet);
+            Assert.assertEquals(3, count(statement, "user"));
+            Assert.assertEquals(1, count(statement, "role"));
+
+            DatabaseOperation.DELETE.execute(databaseConnection, dataSet);
+            Assert.assertEquals(0, count(statement, "user"));
+            Assert.assertEquals(0, count(statement, "role"));
+        } finally {
+            connection.close();
+        }
+    }
+
+    private int count(Statement statement, String tableName) throws Exception {
+        ResultSet resultSet = statement.executeQuery("select count(*) from " + tableName);
+        resultSet.next();
+        return resultSet.getInt(1);
+    }
+}
@@ -0,0 +1,86 @@
+package com.unitils.boot.xls;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author: yangjianzhou
+ * @Description: 测试中生成xls和xlsx数据文件，第一行是列名，后面每行是一行数据，null的单元格不创建，blankRow()的行不创建
+ * @Date:Created in 2018-07-08
+ */
+public class TestWorkbooks {
+
+    private TestWorkbooks() {
+    }
+
+    public static TestSheet sheet(String name, String... columnNames) {
+        return new TestSheet(name, columnNames);
+    }
+
+    /**
+     * Writes the sheets to the given file, an xlsx workbook when the file name ends with .xlsx, otherwise an xls workbook.
+     */
+    public static File write(File file, TestSheet... sheets) throws IOException {
+        Workbook workbook = file.getName().endsWith(".xlsx") ? new XSSFWorkbook() : new HSSFWorkbook();
+        for (TestSheet testSheet : sheets) {
+            Sheet sheet = workbook.createSheet(testSheet.name);
+            writeRow(sheet.createRow(0), testSheet.columnNames);
+            for (int i = 0; i < testSheet.rows.size(); i++) {
+                if (testSheet.rows.get(i) != null) {
+                    writeRow(sheet.createRow(i + 1), testSheet.rows.get(i));
+                }
+            }
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            workbook.write(out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void writeRow(Row row, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof Number) {
+                row.createCell(i).setCellValue(((Number) values[i]).doubleValue());
+            } else if (values[i] != null) {
+                row.createCell(i).setCellValue(values[i].toString());
+            }
+        }
+    }
+
+    public static class TestSheet {
+
+        private final String name;
+
+        private final String[] columnNames;
+
+        private final List<Object[]> rows = new ArrayList<Object[]>();
+
+        TestSheet(String name, String[] columnNames) {
+            this.name = name;
+            this.columnNames = columnNames;
+        }
+
+        public TestSheet row(Object... values) {
+            rows.add(values);
+            return this;
+        }
+
+        public TestSheet blankRow() {
+            rows.add(null);
+            return this;
+        }
+    }
+}